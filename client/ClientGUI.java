@@ -76,6 +76,9 @@ public class ClientGUI extends JFrame {
 	private SelectCharacterForm selectCharacterForm;
 	private static ClientGUI inst;
 	private String displayHistory;
+	// The Character's stats as last sent, see updateStats.
+	private Object[] characterStats;
+	private EventRenderer eventRenderer;
 	private JScrollPane scrollPane;
 	private String cssString, fontString, normalString, playerString,
 			enemyString, itemString, backgroundString, friendlyString;
@@ -107,6 +110,8 @@ public class ClientGUI extends JFrame {
 		initGUI();
 		fontPreferencesForm = new FontPreferencesForm(this);
 		displayHistory = "";
+		characterStats = new Object[7];
+		eventRenderer = new EventRenderer();
 	}
 
 	private boolean fontLoad() {
@@ -305,7 +310,10 @@ public class ClientGUI extends JFrame {
 
 	private void display(Message m) {
 		// Expecting Strings only via a MessageType.DISPLAY
-		String data = (String) m.getData();
+		display((String) m.getData());
+	}
+
+	private void display(String data) {
 		displayHistory += data;
 		mainTextArea.setText(cssString + displayHistory);
 		mainTextArea.setCaretPosition(mainTextArea.getDocument().getLength());
@@ -382,6 +390,11 @@ public class ClientGUI extends JFrame {
 					case DISPLAY:
 						display(m);
 						break;
+					case ROOM_VIEW:
+					case ENTITY_MOVED:
+					case CHAT:
+						display(eventRenderer.render(m));
+						break;
 					case SET_CLIENT_FONT:
 						setFonts(m);
 						break;
@@ -417,8 +430,19 @@ public class ClientGUI extends JFrame {
 		// Object[3] = Character's Experience (int)
 		// Object[4] = Character's Location Name (String)
 		// Object[5] = Character's Class (String)
+		// Object[6] = Experience needed for the next level (int)
 
-		Object[] data = (Object[]) m.getData();
+		// Only what changed is sent, the rest is null.
+		Object[] changes = (Object[]) m.getData();
+		for (int i = 0; i < changes.length; i++) {
+			if (changes[i] != null) {
+				characterStats[i] = changes[i];
+			}
+		}
+		Object[] data = characterStats;
+		if (data[0] == null) {
+			return;
+		}
 
 		int[] stats = (int[]) data[0];
 		String infoString = "Character Information:<br /><br />" + "Max HP: "
@@ -0,0 +1,171 @@
+package client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import server.Message;
+
+/**
+ * EventRenderer turns the structured events the Server sends, ROOM_VIEW,
+ * ENTITY_MOVED and CHAT, into the HTML shown in the ClientGUI. The Server
+ * only sends a room's description the first time the Client looks at it, so
+ * the descriptions are kept here for the next time.
+ *
+ * See MessageType for what each event carries.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public class EventRenderer {
+
+	private static final String NO_EXIT = "<td class=\"normal\">&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp";
+
+	private Map<Integer, String> roomDescriptions;
+
+	public EventRenderer() {
+		roomDescriptions = new HashMap<Integer, String>();
+	}
+
+	/**
+	 * Renders the given event.
+	 *
+	 * @param m
+	 *            A ROOM_VIEW, ENTITY_MOVED or CHAT Message.
+	 * @return The HTML to display.
+	 */
+	public String render(Message m) {
+		Object[] data = (Object[]) m.getData();
+		switch (m.getMessageType()) {
+		case ROOM_VIEW:
+			return renderRoomView(data);
+		case ENTITY_MOVED:
+			return renderEntityMoved(data);
+		case CHAT:
+			return renderChat(data);
+		default:
+			throw new IllegalArgumentException("Not an event: "
+					+ m.getMessageType());
+		}
+	}
+
+	private String renderRoomView(Object[] data) {
+		StringBuilder html = new StringBuilder();
+
+		Integer roomID = (Integer) data[0];
+		String description = (String) data[1];
+		if (description != null) {
+			roomDescriptions.put(roomID, description);
+		} else {
+			description = roomDescriptions.get(roomID);
+		}
+		if (description != null) {
+			html.append("<span class=\"normal\">").append(description)
+					.append("</span><br />");
+		}
+
+		// A "map" of where the player is.
+		int[] exits = (int[]) data[2];
+		html.append("<table border=\"0\"><tr><td></td>");
+		appendExit(html, exits[0], "north");
+		html.append("</td><td></td></tr><tr>");
+		appendExit(html, exits[3], "west");
+		html.append("</td><td class=\"player\" border=\"1\"><center>you</center></td>");
+		appendExit(html, exits[1], "east");
+		html.append("</td></tr><tr><td></td>");
+		appendExit(html, exits[2], "south");
+		html.append("</td><td></td></tr></table>");
+
+		String[] itemNames = (String[]) data[3];
+		String[] itemQuantities = (String[]) data[4];
+		if (itemNames.length > 0) {
+			html.append("<span class=\"normal\">You see the following items in the room:</span><br />");
+		} else {
+			html.append("<span class=\"normal\">There are no items in this room.</span><br />");
+		}
+		for (int i = 0; i < itemNames.length; i++) {
+			html.append("<span class=\"item\">").append(itemNames[i])
+					.append("</span><span class=\"normal\"> : ")
+					.append(itemQuantities[i]).append("</span><br />");
+		}
+
+		String[] players = (String[]) data[5];
+		if (players.length > 0) {
+			html.append("<span class=\"normal\">You see </span>");
+		} else {
+			html.append("<span class=\"normal\">There's no one</span>");
+		}
+		appendNames(html, players, "player");
+		html.append("<span class=\"normal\"> in the room with you.</span><br />");
+
+		String[] npcs = (String[]) data[6];
+		if (npcs.length > 0) {
+			html.append("<span class=\"normal\">You see </span>");
+			appendNames(html, npcs, "friendly");
+			html.append("<span class=\"normal\"> in the room with you.</span><br />");
+		}
+
+		String[] mobs = (String[]) data[7];
+		if (mobs.length > 0) {
+			appendNames(html, mobs, "enemy");
+			html.append("<span class =\"normal\"> ")
+					.append(mobs.length == 1 ? "is" : "are")
+					.append(" in the room with you!</span><br />");
+		}
+		return html.toString();
+	}
+
+	private void appendExit(StringBuilder html, int exit, String direction) {
+		if (exit != 0) {
+			html.append("<td class=\"normal\" border=\"1\">").append(direction);
+		} else {
+			html.append(NO_EXIT);
+		}
+	}
+
+	private void appendNames(StringBuilder html, String[] names,
+			String cssClass) {
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				html.append("<span class=\"normal\">, </span>");
+			}
+			html.append("<span class=\"").append(cssClass).append("\">")
+					.append(names[i]).append("</span>");
+		}
+	}
+
+	private String renderEntityMoved(Object[] data) {
+		boolean mob = (Boolean) data[0];
+		String name = (String) data[1];
+		String direction = (String) data[2];
+
+		if (mob) {
+			return "<span class=\"enemy\">"
+					+ name
+					+ "</span><span class=\"normal\"> "
+					+ (direction == null ? "has entered the room!"
+							: "has gone " + direction + ".") + "</span><br />";
+		}
+		return "<span class=\"player\">"
+				+ name
+				+ "</span><span class=\"normal\"> "
+				+ (direction == null ? "has entered the room."
+						: "has left the room " + direction + "ward.")
+				+ "</span><br />";
+	}
+
+	private String renderChat(Object[] data) {
+		String command = (String) data[0];
+		String speaker = "<span class=\"player\">" + data[1] + "</span>";
+		String text = (String) data[2];
+
+		if (command.equals("emote")) {
+			return speaker + "<span class=\"normal\"> " + text + "</span><br />";
+		}
+		String chat = speaker + "<span class=\"normal\">: " + text
+				+ "</span><br />";
+		if (command.equals("ooc")) {
+			return "<span class=\"normal\">(ooc)</span>" + chat;
+		}
+		return chat;
+	}
+}
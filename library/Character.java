@@ -1,28 +1,154 @@
 package library;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A player's Character. WorldState hands out one Character per ID, and it
+ * is shared by every thread that looks at it.
+ *
+ * Only the GameLoop of the zone the Character is in changes it: its
+ * player's commands run there, and so do the mob attacks in its room.
+ * Anything else that changes it, like the lights going out everywhere, is
+ * posted to that GameLoop with GameLoop.postTo. Other zones and the world
+ * flush only read it, so its fields are read and written under its lock,
+ * the same lock DatabaseObject keeps the changed columns under.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
 public class Character extends DatabaseObject {
 
+	private String name;
+	private int level;
+	private int hp;
+	private int ap;
+	private int location;
 	private ClassType characterClass;
+	private boolean online;
+	private int experience;
+	private boolean lights;
 
 	public Character(int id) {
-		super(id);
-		params.put("id", null);
-		params.put("name", null);
-		params.put("level", null);
-		params.put("hp", null);
-		params.put("ap", null);
-		params.put("location", null);
-		params.put("classid", null);
-		params.put("isonline", null);
-		params.put("experience", null);
-		params.put("lights", null);
-		params.put("maxhp", null);
-		params.put("maxap", null);
-		this.setTableName("characters");
+		super(id, "characters", "name", "level", "hp", "ap", "location",
+				"classid", "isonline", "experience", "lights");
 		this.load();
-		if (this.getID() > -1)
-			this.characterClass = ClassType.valueOf(this.get("classid"));
+	}
+
+	@Override
+	protected void read(ResultSet row) throws SQLException {
+		name = row.getString("name");
+		level = row.getInt("level");
+		hp = row.getInt("hp");
+		ap = row.getInt("ap");
+		location = row.getInt("location");
+		characterClass = ClassType.valueOf(row.getString("classid"));
+		online = readBoolean(row, "isonline");
+		experience = row.getInt("experience");
+		lights = readBoolean(row, "lights");
+	}
+
+	@Override
+	protected Object getColumn(String column) {
+		if (column.equals("name")) {
+			return name;
+		} else if (column.equals("level")) {
+			return level;
+		} else if (column.equals("hp")) {
+			return hp;
+		} else if (column.equals("ap")) {
+			return ap;
+		} else if (column.equals("location")) {
+			return location;
+		} else if (column.equals("classid")) {
+			return characterClass.name();
+		} else if (column.equals("isonline")) {
+			return writeBoolean(online);
+		} else if (column.equals("experience")) {
+			return experience;
+		} else if (column.equals("lights")) {
+			return writeBoolean(lights);
+		}
+		throw new IllegalArgumentException(column);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized int getLevel() {
+		return level;
+	}
+
+	public synchronized void setLevel(int level) {
+		if (this.level != level) {
+			this.level = level;
+			changed("level");
+		}
+	}
+
+	public synchronized int getHP() {
+		return hp;
+	}
+
+	public synchronized void setHP(int hp) {
+		if (this.hp != hp) {
+			this.hp = hp;
+			changed("hp");
+		}
+	}
+
+	public synchronized int getAP() {
+		return ap;
+	}
+
+	public synchronized void setAP(int ap) {
+		if (this.ap != ap) {
+			this.ap = ap;
+			changed("ap");
+		}
+	}
+
+	public synchronized int getLocation() {
+		return location;
+	}
+
+	public void setLocation(int location) {
+		synchronized (this) {
+			if (this.location == location) {
+				return;
+			}
+			this.location = location;
+			changed("location");
+		}
+		// Not while holding this, WorldState's locks come first.
+		WorldState.characterMoved(this);
+	}
+
+	public synchronized boolean isOnline() {
+		return online;
+	}
+
+	public synchronized int getExperience() {
+		return experience;
+	}
+
+	public synchronized void setExperience(int experience) {
+		if (this.experience != experience) {
+			this.experience = experience;
+			changed("experience");
+		}
+	}
+
+	public synchronized boolean hasLights() {
+		return lights;
+	}
 
+	public synchronized void setLights(boolean lights) {
+		if (this.lights != lights) {
+			this.lights = lights;
+			changed("lights");
+		}
 	}
 
 	public ClassType getClassType() {
@@ -30,19 +156,16 @@ public class Character extends DatabaseObject {
 	}
 
 	public int[] getStats() {
-		return this.characterClass
-				.getStats(Integer.parseInt(this.get("level")));
+		return this.characterClass.getStats(getLevel());
 	}
 
 	public int getDamage() {
 		return (int) (DatabaseConnection.getDamageBonusForCharacter(this
-				.getID()) + characterClass.getDamage(
-				Integer.parseInt(this.get("level")), false));
+				.getID()) + characterClass.getDamage(getLevel(), false));
 	}
 
 	public int getDefense() {
-		return (int) characterClass.getDefense(Integer.parseInt(this
-				.get("level")));
+		return (int) characterClass.getDefense(getLevel());
 	}
 
 	public int getMaxHP(int level) {
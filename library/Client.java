@@ -1,17 +1,29 @@
 package library;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import server.Handshake;
 import server.Message;
+import server.MessageCodec;
 
 /**
  * This class connects to a ServerSocket via a Socket. It sends and receives
- * Messages in order to communicate with the UAMUD Server.
+ * Messages in order to communicate with the UAMUD Server. Messages travel as
+ * frames produced by a MessageCodec, whose protocol version is agreed on with
+ * the Server in a Handshake as soon as the Client connects. The version asked
+ * for can be lowered with -Duamud.protocol=1, which a Server only accepts
+ * when started with -Duamud.protocol.serialized=true. The Client offers to
+ * inflate what the Server sends, which the Server takes up if it is
+ * configured to compress.
  * 
  * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
  * 
@@ -20,8 +32,9 @@ public class Client implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 	private Socket socket;
-	private ObjectInputStream ois;
-	private ObjectOutputStream oos;
+	private DataInputStream in;
+	private OutputStream out;
+	private MessageCodec codec;
 	private String username;
 	private String charactername;
 
@@ -31,8 +44,23 @@ public class Client implements Serializable {
 		charactername = "";
 		try {
 			socket = new Socket(hostname, port);
-			ois = new ObjectInputStream(socket.getInputStream());
-			oos = new ObjectOutputStream(socket.getOutputStream());
+			socket.setTcpNoDelay(true);
+			BufferedInputStream buffered = new BufferedInputStream(
+					socket.getInputStream());
+			in = new DataInputStream(buffered);
+			out = new BufferedOutputStream(socket.getOutputStream());
+			Handshake hello = new Handshake(Integer.getInteger(
+					"uamud.protocol", MessageCodec.LATEST_VERSION),
+					Handshake.FLAG_DEFLATE);
+			out.write(hello.toBytes());
+			out.flush();
+			Handshake answer = Handshake.read(in);
+			codec = answer.newCodec();
+			if (answer.has(Handshake.FLAG_DEFLATE)) {
+				// Everything after the Server's hello is deflated.
+				in = new DataInputStream(new InflaterInputStream(buffered,
+						new Inflater(), 8 * 1024));
+			}
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -43,18 +71,18 @@ public class Client implements Serializable {
 	public void disconnect() {
 		try {
 			// this.send(new Message(null, MessageType.QUIT));
-			ois.close();
-			oos.close();
+			in.close();
+			out.close();
 			socket.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
-	public void send(Message m) {
+	public synchronized void send(Message m) {
 		try {
-			oos.writeObject(m);
-			oos.flush();
+			out.write(codec.encode(m));
+			out.flush();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -62,13 +90,10 @@ public class Client implements Serializable {
 
 	public Message receive() {
 		try {
-			return (Message) ois.readObject();
+			return codec.read(in);
 		} catch (IOException e) {
 			// e.printStackTrace();
 			return null;
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
-			return null;
 		}
 	}
 
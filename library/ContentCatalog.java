@@ -0,0 +1,272 @@
+package library;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ContentCatalog holds the game's static content: every item, every kind of
+ * mob and every NPC, as defined in the database. None of it changes while
+ * the game is played, so it is read once, kept in arrays indexed by ID, and
+ * looked up by name through hash indexes that ignore case. Commands that
+ * need an item or a mob never ask the database.
+ *
+ * A ContentCatalog never changes once it is loaded. When the content is
+ * edited, reload loads a new one with the next version and swaps it in.
+ * Anything worked out from the catalog can remember the version it was
+ * worked out from, and work it out again once getVersion has moved on.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public final class ContentCatalog {
+
+	private static volatile ContentCatalog current;
+	private static int versions;
+
+	// What is handed out for IDs that aren't in the catalog. They have ID -1,
+	// don't exist and were never loaded, so looking one up doesn't ask the
+	// database either.
+	private static final Item NO_ITEM = new Item(-1);
+	private static final Mob NO_MOB = new Mob(-1);
+	private static final NonPlayerCharacter NO_NPC = new NonPlayerCharacter(-1);
+
+	private final int version;
+	private final Item[] items;
+	private final Mob[] mobs;
+	private final NonPlayerCharacter[] npcs;
+	// Names in lower case, to IDs.
+	private final Map<String, Integer> itemIDs;
+	private final Map<String, Integer> npcIDs;
+	private final Map<MobClass, Integer> mobIDs;
+	// Room IDs, to the NPCs who live there.
+	private final Map<Integer, List<Integer>> npcsByRoom;
+
+	private ContentCatalog(int version, DatabaseConnection db) {
+		this.version = version;
+		items = new Item[maxID(db, "items") + 1];
+		mobs = new Mob[maxID(db, "mobs") + 1];
+		npcs = new NonPlayerCharacter[maxID(db, "npcs") + 1];
+		itemIDs = new HashMap<String, Integer>();
+		npcIDs = new HashMap<String, Integer>();
+		mobIDs = new HashMap<MobClass, Integer>();
+		npcsByRoom = new HashMap<Integer, List<Integer>>();
+	}
+
+	/**
+	 * Gets the ContentCatalog in use, loading it the first time.
+	 *
+	 * @return The ContentCatalog.
+	 */
+	public static ContentCatalog get() {
+		ContentCatalog catalog = current;
+		if (catalog == null) {
+			synchronized (ContentCatalog.class) {
+				catalog = current;
+				if (catalog == null) {
+					catalog = reload();
+				}
+			}
+		}
+		return catalog;
+	}
+
+	/**
+	 * Loads the items, mobs and npcs tables again and uses them from now on.
+	 * Call this after content was added or edited in the database.
+	 *
+	 * @return The new ContentCatalog.
+	 */
+	public static synchronized ContentCatalog reload() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		ContentCatalog catalog = new ContentCatalog(++versions, db);
+		catalog.loadItems(db);
+		catalog.loadMobs(db);
+		catalog.loadNPCs(db);
+		current = catalog;
+		return catalog;
+	}
+
+	private void loadItems(DatabaseConnection db) {
+		ResultSet rs = null;
+		try {
+			rs = db.query(select("items", Item.COLUMNS));
+			while (rs.next()) {
+				Item item = new Item(rs);
+				items[item.getID()] = item;
+				itemIDs.put(key(item.getName()), item.getID());
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			db.release(rs);
+		}
+	}
+
+	private void loadMobs(DatabaseConnection db) {
+		ResultSet rs = null;
+		try {
+			rs = db.query(select("mobs", Mob.COLUMNS));
+			while (rs.next()) {
+				Mob mob = new Mob(rs);
+				mobs[mob.getID()] = mob;
+				// The first mob of each class is the one that spawns.
+				if (!mobIDs.containsKey(mob.getMobClass())) {
+					mobIDs.put(mob.getMobClass(), mob.getID());
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			db.release(rs);
+		}
+	}
+
+	private void loadNPCs(DatabaseConnection db) {
+		ResultSet rs = null;
+		try {
+			rs = db.query(select("npcs", NonPlayerCharacter.COLUMNS));
+			while (rs.next()) {
+				NonPlayerCharacter npc = new NonPlayerCharacter(rs);
+				npcs[npc.getID()] = npc;
+				npcIDs.put(key(npc.getName()), npc.getID());
+				List<Integer> inRoom = npcsByRoom.get(npc.getHomeRoom());
+				if (inRoom == null) {
+					inRoom = new ArrayList<Integer>();
+					npcsByRoom.put(npc.getHomeRoom(), inRoom);
+				}
+				inRoom.add(npc.getID());
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			db.release(rs);
+		}
+	}
+
+	private static int maxID(DatabaseConnection db, String table) {
+		return db.queryForInt(0, "SELECT MAX(id) FROM " + table + ";");
+	}
+
+	private static String select(String table, String[] columns) {
+		StringBuilder sql = new StringBuilder("SELECT id");
+		for (String column : columns) {
+			sql.append(", ").append(column);
+		}
+		return sql.append(" FROM ").append(table).append(";").toString();
+	}
+
+	private static String key(String name) {
+		return name == null ? "" : name.toLowerCase();
+	}
+
+	/**
+	 * Gets which version this ContentCatalog is. Every reload makes a new
+	 * version.
+	 *
+	 * @return The version, starting at 1.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the Item with the given ID.
+	 *
+	 * @param id
+	 *            The Item's ID.
+	 * @return The Item. If it isn't in the catalog, an Item with ID -1 that
+	 *         doesn't exist.
+	 */
+	public Item getItem(int id) {
+		if (id > 0 && id < items.length && items[id] != null) {
+			return items[id];
+		}
+		return NO_ITEM;
+	}
+
+	/**
+	 * Gets the ID of the item with the given name, whatever its case.
+	 *
+	 * @param name
+	 *            The item's name.
+	 * @return The item's ID, -1 if there is no such item.
+	 */
+	public int getItemID(String name) {
+		Integer id = itemIDs.get(key(name));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the Mob with the given ID.
+	 *
+	 * @param id
+	 *            The Mob's ID.
+	 * @return The Mob. If it isn't in the catalog, a Mob with ID -1 that
+	 *         doesn't exist.
+	 */
+	public Mob getMob(int id) {
+		if (id > 0 && id < mobs.length && mobs[id] != null) {
+			return mobs[id];
+		}
+		return NO_MOB;
+	}
+
+	/**
+	 * Gets the ID of the mob of the given class.
+	 *
+	 * @param mobClass
+	 *            The mob's class.
+	 * @return The mob's ID, 0 if there is no such mob.
+	 */
+	public int getMobID(MobClass mobClass) {
+		Integer id = mobIDs.get(mobClass);
+		return id == null ? 0 : id;
+	}
+
+	/**
+	 * Gets the NonPlayerCharacter with the given ID.
+	 *
+	 * @param id
+	 *            The NonPlayerCharacter's ID.
+	 * @return The NonPlayerCharacter. If it isn't in the catalog, a
+	 *         NonPlayerCharacter with ID -1 that doesn't exist.
+	 */
+	public NonPlayerCharacter getNPC(int id) {
+		if (id > 0 && id < npcs.length && npcs[id] != null) {
+			return npcs[id];
+		}
+		return NO_NPC;
+	}
+
+	/**
+	 * Gets the ID of the NPC with the given name, whatever its case.
+	 *
+	 * @param name
+	 *            The NPC's name.
+	 * @return The NPC's ID, -1 if there is no such NPC.
+	 */
+	public int getNPCID(String name) {
+		Integer id = npcIDs.get(key(name));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the NPCs whose home is the given room.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return The NPCs' IDs.
+	 */
+	public List<Integer> getNPCsIn(int roomID) {
+		List<Integer> inRoom = npcsByRoom.get(roomID);
+		if (inRoom == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(inRoom);
+	}
+}
@@ -2,14 +2,24 @@ package library;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import server.ServerConfig;
 
 /**
  * This class is a thread-safe singleton implementation of a connection to an
@@ -17,23 +27,246 @@ import java.util.Map;
  * all of the database manipulating methods for the Server to interact with the
  * database.
  * 
+ * Reads and writes go over different connections. Queries borrow one of a
+ * pool of reader connections, so any number of threads can read at once.
+ * Everything that changes the database is queued for the one writer
+ * connection and run on the writer's own thread, in the order it was queued;
+ * the caller waits for it to be committed. With SQLite's WAL journal the
+ * readers carry on while the writer commits. See ServerConfig for the
+ * journal, synchronous and checkpoint settings.
+ * 
+ * Queries are written as templates with a ? for each value, see Query. Each
+ * connection prepares each template once and keeps the PreparedStatement
+ * for the next time, so SQLite doesn't parse and plan the same SQL over and
+ * over.
+ * 
  * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
  * 
  */
 public class DatabaseConnection {
 
-	private Connection connection;
-	private static DatabaseConnection databaseConnection;
+	/*
+	 * More than the number of different templates there are, so in practice
+	 * nothing is ever evicted.
+	 */
+	private static final int STATEMENT_CACHE_SIZE = 128;
+
+	/*
+	 * The statements the game runs on single rows while it is played, here
+	 * so that QueryPlanTest can check every one that looks rows up finds
+	 * them through an index. Whole-table reads, such as the reports for the
+	 * Server's window, are written where they are used.
+	 */
+	public static final String USER_ID_SQL =
+			"SELECT id FROM users WHERE username = ?;";
+	public static final String USER_CHARACTERS_SQL =
+			"SELECT characters.name FROM characters "
+			+ "JOIN usercharacters ON characters.id = usercharacters.characterid "
+			+ "JOIN users ON users.id = usercharacters.userid "
+			+ "WHERE users.username = ?;";
+	public static final String CHARACTER_ID_SQL =
+			"SELECT id FROM characters WHERE name = ?;";
+	public static final String INSERT_USER_SQL =
+			"INSERT INTO users (username, password, name, createdate, admin, banned) "
+			+ "VALUES (?, ?, ?, datetime('now'), 0, 0);";
+	public static final String INSERT_CHARACTER_SQL =
+			"INSERT INTO characters (name, level, hp, ap, location, classid, isonline, experience, lights, maxhp, maxap) "
+			+ "VALUES (?, 1, ?, ?, 1, ?, 1, 0, 0, ?, ?);";
+	public static final String INSERT_USER_CHARACTER_SQL =
+			"INSERT INTO usercharacters (userid, characterid) VALUES (?, ?);";
+	public static final String ROOM_ITEMS_SQL =
+			"SELECT itemid, quantity FROM roomitems WHERE roomid = ?;";
+	public static final String INVENTORY_SQL =
+			"SELECT item, quantity FROM inventory WHERE character = ?;";
+	public static final String EQUIPPED_BONUS_SQL =
+			"SELECT items.effectamount FROM characterequip "
+			+ "JOIN items ON items.id = characterequip.item "
+			+ "WHERE characterequip.character = ? AND items.type = ?;";
+	public static final String KILLS_SQL =
+			"SELECT mob, quantity FROM characterkills WHERE character = ?;";
+	public static final String UPDATE_KILL_SQL =
+			"UPDATE characterkills SET quantity = ? "
+			+ "WHERE character = ? AND mob = ?;";
+	public static final String INSERT_KILL_SQL =
+			"INSERT INTO characterkills (character, mob, quantity) "
+			+ "VALUES (?, ?, 1);";
+	public static final String EQUIPPED_ITEMS_SQL =
+			"SELECT item, type FROM characterequip WHERE character = ?;";
+	public static final String INSERT_EQUIPPED_SQL =
+			"INSERT INTO characterequip (character, item, type) "
+			+ "VALUES (?, ?, ?);";
+	public static final String DELETE_EQUIPPED_SQL =
+			"DELETE FROM characterequip WHERE character = ? AND item = ?;";
+	public static final String ADMIN_SQL =
+			"SELECT admin FROM users WHERE id = ?;";
+	public static final String BANNED_IP_SQL =
+			"SELECT id FROM bannedips WHERE ip = ?;";
+	public static final String INSERT_BANNED_IP_SQL =
+			"INSERT INTO bannedips (ip) VALUES (?);";
+	public static final String SET_BANNED_SQL =
+			"UPDATE users SET banned = ? WHERE id = ?;";
+	public static final String DELETE_USER_SQL =
+			"DELETE FROM users WHERE id = ?;";
+	public static final String DELETE_CHARACTER_SQL =
+			"DELETE FROM characters WHERE id = ?;";
+	public static final String NPC_INVENTORY_SQL =
+			"SELECT itemid, quantity, price FROM npcinventory WHERE npcid = ?;";
+	public static final String DELETE_NPC_ITEM_SQL =
+			"DELETE FROM npcinventory WHERE npcid = ? AND itemid = ?;";
+	public static final String UPDATE_NPC_ITEM_SQL =
+			"UPDATE npcinventory SET quantity = ? "
+			+ "WHERE npcid = ? AND itemid = ?;";
+	public static final String INSERT_NPC_ITEM_SQL =
+			"INSERT INTO npcinventory (npcid, itemid, quantity, price) "
+			+ "VALUES (?, ?, 1, ?);";
+	public static final String UPDATE_DOOR_SQL =
+			"UPDATE rooms SET locked = ? WHERE id = ?;";
+	public static final String DELETE_ROOM_ITEMS_SQL =
+			"DELETE FROM roomitems WHERE roomid = ?;";
+	public static final String INSERT_ROOM_ITEM_SQL =
+			"INSERT INTO roomitems (roomid, itemid, quantity) VALUES (?, ?, ?);";
+	public static final String DELETE_INVENTORY_ITEM_SQL =
+			"DELETE FROM inventory WHERE character = ? AND item = ?;";
+	public static final String INSERT_INVENTORY_ITEM_SQL =
+			"INSERT INTO inventory (character, item, quantity) VALUES (?, ?, ?);";
+	public static final String DELETE_ROOM_MOB_SQL =
+			"DELETE FROM roommobs WHERE uid = ?;";
+	public static final String INSERT_ROOM_MOB_SQL =
+			"INSERT INTO roommobs (mobid, uid, hp, location, name, attacked, attackerid, lastattacked, level) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+	private CachedConnection writer;
+	private ExecutorService writes;
+	private Thread writerThread;
+	private BlockingQueue<CachedConnection> readers;
+	private List<CachedConnection> allReaders;
+	private ThreadLocal<CachedConnection> heldReader;
+	private ThreadLocal<Work> work;
+	private String journalMode;
+	private static volatile DatabaseConnection databaseConnection;
+
+	/*
+	 * One connection and the PreparedStatements prepared on it.
+	 */
+	private static class CachedConnection {
+		private Connection connection;
+		private Map<String, PreparedStatement> statements;
+		// Queries the borrowing thread has yet to release.
+		private int holds;
+
+		private CachedConnection(Connection connection) {
+			this.connection = connection;
+			this.statements = new LinkedHashMap<String, PreparedStatement>(16,
+					0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, PreparedStatement> eldest) {
+					if (size() <= STATEMENT_CACHE_SIZE) {
+						return false;
+					}
+					try {
+						eldest.getValue().close();
+					} catch (SQLException e) {
+						e.printStackTrace();
+					}
+					return true;
+				}
+			};
+		}
+
+		/*
+		 * Gets the PreparedStatement for the given template, preparing it if
+		 * this is the first time, and binds the given values to it.
+		 */
+		private PreparedStatement prepare(String sql, Object[] parameters)
+				throws SQLException {
+			PreparedStatement s = statements.get(sql);
+			if (s == null) {
+				s = connection.prepareStatement(sql);
+				statements.put(sql, s);
+			}
+			for (int i = 0; i < parameters.length; i++) {
+				s.setObject(i + 1, parameters[i]);
+			}
+			return s;
+		}
+
+		private void close() throws SQLException {
+			for (PreparedStatement s : statements.values()) {
+				s.close();
+			}
+			statements.clear();
+			connection.close();
+		}
+	}
+
+	/*
+	 * The writes a thread queued since it began a unit of work.
+	 */
+	private static class Work {
+		private List<Query> queries = new ArrayList<Query>();
+		// What to take back if the queries aren't committed.
+		private List<Runnable> undos = new ArrayList<Runnable>();
+		// How many times the unit was begun and not yet ended.
+		private int depth;
+	}
 
 	/*
 	 * This is a singleton implementation, so the constructor is private.
 	 */
 	private DatabaseConnection() {
+		readers = new LinkedBlockingQueue<CachedConnection>();
+		allReaders = new ArrayList<CachedConnection>();
+		heldReader = new ThreadLocal<CachedConnection>();
+		work = new ThreadLocal<Work>();
+		writes = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				writerThread = new Thread(r, "Database writer");
+				writerThread.setDaemon(true);
+				return writerThread;
+			}
+		});
 		try {
 			Class.forName("org.sqlite.JDBC");
-			connection = DriverManager.getConnection("jdbc:sqlite:"
-					+ System.getProperty("user.dir") + "/src/UAMUD.db");
-			connection.setAutoCommit(true);
+			writer = new CachedConnection(open());
+			journalMode = pragma(writer.connection, "journal_mode",
+					ServerConfig.DB_JOURNAL_MODE);
+			if (!journalMode.equalsIgnoreCase(ServerConfig.DB_JOURNAL_MODE)) {
+				System.err.println("SQLite " + pragma(writer.connection,
+						"sqlite_version()", null) + " can't use the "
+						+ ServerConfig.DB_JOURNAL_MODE
+						+ " journal, using " + journalMode + ".");
+			}
+			if (journalMode.equalsIgnoreCase("wal")) {
+				pragma(writer.connection, "synchronous",
+						ServerConfig.DB_SYNCHRONOUS == null ? "NORMAL"
+								: ServerConfig.DB_SYNCHRONOUS);
+				pragma(writer.connection, "wal_autocheckpoint",
+						String.valueOf(ServerConfig.DB_CHECKPOINT_PAGES));
+			} else if (ServerConfig.DB_SYNCHRONOUS != null) {
+				// Only when asked for; it stays FULL otherwise.
+				if (!ServerConfig.DB_SYNCHRONOUS.equalsIgnoreCase("FULL")) {
+					System.err.println("synchronous = "
+							+ ServerConfig.DB_SYNCHRONOUS + " without WAL "
+							+ "can corrupt the database on a power failure.");
+				}
+				pragma(writer.connection, "synchronous",
+						ServerConfig.DB_SYNCHRONOUS);
+			}
+			// Before anyone reads, the schema must be what they expect.
+			int version = Migrations.migrate(writer.connection);
+			if (version < Migrations.VERSION) {
+				System.out.println("Migrated the database from version "
+						+ version + " to " + Migrations.VERSION + ".");
+			}
+			for (int i = 0; i < Math.max(1, ServerConfig.DB_READERS); i++) {
+				CachedConnection reader = new CachedConnection(open());
+				allReaders.add(reader);
+				readers.add(reader);
+			}
 		} catch (SQLException e) {
 			e.printStackTrace();
 		} catch (ClassNotFoundException e) {
@@ -41,6 +274,40 @@ public class DatabaseConnection {
 		}
 	}
 
+	private static Connection open() throws SQLException {
+		Connection c = DriverManager.getConnection("jdbc:sqlite:"
+				+ System.getProperty("user.dir") + "/src/UAMUD.db");
+		c.setAutoCommit(true);
+		// Sets how long to wait on another connection's lock.
+		Statement s = c.createStatement();
+		s.setQueryTimeout(ServerConfig.DB_BUSY_TIMEOUT);
+		s.close();
+		return c;
+	}
+
+	/*
+	 * Sets the given PRAGMA, if value isn't null, and reads it back. SQLite
+	 * ignores PRAGMAs it doesn't know, so what's read back is what is in use.
+	 */
+	private static String pragma(Connection c, String name, String value)
+			throws SQLException {
+		Statement s = c.createStatement();
+		try {
+			if (value != null) {
+				s.execute("PRAGMA " + name + " = " + value + ";");
+			}
+			ResultSet rs = s.executeQuery(name.endsWith("()") ? "SELECT "
+					+ name + ";" : "PRAGMA " + name + ";");
+			try {
+				return rs.isClosed() ? "" : rs.getString(1);
+			} finally {
+				rs.close();
+			}
+		} finally {
+			s.close();
+		}
+	}
+
 	/**
 	 * Gets an instance of the singleton implementation of this SQL Database
 	 * Connection.
@@ -53,67 +320,518 @@ public class DatabaseConnection {
 		 * Singleton implementation
 		 */
 		if (databaseConnection == null) {
-			databaseConnection = new DatabaseConnection();
-			return databaseConnection;
-		} else {
-			return databaseConnection;
+			synchronized (DatabaseConnection.class) {
+				if (databaseConnection == null) {
+					databaseConnection = new DatabaseConnection();
+				}
+			}
 		}
+		return databaseConnection;
+	}
+
+	/**
+	 * Reads a stored boolean. Booleans are stored as 1 and 0, but 'true' and
+	 * 'false', as they were before Migrations changed them, are read too.
+	 *
+	 * @param stored
+	 *            The column's value, as a String.
+	 * @return True for 1 or 'true'.
+	 */
+	public static boolean toBoolean(String stored) {
+		return "1".equals(stored) || "true".equalsIgnoreCase(stored);
+	}
+
+	/**
+	 * Gets what to store for a boolean.
+	 *
+	 * @param b
+	 *            The boolean.
+	 * @return 1 for true, 0 for false.
+	 */
+	public static int fromBoolean(boolean b) {
+		return b ? 1 : 0;
 	}
 
 	/**
-	 * Executes the given SQL query on this database.
+	 * Gets the journal mode SQLite is actually using, which is the rollback
+	 * journal ("delete") when it is too old for WAL.
 	 * 
+	 * @return The journal mode.
+	 */
+	public String getJournalMode() {
+		return journalMode;
+	}
+
+	/*
+	 * Runs the given write on the writer's thread and waits for it. Writes
+	 * made from the writer's thread itself are run right away.
+	 */
+	private <T> T write(Callable<T> write) throws SQLException {
+		if (Thread.currentThread() == writerThread) {
+			try {
+				return write.call();
+			} catch (SQLException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new SQLException(e);
+			}
+		}
+		try {
+			return writes.submit(write).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for the writer.");
+		}
+	}
+
+	/*
+	 * Gets the reader connection this thread is using, or borrows one from
+	 * the pool. Every borrow must be matched by a giveBack.
+	 */
+	private CachedConnection borrowReader() throws SQLException {
+		CachedConnection reader = heldReader.get();
+		if (reader == null) {
+			try {
+				reader = readers.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted waiting for a reader.");
+			}
+			heldReader.set(reader);
+		}
+		reader.holds++;
+		return reader;
+	}
+
+	private void giveBack(CachedConnection reader) {
+		if (--reader.holds == 0) {
+			heldReader.remove();
+			readers.add(reader);
+		}
+	}
+
+	/**
+	 * Begins a unit of work on this thread. Until it is committed, every
+	 * write this thread makes through execute, update or executeBatch is
+	 * only queued, and commitWork writes them all in one transaction with
+	 * one commit. So a command that changes several rows pays for one
+	 * commit, and its changes are made together or not at all.
+	 *
+	 * Queued writes aren't seen by queries, not even this thread's, until
+	 * they are committed. A unit begun while this thread already has one
+	 * is part of the outer one, and only the outer one commits.
+	 *
+	 * Every beginWork must be matched by an endWork, in a finally block.
+	 */
+	public void beginWork() {
+		Work w = work.get();
+		if (w == null) {
+			w = new Work();
+			work.set(w);
+		}
+		w.depth++;
+	}
+
+	/**
+	 * Writes everything queued since this thread's unit of work began, in
+	 * one transaction. Does nothing in a unit inside another one.
+	 *
+	 * @return The number of statements written.
+	 * @throws SQLException
+	 *             If any of them fails. None of them is committed then.
+	 */
+	public int commitWork() throws SQLException {
+		Work w = work.get();
+		if (w == null) {
+			throw new IllegalStateException("No unit of work was begun.");
+		}
+		if (w.depth > 1) {
+			return 0;
+		}
+		List<Query> queries = w.queries;
+		w.queries = new ArrayList<Query>();
+		if (queries.isEmpty()) {
+			w.undos.clear();
+			return 0;
+		}
+		// Not queued again, now that it is being written.
+		work.remove();
+		try {
+			executeBatch(queries);
+			w.undos.clear();
+		} finally {
+			work.set(w);
+		}
+		return queries.size();
+	}
+
+	/**
+	 * Ends this thread's unit of work. Whatever it queued and didn't commit
+	 * is thrown away, and whatever was to be undone then is undone, latest
+	 * first.
+	 */
+	public void endWork() {
+		Work w = work.get();
+		if (w != null && --w.depth == 0) {
+			work.remove();
+			for (int i = w.undos.size() - 1; i >= 0; i--) {
+				w.undos.get(i).run();
+			}
+		}
+	}
+
+	/**
+	 * Undoes a change made outside the database, such as to the WorldState,
+	 * if this thread's unit of work ends without its writes committed. The
+	 * change then lands together with the writes or not at all. Outside a
+	 * unit of work, or once it is committed, the undo is never run.
+	 *
+	 * @param undo
+	 *            Takes the change back.
+	 */
+	public void onRollback(Runnable undo) {
+		Work w = work.get();
+		if (w != null) {
+			w.undos.add(undo);
+		}
+	}
+
+	/*
+	 * Queues the given write if this thread is in a unit of work.
+	 */
+	private boolean queue(Query query) {
+		Work w = work.get();
+		if (w == null) {
+			return false;
+		}
+		w.queries.add(query);
+		return true;
+	}
+
+	/**
+	 * Executes the given SQL statement on this database. Only for statements
+	 * without values in them, use update otherwise.
+	 *
 	 * @param sql
 	 *            SQL query to run on the database.
 	 * @throws SQLException
 	 */
-	public synchronized void execute(String sql) throws SQLException {
-		Statement s = connection.createStatement();
-		s.execute(sql);
-		s.close();
-		// connection.commit();
+	public void execute(final String sql) throws SQLException {
+		if (queue(new Query(sql))) {
+			return;
+		}
+		write(new Callable<Void>() {
+			@Override
+			public Void call() throws SQLException {
+				Statement s = writer.connection.createStatement();
+				try {
+					s.execute(sql);
+				} finally {
+					s.close();
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Executes the given INSERT, UPDATE or DELETE template with the given
+	 * values.
+	 * 
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The number of rows changed, or 0 if it was queued in a unit of
+	 *         work.
+	 * @throws SQLException
+	 */
+	public int update(final String sql, final Object... parameters)
+			throws SQLException {
+		if (queue(new Query(sql, parameters))) {
+			return 0;
+		}
+		return write(new Callable<Integer>() {
+			@Override
+			public Integer call() throws SQLException {
+				return writer.prepare(sql, parameters).executeUpdate();
+			}
+		});
+	}
+
+	/**
+	 * Executes the given INSERT, UPDATE or DELETE Query.
+	 * 
+	 * @param query
+	 *            The Query to run.
+	 * @return The number of rows changed.
+	 * @throws SQLException
+	 */
+	public int update(Query query) throws SQLException {
+		return update(query.getSQL(), query.getParameters());
+	}
+
+	/**
+	 * Executes the given SELECT template with the given values on a reader
+	 * connection. The caller has the reader to itself until it hands the
+	 * ResultSet back to release, so that must always happen, in a finally
+	 * block.
+	 * 
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The result, positioned on its first row if there is one.
+	 * @throws SQLException
+	 */
+	public ResultSet query(String sql, Object... parameters)
+			throws SQLException {
+		CachedConnection reader = borrowReader();
+		try {
+			return reader.prepare(sql, parameters).executeQuery();
+		} catch (SQLException e) {
+			giveBack(reader);
+			throw e;
+		} catch (RuntimeException e) {
+			giveBack(reader);
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes a ResultSet from query and gives the reader connection back to
+	 * the pool. The PreparedStatement stays cached.
+	 * 
+	 * @param rs
+	 *            The ResultSet query returned, or null if it threw.
+	 */
+	public void release(ResultSet rs) {
+		if (rs == null) {
+			return;
+		}
+		try {
+			rs.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			giveBack(heldReader.get());
+		}
+	}
+
+	/**
+	 * Gets the first column of the first row of the given query.
+	 * 
+	 * @param missing
+	 *            What to return if there are no rows.
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The int found, or missing.
+	 */
+	public int queryForInt(int missing, String sql, Object... parameters) {
+		ResultSet rs = null;
+		try {
+			rs = query(sql, parameters);
+			if (!rs.isClosed()) {
+				return rs.getInt(1);
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			release(rs);
+		}
+		return missing;
+	}
+
+	/**
+	 * Gets the first column of the first row of the given query.
+	 * 
+	 * @param missing
+	 *            What to return if there are no rows.
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The String found, or missing.
+	 */
+	public String queryForString(String missing, String sql,
+			Object... parameters) {
+		ResultSet rs = null;
+		try {
+			rs = query(sql, parameters);
+			if (!rs.isClosed()) {
+				return rs.getString(1);
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			release(rs);
+		}
+		return missing;
+	}
+
+	/**
+	 * Gets the first column of every row of the given query.
+	 * 
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The ints found, in order.
+	 */
+	public List<Integer> queryForInts(String sql, Object... parameters) {
+		List<Integer> ints = new ArrayList<Integer>();
+		ResultSet rs = null;
+		try {
+			rs = query(sql, parameters);
+			while (rs.next()) {
+				ints.add(rs.getInt(1));
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			release(rs);
+		}
+		return ints;
+	}
+
+	/**
+	 * Gets the first two columns of every row of the given query.
+	 * 
+	 * @param sql
+	 *            SQL template, with a ? for each value.
+	 * @param parameters
+	 *            The values, in order.
+	 * @return The first column mapped to the second.
+	 */
+	public Map<Integer, Integer> queryForIntMap(String sql,
+			Object... parameters) {
+		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+		ResultSet rs = null;
+		try {
+			rs = query(sql, parameters);
+			while (rs.next()) {
+				map.put(rs.getInt(1), rs.getInt(2));
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			release(rs);
+		}
+		return map;
 	}
 
 	/**
 	 * Executes the given SQL query and returns the ResultSet that the SQL
-	 * database returns. This method is synchronized so it is thread safe.
+	 * database returns. The Statement is not closed until it is garbage
+	 * collected, and the reader connection it was made on goes back to the
+	 * pool while it is still open, so nothing in the Server uses this any
+	 * more.
 	 * 
 	 * @param sql
 	 *            SQL query to run on the database.
 	 * @return The resultant set from the SQL query that was ran on this
 	 *         database.
+	 * @deprecated Use query and release.
 	 */
-	public synchronized ResultSet executeWithResult(String sql) {
+	@Deprecated
+	public ResultSet executeWithResult(String sql) {
+		CachedConnection reader = null;
 		try {
-			Statement s = connection.createStatement();
+			reader = borrowReader();
+			Statement s = reader.connection.createStatement();
 			ResultSet result = s.executeQuery(sql);
 			// connection.commit();
 			return result;
 		} catch (SQLException e) {
 			e.printStackTrace();
 			return null;
+		} finally {
+			if (reader != null) {
+				giveBack(reader);
+			}
 		}
 	}
 
+	/**
+	 * Executes the given Queries in one transaction, so they are committed
+	 * together or not at all. In a unit of work they are queued with the
+	 * rest of its writes.
+	 * 
+	 * @param queries
+	 *            Queries to run on the database, in order.
+	 * @throws SQLException
+	 *             If any of them fails. None of them is committed then.
+	 */
+	public void executeBatch(final List<Query> queries) throws SQLException {
+		Work w = work.get();
+		if (w != null) {
+			w.queries.addAll(queries);
+			return;
+		}
+		write(new Callable<Void>() {
+			@Override
+			public Void call() throws SQLException {
+				Connection connection = writer.connection;
+				connection.setAutoCommit(false);
+				try {
+					for (Query q : queries) {
+						writer.prepare(q.getSQL(), q.getParameters())
+								.executeUpdate();
+					}
+					connection.commit();
+				} catch (SQLException e) {
+					connection.rollback();
+					throw e;
+				} finally {
+					connection.setAutoCommit(true);
+				}
+				return null;
+			}
+		});
+	}
+
 	/**
 	 * Attempts to commit changes to the database.
 	 */
 	public void commit() {
 		try {
-			connection.commit();
+			write(new Callable<Void>() {
+				@Override
+				public Void call() throws SQLException {
+					writer.connection.commit();
+					return null;
+				}
+			});
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Attempts to close the database.
+	 * Attempts to close the database, after the writes already queued.
 	 * 
 	 * @return True if successful, false if unsuccessful.
 	 */
 	public boolean close() {
 		try {
-			connection.close();
+			write(new Callable<Void>() {
+				@Override
+				public Void call() throws SQLException {
+					writer.close();
+					return null;
+				}
+			});
+			writes.shutdown();
+			for (CachedConnection reader : allReaders) {
+				reader.close();
+			}
 			return true;
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -132,24 +850,23 @@ public class DatabaseConnection {
 	 *            The table for which the data will be inserted into.
 	 * @return The SQL INSERT INTO query.
 	 */
-	public static String createInsertQuery(Map<String, String> parameters,
+	public static Query createInsertQuery(Map<String, ?> parameters,
 			String table) {
-		String firstHalf = "INSERT INTO " + table + " (";
-		String lastHalf = ") VALUES ('";
-		for (Map.Entry<String, String> entry : parameters.entrySet()) {
-			firstHalf += entry.getKey() + ", ";
-			lastHalf += entry.getValue() + "', '";
-		}
-
-		String query = firstHalf.substring(0, firstHalf.length() - 2)
-				+ lastHalf.substring(0, lastHalf.length() - 3) + ");";
-		try {
-			DatabaseConnection.getInstance().execute(query);
-		} catch (SQLException e) {
-			e.printStackTrace();
+		StringBuilder columns = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		Object[] bound = new Object[parameters.size()];
+		int i = 0;
+		for (Map.Entry<String, ?> entry : parameters.entrySet()) {
+			if (i > 0) {
+				columns.append(", ");
+				values.append(", ");
+			}
+			columns.append(entry.getKey());
+			values.append("?");
+			bound[i++] = entry.getValue();
 		}
-		return query;
-
+		return new Query("INSERT INTO " + table + " (" + columns
+				+ ") VALUES (" + values + ");", bound);
 	}
 
 	/**
@@ -165,13 +882,20 @@ public class DatabaseConnection {
 	 *            The ID of the row to be updated.
 	 * @return The SQL UPDATE query.
 	 */
-	public static String createUpdateQuery(Map<String, String> parameters,
+	public static Query createUpdateQuery(Map<String, ?> parameters,
 			String table, int id) {
-		String sql = "UPDATE " + table + " SET ";
-		for (Map.Entry<String, String> entry : parameters.entrySet()) {
-			sql += entry.getKey() + " = '" + entry.getValue() + "', ";
+		StringBuilder sql = new StringBuilder("UPDATE " + table + " SET ");
+		Object[] bound = new Object[parameters.size() + 1];
+		int i = 0;
+		for (Map.Entry<String, ?> entry : parameters.entrySet()) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(entry.getKey()).append(" = ?");
+			bound[i++] = entry.getValue();
 		}
-		return sql.substring(0, sql.length() - 2) + " WHERE id = '" + id + "';";
+		bound[i] = id;
+		return new Query(sql.append(" WHERE id = ?;").toString(), bound);
 	}
 
 	/**
@@ -183,21 +907,8 @@ public class DatabaseConnection {
 	 * @throws NoSuchItemException
 	 */
 	public static int getIDFromUsername(String username) {
-		int id = -1;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet result = dbc
-				.executeWithResult("SELECT id FROM users WHERE username = '"
-						+ username + "';");
-		try {
-			if (!result.isClosed())
-				id = result.getInt("id");
-			result.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return id;
+		return DatabaseConnection.getInstance().queryForInt(-1, USER_ID_SQL,
+				username);
 	}
 
 	/**
@@ -211,19 +922,16 @@ public class DatabaseConnection {
 	public static List<String> getCharactersForUser(String username) {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 		List<String> characterList = new ArrayList<String>();
-		ResultSet result;
+		ResultSet result = null;
 		try {
-			int id = DatabaseConnection.getIDFromUsername(username);
-			result = dbc
-					.executeWithResult("SELECT name FROM characters JOIN usercharacters "
-							+ "ON characters.id = usercharacters.characterid WHERE usercharacters.userid = '"
-							+ id + "';");
+			result = dbc.query(USER_CHARACTERS_SQL, username);
 			while (result.next()) {
 				characterList.add(result.getString(1));
 			}
-			result.close();
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			dbc.release(result);
 		}
 
 		return characterList;
@@ -238,20 +946,8 @@ public class DatabaseConnection {
 	 * @throws NoSuchItemException
 	 */
 	public static int getIDFromCharacter(String character) {
-		int id = -1;
-		String cleaned = character.replace("'", "''");
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet result = dbc
-				.executeWithResult("SELECT id FROM characters WHERE name = '"
-						+ cleaned + "';");
-		try {
-			id = result.getInt("id");
-			if (!result.isClosed())
-				result.close();
-		} catch (SQLException e) {
-
-		}
-		return id;
+		return DatabaseConnection.getInstance().queryForInt(-1,
+				CHARACTER_ID_SQL, character);
 	}
 
 	/**
@@ -270,13 +966,7 @@ public class DatabaseConnection {
 		username = username.replace("'", "");
 		username = username.replace(";", "");
 		try {
-			dbc.execute("INSERT INTO users (username, password, name, createdate, admin) VALUES ('"
-					+ username
-					+ "', '"
-					+ password
-					+ "', '"
-					+ name
-					+ "', datetime('now'), 'false');");
+			dbc.update(INSERT_USER_SQL, username, password, name);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -309,22 +999,11 @@ public class DatabaseConnection {
 		int maxap = classType.getMaxAP(1);
 
 		try {
-			dbc.execute("INSERT INTO characters (name, level, hp, ap, location, classid, isonline, experience, lights, maxhp, maxap) VALUES ('"
-					+ name
-					+ "', '1', '"
-					+ hp
-					+ "', '"
-					+ ap
-					+ "', '1', '"
-					+ classid
-					+ "', 'true', '0','false', '"
-					+ maxhp
-					+ "', '"
-					+ maxap + "');");
-			dbc.execute("INSERT INTO usercharacters (userid, characterid) VALUES ('"
-					+ DatabaseConnection.getIDFromUsername(user)
-					+ "', '"
-					+ DatabaseConnection.getIDFromCharacter(name) + "');");
+			dbc.update(INSERT_CHARACTER_SQL, name, hp, ap, classid, maxhp,
+					maxap);
+			dbc.update(INSERT_USER_CHARACTER_SQL,
+					DatabaseConnection.getIDFromUsername(user),
+					DatabaseConnection.getIDFromCharacter(name));
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -336,115 +1015,11 @@ public class DatabaseConnection {
 	 * 
 	 * @param roomID
 	 *            The room whose items we are querying.
-	 * @param names
-	 *            Whether or not names are displayed instead of item IDs.
-	 * @return Map<"Item name", "Quantity"> of items in a given room.
+	 * @return Map<Item name, Quantity> of items in a given room.
 	 */
-	public static Map<String, String> getItemNamesForRoom(int roomID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		Map<String, String> itemsInRoom = new HashMap<String, String>();
-		ResultSet result;
-		try {
-			result = dbc
-					.executeWithResult("SELECT itemid, quantity FROM roomitems WHERE roomid = '"
-							+ roomID + "';");
-			while (result.next()) {
-				Item item = new Item(Integer.parseInt(result
-						.getString("itemid")));
-				itemsInRoom.put(item.get("name"), result.getString("quantity"));
-			}
-			result.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return itemsInRoom;
-	}
-
-	public static Map<Integer, Integer> getItemIDsForRoom(int roomID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		Map<Integer, Integer> itemsInRoom = new HashMap<Integer, Integer>();
-		ResultSet result;
-		try {
-			result = dbc
-					.executeWithResult("SELECT itemid, quantity FROM roomitems WHERE roomid = '"
-							+ roomID + "';");
-			while (result.next()) {
-				Item item = new Item(Integer.parseInt(result
-						.getString("itemid")));
-
-				itemsInRoom.put(item.getID(),
-						Integer.parseInt(result.getString("quantity")));
-
-			}
-			result.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return itemsInRoom;
-	}
-
-	/**
-	 * Retrieves a Map<"Item name", "Quantity"> of items in a given room.
-	 * 
-	 * @param roomID
-	 *            The room whose items we are querying.
-	 * @return Map<Item name, Quantity> of items in a given room.
-	 */
-	public static Map<Integer, Integer> getItemsForRoom(int roomID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		Map<Integer, Integer> itemsInRoom = new HashMap<Integer, Integer>();
-
-		try {
-			ResultSet rs = dbc
-					.executeWithResult("SELECT itemid, quantity FROM roomitems WHERE roomid = '"
-							+ roomID + "';");
-			while (rs.next()) {
-				itemsInRoom.put(rs.getInt(1), rs.getInt(2));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return itemsInRoom;
-	}
-
-	/**
-	 * Retrieves the inventory for a given character.
-	 * 
-	 * @param characterID
-	 *            The ID of the character whose inventory we are querying.
-	 * @param names
-	 *            Whether or not to display a Map<"Item ID", "Quantity" or
-	 *            Map<"Item name", "Quantity">
-	 * @return Map<"Item ID", "Quantity"> or Map<"Item name", "Quantity"> if
-	 *         names==true.
-	 */
-	public static Map<String, String> getInventoryForCharacter(int characterID,
-			boolean names) {
-		Map<String, String> inventory = new HashMap<String, String>();
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item, quantity FROM inventory JOIN characters ON characters.id = inventory.character WHERE inventory.character = '"
-						+ characterID + "';");
-		try {
-			while (rs.next()) {
-
-				Item item = new Item(Integer.parseInt(rs.getString(1)));
-				if (names) {
-					inventory.put(item.get("name"), rs.getString(2));
-				} else {
-					inventory.put(item.getID() + "", rs.getString(2));
-				}
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return inventory;
+	public static Map<Integer, Integer> getItemsForRoom(int roomID) {
+		return DatabaseConnection.getInstance().queryForIntMap(ROOM_ITEMS_SQL,
+				roomID);
 	}
 
 	/**
@@ -452,221 +1027,11 @@ public class DatabaseConnection {
 	 * 
 	 * @param characterID
 	 *            The ID of the character whose inventory we are querying.
-	 * @param names
-	 *            Whether or not to display a Map<"Item ID", "Quantity" or
-	 *            Map<"Item name", "Quantity">
 	 * @return Map<ItemID, Quantity>
 	 */
 	public static Map<Integer, Integer> getInventoryForCharacter(int characterID) {
-		Map<Integer, Integer> inventory = new HashMap<Integer, Integer>();
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item, quantity FROM inventory JOIN characters ON characters.id = inventory.character WHERE inventory.character = '"
-						+ characterID + "';");
-		try {
-			while (rs.next()) {
-				inventory.put(rs.getInt(1), rs.getInt(2));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return inventory;
-	}
-
-	/**
-	 * Adds the given itemID to the given characterID.
-	 * 
-	 * @param characterID
-	 *            The ID of the character to add the item to.
-	 * @param itemID
-	 *            The ID of the item to add to the character.
-	 */
-	public static void addItemToCharacter(int characterID, int itemID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item, quantity FROM inventory JOIN characters ON characters.id = inventory.character WHERE inventory.character = '"
-						+ characterID + "';");
-
-		Map<Integer, Integer> itemIDquantity = new HashMap<Integer, Integer>();
-
-		try {
-			while (rs.next()) {
-				itemIDquantity.put(rs.getInt(1), rs.getInt(2));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		if (itemIDquantity.containsKey(itemID)) {
-			// update quantities.
-			int quantity = itemIDquantity.get(itemID);
-			try {
-				dbc.execute("UPDATE inventory SET quantity = '"
-						+ (quantity + 1) + "' WHERE character = '"
-						+ characterID + "' AND item = '" + itemID + "';");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		} else {
-			try {
-				dbc.execute("INSERT INTO inventory (character, item, quantity) VALUES ('"
-						+ characterID + "', '" + itemID + "', '1');");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
-	/**
-	 * Removes the given item ID from the given room.
-	 * 
-	 * @param roomID
-	 *            The room ID to remove the item from.
-	 * @param itemID
-	 *            The item ID to remove from the room.
-	 * @return Whether or not the item was removed.
-	 */
-	public static void removeItemFromRoom(int roomID, int itemID) {
-
-		Map<Integer, Integer> itemsInRoom = DatabaseConnection
-				.getItemIDsForRoom(roomID);
-
-		if (itemsInRoom.containsKey(itemID)) {
-			DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-			int quantity = itemsInRoom.get(itemID);
-
-			if (quantity < 2) {
-				// remove entry from roomitems
-				try {
-					dbc.execute("DELETE FROM roomitems WHERE roomid = '"
-							+ roomID + "' AND itemID = '" + itemID + "';");
-
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			} else if (quantity >= 2) {
-				// update entry in roomitems
-				try {
-					dbc.execute("UPDATE roomitems SET quantity ='"
-							+ (quantity - 1) + "' WHERE roomid ='" + roomID
-							+ "' AND itemid ='" + itemID + "';");
-
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-	}
-
-	/**
-	 * Removes the given item ID from the given character.
-	 * 
-	 * @param characterID
-	 *            The character ID to remove the item from.
-	 * @param itemID
-	 *            The item ID to remove from the character.
-	 * @return Whether or not the item was removed.
-	 */
-	public static void removeItemFromCharacter(int characterID, int itemID) {
-
-		Map<Integer, Integer> characterItems = DatabaseConnection
-				.getInventoryForCharacter(characterID);
-
-		if (characterItems.containsKey(itemID)) {
-			int quantity = characterItems.get(itemID);
-
-			DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-			if (quantity < 2) {
-				try {
-					dbc.execute("DELETE FROM inventory WHERE character ='"
-							+ characterID + "' AND item = '" + itemID + "';");
-
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			} else if (quantity >= 2) {
-				try {
-					dbc.execute("UPDATE inventory SET quantity ='"
-							+ (quantity - 1) + "' WHERE character = '"
-							+ characterID + "' AND item = '" + itemID + "';");
-
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-	}
-
-	/**
-	 * Adds the given item to the given room.
-	 * 
-	 * @param roomID
-	 *            The room ID to add the item to.
-	 * @param itemID
-	 *            The item ID to add to the room.
-	 */
-	public static void addItemToRoom(int roomID, int itemID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		Map<Integer, Integer> itemIDquantity = DatabaseConnection
-				.getItemIDsForRoom(roomID);
-
-		if (itemIDquantity.containsKey(itemID)) {
-			// update quantities.
-			int quantity = itemIDquantity.get(itemID);
-			try {
-				dbc.execute("UPDATE roomitems SET quantity = '"
-						+ (quantity + 1) + "' WHERE roomid = '" + roomID
-						+ "' AND itemid = '" + itemID + "';");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		} else {
-			try {
-				dbc.execute("INSERT INTO roomitems (roomid, itemid, quantity) VALUES ('"
-						+ roomID + "', '" + itemID + "', '1');");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
-	/**
-	 * Retrieves the item id of the given item name.
-	 * 
-	 * @param name
-	 *            The name of the item whose ID we are querying.
-	 * @return Item id of the given item name.
-	 */
-	public static int getIDFromItemName(String name) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT id FROM items WHERE name = '" + name
-						+ "';");
-		int id = -1;
-		try {
-			id = rs.getInt(1);
-			rs.close();
-		} catch (SQLException e) {
-			try {
-				rs.close();
-			} catch (SQLException e1) {
-			}
-			return id;
-		}
-
-		return id;
+		return DatabaseConnection.getInstance().queryForIntMap(INVENTORY_SQL,
+				characterID);
 	}
 
 	/**
@@ -677,27 +1042,7 @@ public class DatabaseConnection {
 	 * @return The damage bonus from items equipped for the given Character.
 	 */
 	public static int getDamageBonusForCharacter(int characterID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item FROM characterequip WHERE character = '"
-						+ characterID + "';");
-		int damage = 0;
-		try {
-			while (rs.next()) {
-				ResultSet rs2 = dbc
-						.executeWithResult("SELECT effectamount FROM items WHERE id = '"
-								+ rs.getString(1) + "' AND type = 'WEAPON';");
-				if (!rs2.isClosed())
-					damage += Integer.parseInt(rs2.getString(1));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return damage;
+		return getEquippedBonus(characterID, "WEAPON");
 	}
 
 	/**
@@ -706,611 +1051,167 @@ public class DatabaseConnection {
 	 * @param character
 	 *            The Character ID of the Character whose armor bonus we want.
 	 * @return The armor bonus from items equipped for the given Character.
-	 */
-	public static int getArmorBonusForCharacter(int characterID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item FROM characterequip WHERE character = '"
-						+ characterID + "';");
-		int armor = 0;
-		try {
-			while (rs.next()) {
-				ResultSet rs2 = dbc
-						.executeWithResult("SELECT effectamount FROM items WHERE id = '"
-								+ rs.getString(1) + "' AND type = 'ARMOR';");
-				if (!rs2.isClosed())
-					armor += Integer.parseInt(rs2.getString(1));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return armor;
-	}
-
-	/**
-	 * Gets the kills the given Character has made.
-	 * 
-	 * @param character
-	 *            The Character ID of the Character whose kills we want.
-	 * @return The kills the given Character has made.
-	 */
-	public static Map<Integer, Integer> getKillsForCharacter(int characterID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT mob, quantity FROM characterkills WHERE character = '"
-						+ characterID + "';");
-
-		Map<Integer, Integer> kills = new HashMap<Integer, Integer>();
-
-		try {
-			while (rs.next()) {
-				kills.put(Integer.parseInt(rs.getString(1)),
-						Integer.parseInt(rs.getString(2)));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return kills;
-	}
-
-	/**
-	 * Adds a kill to the given Character.
-	 * 
-	 * @param characterID
-	 *            The Character to add the kill to.
-	 * @param mobID
-	 *            The Mob that the Character killed.
-	 */
-	public static void addKill(int characterID, int mobID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		Map<Integer, Integer> kills = DatabaseConnection
-				.getKillsForCharacter(characterID);
-		if (kills.containsKey(mobID)) {
-			// The kill is already in the database, so let's update the
-			// quantity.
-			try {
-				dbc.execute("UPDATE characterkills SET quantity = '"
-						+ (kills.get(mobID) + 1) + "' WHERE character = '"
-						+ characterID + "' AND mob = '" + mobID + "';");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		} else {
-			// The kill is not in the database, so let's insert it into the
-			// database.
-			try {
-				dbc.execute("INSERT INTO characterkills (character, mob, quantity) VALUES ('"
-						+ characterID + "','" + mobID + "', '1');");
-
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
-	/**
-	 * Gets the item ID and and item type of items equipped on a given
-	 * Character.
-	 * 
-	 * @param characterID
-	 *            The ID of the Character whose equipped items we want.
-	 * @return The item ID and and item type of items equipped on a given
-	 *         Character.
-	 */
-	public static Map<Integer, String> getEquippedItems(int characterID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		Map<Integer, String> equippedItems = new HashMap<Integer, String>();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT item, type FROM characterequip WHERE character = '"
-						+ characterID + "';");
-
-		try {
-			while (rs.next()) {
-				equippedItems.put(Integer.parseInt(rs.getString(1)),
-						rs.getString(2));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return equippedItems;
-	}
-
-	/**
-	 * Equip an item to a Character.
-	 * 
-	 * @param characterID
-	 *            The ID of the Character to equip an Item to.
-	 * @param itemID
-	 *            The ID of the Item to equip to the Character.
-	 */
-	public static void equipItem(int characterID, int itemID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		Item item = new Item(itemID);
-		try {
-			dbc.execute("INSERT INTO characterequip (character, item, type) VALUES ('"
-					+ characterID
-					+ "', '"
-					+ itemID
-					+ "', '"
-					+ item.get("type")
-					+ "');");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Un-equip an item to a Character.
-	 * 
-	 * @param characterID
-	 *            The ID of the Character to remove the Item from.
-	 * @param itemID
-	 *            The ID of the Item to remove from the Character.
-	 */
-	public static void unequipItem(int characterID, int itemID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			dbc.execute("DELETE FROM characterequip WHERE character ='"
-					+ characterID + "' AND item = '" + itemID + "';");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	public static void healCharacterHP(int characterID, int effectAmount) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			Character c = new Character(characterID);
-
-			if (c.getID() == -1) {
-				return;
-			}
-
-			int level = Integer.parseInt(c.get("level"));
-
-			int newHP = Integer.parseInt(c.get("hp")) + effectAmount;
-
-			if (newHP > c.getMaxHP(level))
-				dbc.execute("UPDATE characters SET hp = '" + c.getMaxHP(level)
-						+ "' WHERE id = '" + characterID + "';");
-			else
-				dbc.execute("UPDATE characters SET hp = '" + newHP
-						+ "' WHERE id = '" + characterID + "';");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	public static void healCharacterAP(int characterID, int effectAmount) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			Character c = new Character(characterID);
-
-			if (c.getID() == -1) {
-				return;
-			}
-
-			int level = Integer.parseInt(c.get("level"));
-
-			int newAP = Integer.parseInt(c.get("hp")) + effectAmount;
-
-			if (newAP > c.getMaxAP(level))
-				dbc.execute("UPDATE characters SET ap = '" + c.getMaxAP(level)
-						+ "' WHERE id = '" + characterID + "';");
-			else
-				dbc.execute("UPDATE characters SET ap = '" + newAP
-						+ "' WHERE id = '" + characterID + "';");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Turns lights on for a Character.
-	 * 
-	 * @param characterID
-	 *            The Character whose lights to turn on.
-	 */
-	public static void turnLightsOn(int characterID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			dbc.execute("UPDATE characters SET lights = 'true';");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Turns lights off for a Character.
-	 * 
-	 * @param characterID
-	 *            The Character whose lights to turn off.
-	 */
-	public static void turnLightsOff(int characterID) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			dbc.execute("UPDATE characters SET lights = 'false';");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Returns whether or not a User is an administrator.
-	 * 
-	 * @param userID
-	 *            The User ID to query.
-	 * @return Whether or not a User is an administrator.
-	 */
-	public static boolean isAdmin(int userID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT admin FROM users WHERE id = '"
-						+ userID + "';");
-
-		boolean isAdmin = false;
-		try {
-			isAdmin = Boolean.parseBoolean(rs.getString(1));
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return isAdmin;
-	}
-
-	/**
-	 * Gets a list of IDs for NPCs that are permanent and unattackable.
-	 * 
-	 * @param i
-	 * 
-	 * @return A list of IDs for NPCs that are permanent and unattackable.
-	 */
-	public static List<Integer> getPermanentNPCs(int roomID) {
-
-		List<Integer> npcs = new ArrayList<Integer>();
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT id FROM npcs WHERE homeroom ='"
-						+ roomID + "';");
-		try {
-			while (rs.next()) {
-				npcs.add(rs.getInt(1));
-			}
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return npcs;
-	}
-
-	public static String getItemDescription(int itemID) {
-
-		String description = "";
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT description FROM items WHERE id = '"
-						+ itemID + "';");
-		try {
-			description = rs.getString(1);
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return description;
-	}
-
-	public static int getNumberOfMobs() {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult("SELECT COUNT(*) FROM roommobs;");
-		int numMobs = 0;
-		try {
-			numMobs = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return numMobs;
-	}
-
-	public static int getNumberOfRooms() {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult("SELECT COUNT(*) FROM rooms;");
-		int numRooms = 0;
-		try {
-			numRooms = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return numRooms;
-	}
-
-	public static void addMob(int mobid, int uid, int hp, int location,
-			String name, int level) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		try {
-			dbc.execute("INSERT INTO roommobs (mobid, uid, hp, location, name, attacked, attackerid, lastattacked, level) VALUES ('"
-					+ mobid
-					+ "', '"
-					+ uid
-					+ "', '"
-					+ hp
-					+ "', '"
-					+ location
-					+ "', '"
-					+ name
-					+ "', 'false', '0', '"
-					+ Calendar.getInstance().getTimeInMillis()
-					+ "', '"
-					+ level
-					+ "');");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	public static String getMobName(int uid) {
-
-		String name = "";
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT name FROM roommobs WHERE uid = '"
-						+ uid + "';");
-
-		try {
-			if (rs.next())
-				name = rs.getString(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return name;
-	}
-
-	public static int getMobIDFromClass(String mobClass) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT id FROM mobs WHERE mobclass = '"
-						+ mobClass + "';");
-
-		int mobid = 0;
-
-		try {
-			mobid = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return mobid;
-	}
-
-	public static void removeAllMobs() {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			dbc.execute("DELETE FROM roommobs;");
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+	 */
+	public static int getArmorBonusForCharacter(int characterID) {
+		return getEquippedBonus(characterID, "ARMOR");
 	}
 
-	public static List<Integer> getMobs(int roomID) {
-		List<Integer> mobs = new ArrayList<Integer>();
-
+	private static int getEquippedBonus(int characterID, String type) {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT uid FROM roommobs WHERE location ='"
-						+ roomID + "';");
+		int bonus = 0;
+		ResultSet rs = null;
 		try {
+			rs = dbc.query(EQUIPPED_BONUS_SQL, characterID, type);
 			while (rs.next()) {
-				mobs.add(rs.getInt(1));
+				bonus += Integer.parseInt(rs.getString(1));
 			}
-			rs.close();
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			dbc.release(rs);
 		}
-		return mobs;
-	}
-
-	public static boolean isBanned(String IP) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT id FROM bannedips WHERE ip = '" + IP
-						+ "';");
 
-		int i = 0;
-		try {
-			if (!rs.isClosed())
-				i = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return (i > 0);
+		return bonus;
 	}
 
-	public static void banByIP(String IP) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		try {
-			dbc.execute("INSERT INTO bannedips (ip) VALUES ('" + IP + "');");
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Gets the kills the given Character has made.
+	 * 
+	 * @param character
+	 *            The Character ID of the Character whose kills we want.
+	 * @return The kills the given Character has made.
+	 */
+	public static Map<Integer, Integer> getKillsForCharacter(int characterID) {
+		return DatabaseConnection.getInstance().queryForIntMap(KILLS_SQL,
+				characterID);
 	}
 
-	public static int getMobIDFromID(int uid) {
+	/**
+	 * Adds a kill to the given Character.
+	 * 
+	 * @param characterID
+	 *            The Character to add the kill to.
+	 * @param mobID
+	 *            The Mob that the Character killed.
+	 */
+	public static void addKill(int characterID, int mobID) {
 
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
-		ResultSet rs = dbc
-				.executeWithResult("SELECT mobid FROM roommobs WHERE uid = '"
-						+ uid + "';");
-
-		int mobID = -1;
+		Map<Integer, Integer> kills = DatabaseConnection
+				.getKillsForCharacter(characterID);
 		try {
-			mobID = rs.getInt(1);
+			if (kills.containsKey(mobID)) {
+				// The kill is already in the database, so let's update the
+				// quantity.
+				dbc.update(UPDATE_KILL_SQL, kills.get(mobID) + 1, characterID,
+						mobID);
+			} else {
+				// The kill is not in the database, so let's insert it into the
+				// database.
+				dbc.update(INSERT_KILL_SQL, characterID, mobID);
+			}
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
-		return mobID;
 	}
 
-	public static int getMobLocation(int uid) {
-
-		int location = 0;
+	/**
+	 * Gets the item ID and and item type of items equipped on a given
+	 * Character.
+	 * 
+	 * @param characterID
+	 *            The ID of the Character whose equipped items we want.
+	 * @return The item ID and and item type of items equipped on a given
+	 *         Character.
+	 */
+	public static Map<Integer, String> getEquippedItems(int characterID) {
 
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
+		Map<Integer, String> equippedItems = new HashMap<Integer, String>();
 
-		ResultSet rs = dbc
-				.executeWithResult("SELECT location FROM roommobs WHERE uid = '"
-						+ uid + "';");
-
-		try {
-			location = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return location;
-	}
-
-	public static void setMobLocation(int uid, int roomID) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
+		ResultSet rs = null;
 		try {
-			dbc.execute("UPDATE roommobs SET location = '" + roomID
-					+ "' WHERE uid = '" + uid + "';");
+			rs = dbc.query(EQUIPPED_ITEMS_SQL, characterID);
+			while (rs.next()) {
+				equippedItems.put(rs.getInt(1), rs.getString(2));
+			}
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			dbc.release(rs);
 		}
-	}
-
-	public static boolean isMobAttacked(int uid) {
-
-		boolean isAttacked = false;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT attacked FROM roommobs WHERE uid = '"
-						+ uid + "';");
 
-		try {
-			isAttacked = Boolean.parseBoolean(rs.getString(1));
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return isAttacked;
+		return equippedItems;
 	}
 
-	public static int getMobAttacker(int uid) {
-
-		int id = 0;
+	/**
+	 * Equip an item to a Character.
+	 * 
+	 * @param characterID
+	 *            The ID of the Character to equip an Item to.
+	 * @param itemID
+	 *            The ID of the Item to equip to the Character.
+	 */
+	public static void equipItem(int characterID, int itemID) {
 
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT attackerid FROM roommobs WHERE uid = '"
-						+ uid + "';");
-
+		Item item = ContentCatalog.get().getItem(itemID);
 		try {
-			id = rs.getInt(1);
+			dbc.update(INSERT_EQUIPPED_SQL, characterID, itemID,
+					item.getType().name());
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
-		return id;
 	}
 
-	public static void setMobAttacked(int uid, int characterID, boolean attacked) {
+	/**
+	 * Un-equip an item to a Character.
+	 * 
+	 * @param characterID
+	 *            The ID of the Character to remove the Item from.
+	 * @param itemID
+	 *            The ID of the Item to remove from the Character.
+	 */
+	public static void unequipItem(int characterID, int itemID) {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
 		try {
-			dbc.execute("UPDATE roommobs SET attacked = '" + attacked
-					+ "', attackerid = '" + characterID + "' WHERE uid = '"
-					+ uid + "';");
+			dbc.update(DELETE_EQUIPPED_SQL, characterID, itemID);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 	}
 
-	public static int getMobHP(int uid) {
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		int hp = 0;
-		ResultSet rs = dbc
-				.executeWithResult("SELECT hp FROM roommobs WHERE uid ='" + uid
-						+ "';");
-		try {
-			hp = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return hp;
+	/**
+	 * Returns whether or not a User is an administrator.
+	 * 
+	 * @param userID
+	 *            The User ID to query.
+	 * @return Whether or not a User is an administrator.
+	 */
+	public static boolean isAdmin(int userID) {
+		return toBoolean(DatabaseConnection.getInstance().queryForString(null,
+				ADMIN_SQL, userID));
 	}
 
-	public static void setMobHP(int uid, int hp) {
+	public static void removeAllMobs() {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
 		try {
-			dbc.execute("UPDATE roommobs SET hp = '" + hp + "' WHERE uid = '"
-					+ uid + "';");
+			dbc.update("DELETE FROM roommobs;");
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 	}
 
-	public static int getMobExpValue(int id) {
-		int exp = 0;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT expvalue FROM mobs WHERE id ='" + id
-						+ "';");
-
-		try {
-			exp = rs.getInt(1);
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return exp;
+	public static boolean isBanned(String IP) {
+		return DatabaseConnection.getInstance().queryForInt(0, BANNED_IP_SQL,
+				IP) > 0;
 	}
 
-	public static void removeMob(int uid) {
+	public static void banByIP(String IP) {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
 		try {
-			dbc.execute("DELETE FROM roommobs WHERE uid = '" + uid + "';");
+			dbc.update(INSERT_BANNED_IP_SQL, IP);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1320,8 +1221,7 @@ public class DatabaseConnection {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
 		try {
-			dbc.execute("UPDATE users SET banned = '" + banned
-					+ "' WHERE id = '" + userID + "';");
+			dbc.update(SET_BANNED_SQL, fromBoolean(banned), userID);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1331,7 +1231,7 @@ public class DatabaseConnection {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
 		try {
-			dbc.execute("DELETE FROM users WHERE id = '" + id + "';");
+			dbc.update(DELETE_USER_SQL, id);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -1341,222 +1241,44 @@ public class DatabaseConnection {
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
 		try {
-			dbc.execute("DELETE FROM characters WHERE id = '" + id + "';");
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	public static int getMobLevel(int uid) {
-		int level = 0;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-		ResultSet rs = dbc
-				.executeWithResult("SELECT level FROM roommobs WHERE uid ='"
-						+ uid + "';");
-
-		try {
-			level = rs.getInt(1);
+			dbc.update(DELETE_CHARACTER_SQL, id);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
-
-		return level;
 	}
 
 	public static List<Integer> getCharacters() {
-		List<Integer> idList = new ArrayList<Integer>();
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult("SELECT id FROM characters;");
-
-		try {
-			while (rs.next()) {
-				idList.add(rs.getInt(1));
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return idList;
+		return DatabaseConnection.getInstance().queryForInts(
+				"SELECT id FROM characters;");
 	}
 
 	public static List<Integer> getCharacterLevels() {
-
-		List<Integer> levels = new ArrayList<Integer>();
-		List<Integer> idList = new ArrayList<Integer>();
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult(" SELECT characterid FROM usercharacters "
-						+ "JOIN users WHERE users.banned = 'false' "
-						+ "AND users.id = usercharacters.userid;");
-
-		try {
-			while (rs.next()) {
-				idList.add(rs.getInt(1));
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		for (int i : idList) {
-			ResultSet rs2 = dbc
-					.executeWithResult("SELECT level FROM characters WHERE id = '"
-							+ i + "';");
-			try {
-				if (!rs.isClosed())
-					levels.add(rs2.getInt(1));
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		}
-		return levels;
-	}
-
-	public static String getLockedDoor(int roomID) {
-
-		String lockedDoor = "";
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult(" SELECT door FROM rooms "
-				+ "WHERE id = '" + roomID + "';");
-		try {
-			if (!rs.isClosed())
-				lockedDoor = rs.getString(1);
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return lockedDoor;
-	}
-
-	public static int getRequiredLock(int roomID) {
-
-		int itemID = 0;
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult(" SELECT requireditem FROM rooms "
-				+ "WHERE id = '" + roomID + "';");
-		try {
-			if (!rs.isClosed())
-				itemID = rs.getInt(1);
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return itemID;
-	}
-
-	public static void setDoorLocked(int roomID, boolean locked) {
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		try {
-			dbc.execute("UPDATE rooms SET locked = '" + locked
-					+ "' WHERE id = '" + roomID + "';");
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
-
-	public static boolean getDoorLocked(int roomID) {
-
-		boolean locked = false;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult(" SELECT locked FROM rooms "
-				+ "WHERE id = '" + roomID + "';");
-		try {
-			locked = Boolean.parseBoolean(rs.getString(1));
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return locked;
-	}
-
-	public static List<Integer> getNpcs() {
-
-		List<Integer> npcs = new ArrayList<Integer>();
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc.executeWithResult("SELECT id FROM npcs;");
-
-		try {
-			while (rs.next()) {
-				npcs.add(rs.getInt(1));
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return npcs;
-	}
-
-	public static int getIDFromNPCName(String name) {
-
-		int id = -1;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT id FROM npcs WHERE name = '" + name
-						+ "';");
-
-		try {
-			if (!rs.isClosed()) {
-				id = rs.getInt(1);
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return id;
+		return DatabaseConnection.getInstance().queryForInts(
+				"SELECT characters.level FROM usercharacters "
+						+ "JOIN users ON users.id = usercharacters.userid "
+						+ "JOIN characters ON characters.id = usercharacters.characterid "
+						+ "WHERE users.banned = 0;");
 	}
 
 	public static List<Integer[]> getNPCInventory(int id) {
 		List<Integer[]> npcInventory = new ArrayList<Integer[]>();
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
-		ResultSet rs = dbc
-				.executeWithResult("SELECT itemid, quantity, price FROM npcinventory WHERE npcid = '"
-						+ id + "';");
-
+		ResultSet rs = null;
 		try {
+			rs = dbc.query(NPC_INVENTORY_SQL, id);
 			while (rs.next()) {
 				Integer[] entry = { rs.getInt(1), rs.getInt(2), rs.getInt(3) };
 				npcInventory.add(entry);
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			dbc.release(rs);
 		}
 		return npcInventory;
 	}
 
-	public static int getBottleCapsForCharacter(int id) {
-
-		int caps = 0;
-
-		DatabaseConnection dbc = DatabaseConnection.getInstance();
-
-		ResultSet rs = dbc
-				.executeWithResult("SELECT quantity FROM inventory WHERE item='21' AND character='"
-						+ id + "';");
-
-		try {
-			if (!rs.isClosed()) {
-				caps = rs.getInt(1);
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return caps;
-	}
-
 	public static void removeItemFromNPC(int npcID, int itemID) {
 
 		List<Integer[]> npcItems = DatabaseConnection.getNPCInventory(npcID);
@@ -1576,21 +1298,14 @@ public class DatabaseConnection {
 
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
-		if (quantity < 2) {
-			try {
-				dbc.execute("DELETE FROM npcinventory WHERE npcid = '" + npcID
-						+ "' AND itemid = '" + itemID + "';");
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		} else if (quantity >= 2) {
-			try {
-				dbc.execute("UPDATE npcinventory SET quantity = '"
-						+ (quantity - 1) + "' WHERE npcid = '" + npcID
-						+ "' AND itemid = '" + itemID + "';");
-			} catch (SQLException e) {
-				e.printStackTrace();
+		try {
+			if (quantity < 2) {
+				dbc.update(DELETE_NPC_ITEM_SQL, npcID, itemID);
+			} else {
+				dbc.update(UPDATE_NPC_ITEM_SQL, quantity - 1, npcID, itemID);
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -1609,21 +1324,14 @@ public class DatabaseConnection {
 
 		DatabaseConnection dbc = DatabaseConnection.getInstance();
 
-		if (containsItem) {
-			try {
-				dbc.execute("UPDATE npcinventory SET quantity = '"
-						+ (quantity + 1) + "' WHERE npcid = '" + npcID
-						+ "' AND itemid = '" + itemID + "';");
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
-		} else {
-			try {
-				dbc.execute("INSERT INTO npcinventory (npcid, itemid, quantity, price) VALUES ('"
-						+ npcID + "', '" + itemID + "', '1', '" + price + "');");
-			} catch (SQLException e) {
-				e.printStackTrace();
+		try {
+			if (containsItem) {
+				dbc.update(UPDATE_NPC_ITEM_SQL, quantity + 1, npcID, itemID);
+			} else {
+				dbc.update(INSERT_NPC_ITEM_SQL, npcID, itemID, price);
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -2,29 +2,56 @@ package library;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class is a superclass for every object loaded from the database.
- * 
+ *
+ * Each subclass declares the columns of its table it uses and keeps them in
+ * typed fields, so reading one is a field access rather than a map lookup
+ * and a parse. It reads its fields from a row in read, and hands back what
+ * to store for a column in getColumn.
+ *
+ * It keeps track of which columns were changed since it was last loaded or
+ * saved, so saving only writes those columns, and doesn't write at all when
+ * nothing changed. Setters in subclasses call changed for that.
+ *
  * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
- * 
+ *
  */
-public class DatabaseObject {
+public abstract class DatabaseObject {
 
-	protected Map<String, String> params;
 	protected int id;
-	protected String table;
+	private String table;
+	private String[] columns;
+	private boolean exists;
+	private Set<String> changed;
 
-	public DatabaseObject(int id) {
-		params = new HashMap<String, String>();
+	/**
+	 * Creates a DatabaseObject for a row of the given table.
+	 *
+	 * @param id
+	 *            The ID of the row.
+	 * @param table
+	 *            The table the row is in.
+	 * @param columns
+	 *            The columns this DatabaseObject reads and writes, without
+	 *            id.
+	 */
+	protected DatabaseObject(int id, String table, String... columns) {
 		this.id = id;
+		this.table = table;
+		this.columns = columns;
+		this.changed = new HashSet<String>();
 	}
 
 	/**
 	 * Gets this DatabaseObject's ID.
-	 * 
+	 *
 	 * @return This DatabaseObject's ID.
 	 */
 	public int getID() {
@@ -32,32 +59,12 @@ public class DatabaseObject {
 	}
 
 	/**
-	 * Gets this DatabaseObject's parameters.
-	 * 
-	 * @return This DatabaseObject's parameters.
-	 */
-	public Map<String, String> getParameters() {
-		return this.params;
-	}
-
-	/**
-	 * Sets this DatabaseObject's parameters to given params.
-	 * 
-	 * @param params
-	 *            The parameters to set to.
+	 * Gets whether this DatabaseObject's row was found when it was loaded.
+	 *
+	 * @return True if the row exists.
 	 */
-	public void setParameters(Map<String, String> params) {
-		this.params = params;
-	}
-
-	/**
-	 * Sets this DatabaseObject's table to given table.
-	 * 
-	 * @param table
-	 *            The table to set this DatabaseObject to.
-	 */
-	public void setTableName(String table) {
-		this.table = table;
+	public boolean exists() {
+		return exists;
 	}
 
 	/**
@@ -69,95 +76,173 @@ public class DatabaseObject {
 
 	/**
 	 * Loads data from the database from the given ID.
-	 * 
+	 *
 	 * @param id
 	 *            The ID to load from.
 	 */
-	public void load(int id) {
+	public synchronized void load(int id) {
 		if (id < 1) {
 			return;
 		}
+		StringBuilder sql = new StringBuilder("SELECT ");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "" : ", ").append(columns[i]);
+		}
+		sql.append(" FROM ").append(table).append(" WHERE id = ?;");
+
 		DatabaseConnection db = DatabaseConnection.getInstance();
-		ResultSet result = db.executeWithResult("select * from " + table
-				+ " where id = '" + this.id + "';");
+		ResultSet result = null;
 		try {
-			for (Map.Entry<String, String> entry : params.entrySet()) {
-				entry.setValue(result.getString(entry.getKey()));
+			result = db.query(sql.toString(), this.id);
+			exists = !result.isClosed();
+			if (exists) {
+				read(result);
 			}
-			result.close();
+			changed.clear();
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			db.release(result);
 		}
 	}
 
 	/**
-	 * Saves this current DatabaseObject to the SQLite database. If it is not
-	 * ready to save, it will not save and throw a DatabaseErrorException.
-	 * 
-	 * @throws DatabaseErrorException
+	 * Loads this DatabaseObject from a row someone else queried, which must
+	 * have every declared column.
+	 *
+	 * @param row
+	 *            The row to load from.
+	 * @throws SQLException
+	 */
+	protected synchronized void load(ResultSet row) throws SQLException {
+		exists = true;
+		read(row);
+		changed.clear();
+	}
+
+	/**
+	 * Sets this DatabaseObject's fields from the given row.
+	 *
+	 * @param row
+	 *            A row with every declared column.
+	 * @throws SQLException
+	 */
+	protected abstract void read(ResultSet row) throws SQLException;
+
+	/**
+	 * Gets what to store in the given column.
+	 *
+	 * @param column
+	 *            One of the declared columns.
+	 * @return The value to store.
+	 */
+	protected abstract Object getColumn(String column);
+
+	/**
+	 * Reads a boolean column, see DatabaseConnection.toBoolean.
+	 *
+	 * @param row
+	 *            The row to read from.
+	 * @param column
+	 *            The column to read.
+	 * @return The boolean stored.
+	 * @throws SQLException
+	 */
+	protected static boolean readBoolean(ResultSet row, String column)
+			throws SQLException {
+		return DatabaseConnection.toBoolean(row.getString(column));
+	}
+
+	/**
+	 * Gets what to store for a boolean.
+	 *
+	 * @param b
+	 *            The boolean.
+	 * @return The value to store.
+	 */
+	protected static Object writeBoolean(boolean b) {
+		return DatabaseConnection.fromBoolean(b);
+	}
+
+	/**
+	 * Counts the given column as changed, so it is written by the next save.
+	 *
+	 * @param column
+	 *            The column whose field was set to something new.
+	 */
+	protected synchronized void changed(String column) {
+		changed.add(column);
+	}
+
+	/**
+	 * Saves this current DatabaseObject to the SQLite database. Only the
+	 * columns changed since the last load or save are written.
+	 *
 	 * @throws SQLException
 	 */
 	public void save() throws SQLException {
 		DatabaseConnection db = DatabaseConnection.getInstance();
-		String sql;
 
 		if (this.id < 1) {
 			// This branch means the object will be created in the DB
-			sql = DatabaseConnection.createInsertQuery(params, table);
-		} else {
-			// This branch means the object will be updated in the DB
-			sql = DatabaseConnection.createUpdateQuery(params, table, this.id);
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			synchronized (this) {
+				for (String column : columns) {
+					values.put(column, getColumn(column));
+				}
+				changed.clear();
+			}
+			db.update(DatabaseConnection.createInsertQuery(values, table));
+			return;
+		}
+		// This branch means the object will be updated in the DB
+		Map<String, Object> changes = takeChanges();
+		if (changes.isEmpty()) {
+			return;
+		}
+		try {
+			db.update(DatabaseConnection.createUpdateQuery(changes, table,
+					this.id));
+		} catch (SQLException e) {
+			markChanged(changes.keySet());
+			throw e;
 		}
-		db.execute(sql);
-	}
-
-	/**
-	 * Gets the value of given parameter.
-	 * 
-	 * @param parameter
-	 *            The parameter to get the value for.
-	 * @return The value of the given parameter.
-	 */
-	public String get(String parameter) {
-		return params.get(parameter);
 	}
 
 	/**
-	 * Sets this DatabaseObject's parameters to the given Map<String,String> of
-	 * params.
-	 * 
-	 * @param params
-	 *            The parameters to set this DatabaseObject to.
+	 * Gets the columns changed since the last load or save, and counts them
+	 * as saved from now on. Whoever takes them is responsible for writing
+	 * them, or for handing them back to markChanged.
+	 *
+	 * @return The changed columns and what to store in them, empty if nothing
+	 *         changed.
 	 */
-	public void setAll(Map<String, String> params) {
-		for (Map.Entry<String, String> entry : params.entrySet()) {
-			this.params.put(entry.getKey(), entry.getValue());
+	public synchronized Map<String, Object> takeChanges() {
+		Map<String, Object> changes = new LinkedHashMap<String, Object>();
+		for (String column : changed) {
+			changes.put(column, getColumn(column));
 		}
+		changed.clear();
+		return changes;
 	}
 
 	/**
-	 * Sets the parameter p of this DatabaseObject to the given value v.
-	 * 
-	 * @param p
-	 *            The parameter to change.
-	 * @param v
-	 *            The value to change to.
+	 * Counts the given columns as changed again, so they are written by the
+	 * next save.
+	 *
+	 * @param columns
+	 *            The columns that weren't written after all.
 	 */
-	public void set(String p, String v) {
-		this.params.put(p, v);
+	public synchronized void markChanged(Collection<String> columns) {
+		changed.addAll(columns);
 	}
 
 	/**
-	 * Determines if this DatabaseObject is ready to save to the database. If
-	 * any parameter has a null value, it is not ready to save.
-	 * 
-	 * @return Whether or not the DatabaseObject is ready to save.
+	 * Determines if any column changed since the last load or save.
+	 *
+	 * @return Whether or not there is anything to save.
 	 */
-	public boolean readyToSave() {
-		for (Map.Entry<String, String> entry : params.entrySet()) {
-			if (entry.getValue() == null)
-				return false;
-		}
-		return true;
+	public synchronized boolean hasChanges() {
+		return !changed.isEmpty();
 	}
 }
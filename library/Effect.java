@@ -5,31 +5,31 @@ public enum Effect {
 	HEAL_HP {
 		@Override
 		void doEffect(int characterID, int effectAmount) {
-			DatabaseConnection.healCharacterHP(characterID, effectAmount);
+			WorldState.healCharacterHP(characterID, effectAmount);
 		}
 	},
 	HEAL_AP {
 		@Override
 		void doEffect(int characterID, int effectAmount) {
-			DatabaseConnection.healCharacterAP(characterID, effectAmount);
+			WorldState.healCharacterAP(characterID, effectAmount);
 		}
 	},
 	ADD_ITEM {
 		@Override
 		void doEffect(int characterID, int itemID) {
-			DatabaseConnection.addItemToCharacter(characterID, itemID);
+			WorldState.addItemToCharacter(characterID, itemID);
 		}
 	},
 	LIGHTS_ON {
 		@Override
 		void doEffect(int characterID, int effectAmount) {
-			DatabaseConnection.turnLightsOn(characterID);
+			WorldState.turnLightsOn(characterID);
 		}
 	},
 	LIGHTS_OFF {
 		@Override
 		void doEffect(int characterID, int effectAmount) {
-			DatabaseConnection.turnLightsOff(characterID);
+			WorldState.turnLightsOff(characterID);
 		}
 	},
 	NONE {
@@ -42,9 +42,9 @@ public enum Effect {
 		@Override
 		void doEffect(int characterID, int effectAmount) {
 			// Heals HP and AP by effectAmount, drops a bottlecap
-			DatabaseConnection.healCharacterHP(characterID, effectAmount);
-			// DatabaseConnection.healCharacterAP(characterID, effectAmount);
-			DatabaseConnection.addItemToCharacter(characterID, 21);
+			WorldState.healCharacterHP(characterID, effectAmount);
+			// WorldState.healCharacterAP(characterID, effectAmount);
+			WorldState.addItemToCharacter(characterID, 21);
 		}
 	};
 
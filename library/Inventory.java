@@ -1,13 +0,0 @@
-package library;
-
-public class Inventory extends DatabaseObject {
-
-	public Inventory(int id) {
-		super(id);
-		params.put("character", null);
-		params.put("item", null);
-		params.put("quantity", null);
-		this.setTableName("inventory");
-		this.load();
-	}
-}
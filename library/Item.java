@@ -1,40 +1,126 @@
 package library;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class Item extends DatabaseObject {
 
-	private Effect effect;
+	private String name;
+	private String description;
 	private ItemType type;
+	private boolean usable;
+	private boolean equippable;
+	private int requiredItem;
+	private int requiredQuantity;
+	private int requiredLevel;
+	private Effect effect;
+	private int effectAmount;
+	private String effectDescription;
+
+	static final String[] COLUMNS = { "name", "description", "type",
+			"usable", "equippable", "requireditem", "requiredquantity",
+			"requiredlevel", "effect", "effectamount", "effectdescription" };
 
 	public Item(int id) {
-		super(id);
-		params.put("id", null);
-		params.put("name", null);
-		params.put("description", null);
-		params.put("type", null);
-		params.put("usable", null);
-		params.put("equippable", null);
-		params.put("requireditem", null);
-		params.put("requiredquantity", null);
-		params.put("requiredlevel", null);
-		params.put("effect", null);
-		params.put("effectamount", null);
-		params.put("effectdescription", null);
-		this.setTableName("items");
+		super(id, "items", COLUMNS);
 		this.load();
-		if (this.getID() > -1) {
-			this.effect = Effect.valueOf(this.get("effect"));
-			this.type = ItemType.valueOf(this.get("type"));
+	}
+
+	/*
+	 * Creates an Item from a row ContentCatalog queried.
+	 */
+	Item(ResultSet row) throws SQLException {
+		super(row.getInt("id"), "items", COLUMNS);
+		this.load(row);
+	}
+
+	@Override
+	protected void read(ResultSet row) throws SQLException {
+		name = row.getString("name");
+		description = row.getString("description");
+		type = ItemType.valueOf(row.getString("type"));
+		usable = readBoolean(row, "usable");
+		equippable = readBoolean(row, "equippable");
+		requiredItem = row.getInt("requireditem");
+		requiredQuantity = row.getInt("requiredquantity");
+		requiredLevel = row.getInt("requiredlevel");
+		effect = Effect.valueOf(row.getString("effect"));
+		effectAmount = row.getInt("effectamount");
+		effectDescription = row.getString("effectdescription");
+	}
+
+	@Override
+	protected Object getColumn(String column) {
+		if (column.equals("name")) {
+			return name;
+		} else if (column.equals("description")) {
+			return description;
+		} else if (column.equals("type")) {
+			return type.name();
+		} else if (column.equals("usable")) {
+			return writeBoolean(usable);
+		} else if (column.equals("equippable")) {
+			return writeBoolean(equippable);
+		} else if (column.equals("requireditem")) {
+			return requiredItem;
+		} else if (column.equals("requiredquantity")) {
+			return requiredQuantity;
+		} else if (column.equals("requiredlevel")) {
+			return requiredLevel;
+		} else if (column.equals("effect")) {
+			return effect.name();
+		} else if (column.equals("effectamount")) {
+			return String.valueOf(effectAmount);
+		} else if (column.equals("effectdescription")) {
+			return effectDescription;
 		}
+		throw new IllegalArgumentException(column);
 	}
 
 	/**
 	 * Does the given effect of this item.
 	 */
 	public void doEffect(int characterID) {
-		effect.doEffect(characterID, Integer.parseInt(this.get("effectamount")));
+		effect.doEffect(characterID, effectAmount);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDescription() {
+		return description;
 	}
 
 	public ItemType getType() {
 		return type;
 	}
+
+	public boolean isUsable() {
+		return usable;
+	}
+
+	public boolean isEquippable() {
+		return equippable;
+	}
+
+	public int getRequiredItem() {
+		return requiredItem;
+	}
+
+	public int getRequiredQuantity() {
+		return requiredQuantity;
+	}
+
+	public int getRequiredLevel() {
+		return requiredLevel;
+	}
+
+	public int getEffectAmount() {
+		return effectAmount;
+	}
+
+	public String getEffectDescription() {
+		return effectDescription;
+	}
 }
@@ -0,0 +1,135 @@
+package library;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Migrations brings the schema of UAMUD.db up to date. Every migration is a
+ * list of statements and has a version, its place in MIGRATIONS. The version
+ * a database is at is kept in SQLite's user_version, so each migration is
+ * run once, in order, each in its own transaction together with the new
+ * version. DatabaseConnection runs whatever is missing when it opens the
+ * database, before anything else uses it.
+ *
+ * Migrations are never edited or removed once they were released; changes
+ * to the schema go in a new one at the end.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public final class Migrations {
+
+	private static final String[][] MIGRATIONS = {
+			// 1: Indexes for the columns the Server looks rows up by. Where
+			// a query only needs a few columns the index has them all, so
+			// the table isn't read at all.
+			{
+					"CREATE INDEX IF NOT EXISTS inventory_character "
+							+ "ON inventory (character, item, quantity);",
+					"CREATE INDEX IF NOT EXISTS roomitems_room "
+							+ "ON roomitems (roomid, itemid, quantity);",
+					"CREATE INDEX IF NOT EXISTS roommobs_uid "
+							+ "ON roommobs (uid);",
+					"CREATE INDEX IF NOT EXISTS usercharacters_user "
+							+ "ON usercharacters (userid, characterid);",
+					"CREATE INDEX IF NOT EXISTS characters_name "
+							+ "ON characters (name);",
+					"CREATE INDEX IF NOT EXISTS characterequip_character "
+							+ "ON characterequip (character, item, type);",
+					"CREATE INDEX IF NOT EXISTS characterkills_character "
+							+ "ON characterkills (character, mob, quantity);",
+					"CREATE INDEX IF NOT EXISTS npcinventory_npc "
+							+ "ON npcinventory (npcid, itemid);",
+					"CREATE INDEX IF NOT EXISTS bannedips_ip "
+							+ "ON bannedips (ip);" },
+			// 2: Booleans as 1 and 0 instead of 'true' and 'false'.
+			{ booleans("users", "admin", "banned"),
+					booleans("items", "usable", "equippable"),
+					booleans("characters", "isonline", "lights"),
+					booleans("rooms", "locked"),
+					booleans("npcs", "hostile", "attackable"),
+					booleans("mobs", "hostile", "attackable"),
+					booleans("roommobs", "attacked") } };
+
+	/**
+	 * The version of the schema this Server expects.
+	 */
+	public static final int VERSION = MIGRATIONS.length;
+
+	private Migrations() {
+	}
+
+	/*
+	 * Builds an UPDATE setting each of the given columns to 1 where it is
+	 * 'true' or already 1, and to 0 everywhere else, NULL included.
+	 */
+	private static String booleans(String table, String... columns) {
+		StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(
+				" SET ");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "" : ", ").append(columns[i]).append(
+					" = CASE WHEN lower(").append(columns[i]).append(
+					") IN ('true', '1') THEN 1 ELSE 0 END");
+		}
+		return sql.append(";").toString();
+	}
+
+	/**
+	 * Runs every migration the database on the given connection is missing.
+	 *
+	 * @param connection
+	 *            A connection to the database, in autocommit mode.
+	 * @return The version the database was at before.
+	 * @throws SQLException
+	 *             If a migration fails. The database stays at the version
+	 *             before that migration then.
+	 */
+	static int migrate(Connection connection) throws SQLException {
+		int from = getVersion(connection);
+		Statement s = connection.createStatement();
+		try {
+			for (int version = from + 1; version <= VERSION; version++) {
+				connection.setAutoCommit(false);
+				try {
+					for (String sql : MIGRATIONS[version - 1]) {
+						s.executeUpdate(sql);
+					}
+					s.executeUpdate("PRAGMA user_version = " + version + ";");
+					connection.commit();
+				} catch (SQLException e) {
+					connection.rollback();
+					throw e;
+				} finally {
+					connection.setAutoCommit(true);
+				}
+			}
+		} finally {
+			s.close();
+		}
+		return from;
+	}
+
+	/**
+	 * Gets the version of the schema of the database on the given connection.
+	 *
+	 * @param connection
+	 *            A connection to the database.
+	 * @return The number of migrations it has had, 0 if none.
+	 * @throws SQLException
+	 */
+	public static int getVersion(Connection connection) throws SQLException {
+		Statement s = connection.createStatement();
+		try {
+			ResultSet rs = s.executeQuery("PRAGMA user_version;");
+			try {
+				return rs.isClosed() ? 0 : rs.getInt(1);
+			} finally {
+				rs.close();
+			}
+		} finally {
+			s.close();
+		}
+	}
+}
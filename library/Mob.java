@@ -1,30 +1,109 @@
 package library;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class Mob extends DatabaseObject {
 
+	private String name;
 	private MobClass mobClass;
+	private int homeRoom;
+	private int roomRange;
+	private int level;
+	private boolean hostile;
+	private int expValue;
+	private boolean attackable;
+	private int hp;
+
+	static final String[] COLUMNS = { "name", "mobclass", "homeroom",
+			"roomrange", "level", "hostile", "expvalue", "attackable", "hp" };
 
 	public Mob(int id) {
-		super(id);
-		params.put("id", null);
-		params.put("name", null);
-		params.put("mobclass", null);
-		params.put("homeroom", null);
-		params.put("roomrange", null);
-		params.put("level", null);
-		params.put("hostile", null);
-		params.put("expvalue", null);
-		params.put("attackable", null);
-		params.put("hp", null);
-		this.setTableName("mobs");
+		super(id, "mobs", COLUMNS);
 		this.load();
-		this.mobClass = MobClass.valueOf(this.get("mobclass"));
+	}
+
+	/*
+	 * Creates a Mob from a row ContentCatalog queried.
+	 */
+	Mob(ResultSet row) throws SQLException {
+		super(row.getInt("id"), "mobs", COLUMNS);
+		this.load(row);
+	}
+
+	@Override
+	protected void read(ResultSet row) throws SQLException {
+		name = row.getString("name");
+		mobClass = MobClass.valueOf(row.getString("mobclass"));
+		homeRoom = row.getInt("homeroom");
+		roomRange = row.getInt("roomrange");
+		level = row.getInt("level");
+		hostile = readBoolean(row, "hostile");
+		expValue = row.getInt("expvalue");
+		attackable = readBoolean(row, "attackable");
+		hp = row.getInt("hp");
+	}
+
+	@Override
+	protected Object getColumn(String column) {
+		if (column.equals("name")) {
+			return name;
+		} else if (column.equals("mobclass")) {
+			return mobClass.name();
+		} else if (column.equals("homeroom")) {
+			return homeRoom;
+		} else if (column.equals("roomrange")) {
+			return roomRange;
+		} else if (column.equals("level")) {
+			return level;
+		} else if (column.equals("hostile")) {
+			return writeBoolean(hostile);
+		} else if (column.equals("expvalue")) {
+			return expValue;
+		} else if (column.equals("attackable")) {
+			return writeBoolean(attackable);
+		} else if (column.equals("hp")) {
+			return hp;
+		}
+		throw new IllegalArgumentException(column);
+	}
+
+	public String getName() {
+		return name;
 	}
 
 	public MobClass getMobClass() {
 		return this.mobClass;
 	}
 
+	public int getHomeRoom() {
+		return homeRoom;
+	}
+
+	public int getRoomRange() {
+		return roomRange;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public boolean isHostile() {
+		return hostile;
+	}
+
+	public int getExpValue() {
+		return expValue;
+	}
+
+	public boolean isAttackable() {
+		return attackable;
+	}
+
+	public int getHP() {
+		return hp;
+	}
+
 	public int getDamage(int level, int difficultyMultiplier) {
 		return (int) (level * difficultyMultiplier * 1.25);
 	}
@@ -1,28 +1,108 @@
 package library;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class NonPlayerCharacter extends DatabaseObject {
 
+	private String name;
 	private NonPlayerCharacterClass npcClass;
+	private int homeRoom;
+	private int roomRange;
+	private int level;
+	private boolean hostile;
+	private int expValue;
+	private boolean attackable;
+	private int location;
+
+	static final String[] COLUMNS = { "name", "mobclass", "homeroom",
+			"roomrange", "level", "hostile", "expvalue", "attackable",
+			"location" };
 
 	public NonPlayerCharacter(int id) {
-		super(id);
-		params.put("id", null);
-		params.put("name", null);
-		params.put("mobclass", null);
-		params.put("homeroom", null);
-		params.put("roomrange", null);
-		params.put("level", null);
-		params.put("hostile", null);
-		params.put("expvalue", null);
-		params.put("attackable", null);
-		params.put("location", null);
-		this.setTableName("npcs");
+		super(id, "npcs", COLUMNS);
 		this.load();
-		this.npcClass = NonPlayerCharacterClass.valueOf(this.get("mobclass"));
+	}
+
+	/*
+	 * Creates a NonPlayerCharacter from a row ContentCatalog queried.
+	 */
+	NonPlayerCharacter(ResultSet row) throws SQLException {
+		super(row.getInt("id"), "npcs", COLUMNS);
+		this.load(row);
+	}
+
+	@Override
+	protected void read(ResultSet row) throws SQLException {
+		name = row.getString("name");
+		npcClass = NonPlayerCharacterClass.valueOf(row.getString("mobclass"));
+		homeRoom = row.getInt("homeroom");
+		roomRange = row.getInt("roomrange");
+		level = row.getInt("level");
+		hostile = readBoolean(row, "hostile");
+		expValue = row.getInt("expvalue");
+		attackable = readBoolean(row, "attackable");
+		location = row.getInt("location");
+	}
+
+	@Override
+	protected Object getColumn(String column) {
+		if (column.equals("name")) {
+			return name;
+		} else if (column.equals("mobclass")) {
+			return npcClass.name();
+		} else if (column.equals("homeroom")) {
+			return homeRoom;
+		} else if (column.equals("roomrange")) {
+			return roomRange;
+		} else if (column.equals("level")) {
+			return level;
+		} else if (column.equals("hostile")) {
+			return writeBoolean(hostile);
+		} else if (column.equals("expvalue")) {
+			return expValue;
+		} else if (column.equals("attackable")) {
+			return writeBoolean(attackable);
+		} else if (column.equals("location")) {
+			return location;
+		}
+		throw new IllegalArgumentException(column);
+	}
+
+	public String getName() {
+		return name;
 	}
 
 	public NonPlayerCharacterClass getNPCClass() {
 		return this.npcClass;
 	}
 
+	public int getHomeRoom() {
+		return homeRoom;
+	}
+
+	public int getRoomRange() {
+		return roomRange;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public boolean isHostile() {
+		return hostile;
+	}
+
+	public int getExpValue() {
+		return expValue;
+	}
+
+	public boolean isAttackable() {
+		return attackable;
+	}
+
+	public int getLocation() {
+		return location;
+	}
+
 }
@@ -0,0 +1,36 @@
+package library;
+
+import java.util.Arrays;
+
+/**
+ * A Query is an SQL template, with a ? wherever a value goes, and the values
+ * to bind to it. Values are never pasted into the SQL itself, so the template
+ * stays the same from call to call and DatabaseConnection only has to prepare
+ * it once.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public class Query {
+
+	private String sql;
+	private Object[] parameters;
+
+	public Query(String sql, Object... parameters) {
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	public String getSQL() {
+		return sql;
+	}
+
+	public Object[] getParameters() {
+		return parameters;
+	}
+
+	@Override
+	public String toString() {
+		return sql + " " + Arrays.toString(parameters);
+	}
+}
@@ -0,0 +1,270 @@
+package library;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RoomGraph is the vault's geography: which room each exit leads to, what
+ * every room is called and how it is described, and which door each room
+ * has. None of it changes while the game is played, so it is read from the
+ * rooms table once and kept in arrays indexed by room ID. Looking at a room
+ * or moving out of it never asks the database.
+ *
+ * A RoomGraph never changes once it is loaded. When the rooms table is
+ * edited, reload loads a new one and swaps it in; whoever holds the old one
+ * carries on with it. Whether a door is locked right now is game state and
+ * lives in WorldState, which only asks here how it was when loaded.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public final class RoomGraph {
+
+	private static volatile RoomGraph current;
+
+	private final int[] north;
+	private final int[] east;
+	private final int[] south;
+	private final int[] west;
+	private final String[] names;
+	private final String[] descriptions;
+	// The direction of each room's door, null for rooms without one.
+	private final String[] doors;
+	private final int[] requiredItems;
+	private final boolean[] locked;
+
+	private RoomGraph(int size) {
+		north = new int[size];
+		east = new int[size];
+		south = new int[size];
+		west = new int[size];
+		names = new String[size];
+		descriptions = new String[size];
+		doors = new String[size];
+		requiredItems = new int[size];
+		locked = new boolean[size];
+	}
+
+	/**
+	 * Gets the RoomGraph in use, loading it the first time.
+	 *
+	 * @return The RoomGraph.
+	 */
+	public static RoomGraph get() {
+		RoomGraph graph = current;
+		if (graph == null) {
+			synchronized (RoomGraph.class) {
+				graph = current;
+				if (graph == null) {
+					graph = reload();
+				}
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Loads the rooms table again and uses it from now on. Call this after
+	 * rooms were added or edited in the database.
+	 *
+	 * @return The new RoomGraph.
+	 */
+	public static synchronized RoomGraph reload() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		RoomGraph graph = new RoomGraph(db.queryForInt(0,
+				"SELECT MAX(id) FROM rooms;") + 1);
+		ResultSet rs = null;
+		try {
+			rs = db.query("SELECT id, north, east, south, west, name, "
+					+ "description, locked, door, requireditem FROM rooms;");
+			while (rs.next()) {
+				graph.read(rs);
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			db.release(rs);
+		}
+		current = graph;
+		return graph;
+	}
+
+	private void read(ResultSet row) throws SQLException {
+		int id = row.getInt("id");
+		north[id] = row.getInt("north");
+		east[id] = row.getInt("east");
+		south[id] = row.getInt("south");
+		west[id] = row.getInt("west");
+		// Many rooms share a name or description, so they share the String.
+		names[id] = intern(row.getString("name"));
+		descriptions[id] = intern(row.getString("description"));
+		locked[id] = DatabaseConnection.toBoolean(row.getString("locked"));
+		requiredItems[id] = row.getInt("requireditem");
+		String door = row.getString("door");
+		if ("north".equals(door) || "east".equals(door)
+				|| "south".equals(door) || "west".equals(door)) {
+			doors[id] = door.intern();
+		}
+	}
+
+	private static String intern(String s) {
+		return s == null ? "" : s.intern();
+	}
+
+	private boolean has(int roomID) {
+		return roomID > 0 && roomID < names.length && names[roomID] != null;
+	}
+
+	/**
+	 * Gets whether there is a room with the given ID.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return True if the room exists.
+	 */
+	public boolean contains(int roomID) {
+		return has(roomID);
+	}
+
+	/**
+	 * Gets the highest ID a room can have.
+	 *
+	 * @return The ID.
+	 */
+	public int getMaxID() {
+		return names.length - 1;
+	}
+
+	/**
+	 * Gets the IDs of the rooms with a door, in order.
+	 *
+	 * @return The IDs.
+	 */
+	public int[] getRoomsWithDoors() {
+		int count = 0;
+		for (String door : doors) {
+			if (door != null) {
+				count++;
+			}
+		}
+		int[] rooms = new int[count];
+		count = 0;
+		for (int i = 0; i < doors.length; i++) {
+			if (doors[i] != null) {
+				rooms[count++] = i;
+			}
+		}
+		return rooms;
+	}
+
+	/**
+	 * Splits the rooms into the given number of zones of about the same
+	 * size, each made of rooms close to each other. The rooms are put in the
+	 * order they are reached walking out from the first room, exit by exit,
+	 * and that order is cut into equal runs, so most exits lead to a room in
+	 * the same zone. Rooms that can't be reached come last.
+	 *
+	 * @param zones
+	 *            The number of zones, at least 1.
+	 * @return The zone of each room, from 0, indexed by room ID. IDs without
+	 *         a room are in zone 0.
+	 */
+	public int[] partition(int zones) {
+		int[] order = new int[names.length];
+		boolean[] seen = new boolean[names.length];
+		int count = 0;
+		for (int start = 0; start < names.length; start++) {
+			if (!has(start) || seen[start]) {
+				continue;
+			}
+			// Walk out from here, breadth first.
+			seen[start] = true;
+			order[count++] = start;
+			for (int next = count - 1; next < count; next++) {
+				for (int exit : getExits(order[next])) {
+					if (has(exit) && !seen[exit]) {
+						seen[exit] = true;
+						order[count++] = exit;
+					}
+				}
+			}
+		}
+		int[] zoneOf = new int[names.length];
+		zones = Math.max(1, Math.min(zones, Math.max(1, count)));
+		for (int i = 0; i < count; i++) {
+			zoneOf[order[i]] = (int) ((long) i * zones / count);
+		}
+		return zoneOf;
+	}
+
+	public int getNorth(int roomID) {
+		return has(roomID) ? north[roomID] : 0;
+	}
+
+	public int getEast(int roomID) {
+		return has(roomID) ? east[roomID] : 0;
+	}
+
+	public int getSouth(int roomID) {
+		return has(roomID) ? south[roomID] : 0;
+	}
+
+	public int getWest(int roomID) {
+		return has(roomID) ? west[roomID] : 0;
+	}
+
+	/**
+	 * Gets where each exit of the given room leads, 0 where there is none.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return The rooms north, east, south and west, in that order.
+	 */
+	public int[] getExits(int roomID) {
+		return new int[] { getNorth(roomID), getEast(roomID),
+				getSouth(roomID), getWest(roomID) };
+	}
+
+	public String getName(int roomID) {
+		return has(roomID) ? names[roomID] : "";
+	}
+
+	public String getDescription(int roomID) {
+		return has(roomID) ? descriptions[roomID] : "";
+	}
+
+	/**
+	 * Gets which way the given room's door is.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return "north", "east", "south" or "west", or null if the room has no
+	 *         door.
+	 */
+	public String getDoor(int roomID) {
+		return has(roomID) ? doors[roomID] : null;
+	}
+
+	/**
+	 * Gets the item that unlocks the given room's door.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return The item's ID, 0 if there is none.
+	 */
+	public int getRequiredItem(int roomID) {
+		return has(roomID) ? requiredItems[roomID] : 0;
+	}
+
+	/**
+	 * Gets whether the given room's door was locked when the RoomGraph was
+	 * loaded. WorldState has whether it is locked now.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return True if it was locked.
+	 */
+	public boolean wasLocked(int roomID) {
+		return has(roomID) && locked[roomID];
+	}
+}
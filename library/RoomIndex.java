@@ -0,0 +1,87 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RoomIndex knows which room each of a kind of occupant is in, mobs or
+ * Characters, by ID, and which of them each room holds. Finding who is in a
+ * room costs as much as there are occupants there, not as many as there are
+ * in the whole vault. It isn't thread safe; WorldState guards it with the
+ * lock of the zone it is for.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+final class RoomIndex {
+
+	private final Map<Integer, Integer> roomOf = new HashMap<Integer, Integer>();
+	// Kept in the order occupants came in.
+	private final Map<Integer, Set<Integer>> occupants = new HashMap<Integer, Set<Integer>>();
+
+	/**
+	 * Puts the given occupant in the given room, taking it out of the room
+	 * it was in.
+	 */
+	void put(int id, int roomID) {
+		Integer from = roomOf.put(id, roomID);
+		if (from != null) {
+			if (from == roomID) {
+				return;
+			}
+			leave(id, from);
+		}
+		Set<Integer> in = occupants.get(roomID);
+		if (in == null) {
+			in = new LinkedHashSet<Integer>();
+			occupants.put(roomID, in);
+		}
+		in.add(id);
+	}
+
+	/**
+	 * Takes the given occupant out of the room it is in, if any.
+	 */
+	void remove(int id) {
+		Integer from = roomOf.remove(id);
+		if (from != null) {
+			leave(id, from);
+		}
+	}
+
+	private void leave(int id, int roomID) {
+		Set<Integer> in = occupants.get(roomID);
+		if (in != null && in.remove(id) && in.isEmpty()) {
+			occupants.remove(roomID);
+		}
+	}
+
+	/**
+	 * Gets the room the given occupant is in.
+	 *
+	 * @return The room's ID, or null if it isn't in any.
+	 */
+	Integer getRoom(int id) {
+		return roomOf.get(id);
+	}
+
+	/**
+	 * Gets the occupants of the given room.
+	 *
+	 * @return A copy of their IDs, in the order they came in.
+	 */
+	List<Integer> get(int roomID) {
+		Set<Integer> in = occupants.get(roomID);
+		return in == null ? new ArrayList<Integer>() : new ArrayList<Integer>(
+				in);
+	}
+
+	void clear() {
+		roomOf.clear();
+		occupants.clear();
+	}
+}
@@ -1,21 +1,73 @@
 package library;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class User extends DatabaseObject {
 
+	private String username;
+	private String password;
+	private String name;
+	private String createDate;
+	private boolean admin;
+	private boolean banned;
+
 	public User(String username) {
-		super(DatabaseConnection.getIDFromUsername(username));
-		params.put("id", null);
-		params.put("username", null);
-		params.put("password", null);
-		params.put("name", null);
-		params.put("createdate", null);
-		params.put("admin", null);
-		params.put("banned", null);
-		this.setTableName("users");
+		super(DatabaseConnection.getIDFromUsername(username), "users",
+				"username", "password", "name", "createdate", "admin",
+				"banned");
 		this.load(this.getID());
 	}
 
+	@Override
+	protected void read(ResultSet row) throws SQLException {
+		username = row.getString("username");
+		password = row.getString("password");
+		name = row.getString("name");
+		createDate = row.getString("createdate");
+		admin = readBoolean(row, "admin");
+		banned = readBoolean(row, "banned");
+	}
+
+	@Override
+	protected Object getColumn(String column) {
+		if (column.equals("username")) {
+			return username;
+		} else if (column.equals("password")) {
+			return password;
+		} else if (column.equals("name")) {
+			return name;
+		} else if (column.equals("createdate")) {
+			return createDate;
+		} else if (column.equals("admin")) {
+			return writeBoolean(admin);
+		} else if (column.equals("banned")) {
+			return writeBoolean(banned);
+		}
+		throw new IllegalArgumentException(column);
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getCreateDate() {
+		return createDate;
+	}
+
+	public boolean isAdmin() {
+		return admin;
+	}
+
+	public boolean isBanned() {
+		return banned;
+	}
+
 	public boolean validatePassword(String password) {
-		return password.equals(this.get("password"));
+		return password.equals(this.password);
 	}
 }
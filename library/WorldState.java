@@ -0,0 +1,1235 @@
+package library;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * WorldState holds the parts of the game that change while it is played:
+ * the Characters in use, the mobs roaming the vault, which doors are locked,
+ * the items lying in rooms and every Character's inventory. It is the source
+ * of truth for all of them; reads and writes never wait for SQLite.
+ *
+ * Changes are written to the database behind the game's back. Whatever was
+ * changed is remembered, and flush writes all of it in one transaction. The
+ * Server flushes every ServerConfig.WORLD_FLUSH_INTERVAL, which bounds how
+ * much play a crash can lose, and once more when it shuts down.
+ *
+ * Rooms, inventories and Characters are loaded from the database the first
+ * time they are needed. Mobs only ever live as long as the Server, so they
+ * start out empty.
+ *
+ * Which mobs and which Characters in play are in each room is indexed, and
+ * the index changes under the same lock as what it indexes, so asking who is
+ * in a room only costs as much as there are occupants. NPCs never leave
+ * their home, ContentCatalog.getNPCsIn has them.
+ *
+ * The rooms are split into zones, the same ones the Server's game loops
+ * play, and everything about a room, along with the mobs and Characters in
+ * it, belongs to its zone and is guarded by that zone's lock alone, so the
+ * zones never wait for each other. A mob or Character moving into another
+ * zone is moved under both zones' locks, taken in the order of the zones.
+ * Inventories are guarded by a few locks of their own, picked by Character.
+ * Only flush takes all of the locks, to write everything as it was at one
+ * moment.
+ *
+ * @author Nicholas Eddy, Mike Novak, Kyohei Mizokami, Chris Panzero
+ *
+ */
+public class WorldState {
+
+	private static final int BOTTLE_CAP = 21;
+	// Locks the inventories are spread over.
+	private static final int INVENTORY_LOCKS = 16;
+
+	// Only one flush writes at a time, so they reach the database in order.
+	private static final ReentrantLock flushLock = new ReentrantLock();
+
+	private static final ConcurrentHashMap<Integer, Character> characters = new ConcurrentHashMap<Integer, Character>();
+
+	// Which zone each room is in, by room ID. Rooms that aren't in it are in
+	// the first zone.
+	private static volatile int[] zoneOf = new int[0];
+	private static volatile Zone[] zones = { new Zone() };
+	// The zone each mob, and each Character in play, is in. Only changed
+	// under the lock of the zones it is in before and after.
+	private static final ConcurrentHashMap<Integer, Zone> mobZones = new ConcurrentHashMap<Integer, Zone>();
+	private static final ConcurrentHashMap<Integer, Zone> characterZones = new ConcurrentHashMap<Integer, Zone>();
+	private static final Inventories[] inventories = new Inventories[INVENTORY_LOCKS];
+	static {
+		for (int i = 0; i < inventories.length; i++) {
+			inventories[i] = new Inventories();
+		}
+	}
+
+	/*
+	 * The rooms of one zone, what is in them and what of it changed since
+	 * the last flush. Everything is guarded by lock.
+	 */
+	private static final class Zone {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Map<Integer, SpawnedMob> mobs = new LinkedHashMap<Integer, SpawnedMob>();
+		private final Map<Integer, Boolean> lockedDoors = new HashMap<Integer, Boolean>();
+		private final Map<Integer, Map<Integer, Integer>> roomItems = new HashMap<Integer, Map<Integer, Integer>>();
+		// Who is in each room: every mob, and the Characters in play.
+		private final RoomIndex mobsByRoom = new RoomIndex();
+		private final RoomIndex charactersByRoom = new RoomIndex();
+
+		// What changed since the last flush. Which zone remembers that
+		// something changed doesn't matter, flush looks it up where it is.
+		private Set<Character> dirtyCharacters = new HashSet<Character>();
+		private Set<Integer> dirtyMobs = new HashSet<Integer>();
+		private Set<Integer> dirtyDoors = new HashSet<Integer>();
+		private Set<Integer> dirtyRooms = new HashSet<Integer>();
+	}
+
+	/*
+	 * The inventories of the Characters whose ID leaves the same remainder,
+	 * and which of their items changed since the last flush. Everything is
+	 * guarded by lock.
+	 */
+	private static final class Inventories {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Map<Integer, Map<Integer, Integer>> items = new HashMap<Integer, Map<Integer, Integer>>();
+		// Characters, to the items whose quantity changed.
+		private Map<Integer, Set<Integer>> dirty = new HashMap<Integer, Set<Integer>>();
+	}
+
+	/**
+	 * A mob roaming the vault, one row of roommobs.
+	 */
+	private static class SpawnedMob {
+		private int mobID;
+		private String name;
+		private int hp;
+		private int location;
+		private boolean attacked;
+		private int attackerID;
+		private long lastAttacked;
+		private int level;
+	}
+
+	private WorldState() {
+	}
+
+	/*
+	 * ------- Zones -------
+	 */
+
+	/**
+	 * Splits the rooms of the RoomGraph in use into the given number of
+	 * zones, and moves everything already known about them into their
+	 * zones. The rooms stay in these zones until this is called again, also
+	 * when the RoomGraph is reloaded; rooms that weren't there yet are in
+	 * the first zone. Nothing may be played while this runs, it is meant for
+	 * when the Server starts.
+	 *
+	 * @param count
+	 *            The number of zones, at least 1. There are no more zones
+	 *            than rooms.
+	 */
+	public static synchronized void splitIntoZones(int count) {
+		int[] map = RoomGraph.get().partition(count);
+		int used = 1;
+		for (int zone : map) {
+			used = Math.max(used, zone + 1);
+		}
+		Zone[] split = new Zone[used];
+		for (int i = 0; i < split.length; i++) {
+			split[i] = new Zone();
+		}
+
+		Zone[] old = zones;
+		lockAll(old);
+		try {
+			zoneOf = map;
+			for (Zone from : old) {
+				for (Map.Entry<Integer, SpawnedMob> e : from.mobs.entrySet()) {
+					Zone to = split[getZone(e.getValue().location)];
+					to.mobs.put(e.getKey(), e.getValue());
+					to.mobsByRoom.put(e.getKey(), e.getValue().location);
+					mobZones.put(e.getKey(), to);
+				}
+				for (Map.Entry<Integer, Zone> e : characterZones.entrySet()) {
+					Integer roomID = from.charactersByRoom.getRoom(e.getKey());
+					if (e.getValue() == from && roomID != null) {
+						Zone to = split[getZone(roomID)];
+						to.charactersByRoom.put(e.getKey(), roomID);
+						e.setValue(to);
+					}
+				}
+				for (Map.Entry<Integer, Boolean> e : from.lockedDoors
+						.entrySet()) {
+					split[getZone(e.getKey())].lockedDoors.put(e.getKey(), e
+							.getValue());
+				}
+				for (Map.Entry<Integer, Map<Integer, Integer>> e : from.roomItems
+						.entrySet()) {
+					split[getZone(e.getKey())].roomItems.put(e.getKey(), e
+							.getValue());
+				}
+				split[0].dirtyCharacters.addAll(from.dirtyCharacters);
+				split[0].dirtyMobs.addAll(from.dirtyMobs);
+				split[0].dirtyDoors.addAll(from.dirtyDoors);
+				split[0].dirtyRooms.addAll(from.dirtyRooms);
+			}
+			zones = split;
+		} finally {
+			unlockAll(old);
+		}
+	}
+
+	/**
+	 * Gets which zone the given room is in.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return The zone, from 0. Rooms that don't exist are in the first one.
+	 */
+	public static int getZone(int roomID) {
+		int[] map = zoneOf;
+		return roomID > 0 && roomID < map.length ? map[roomID] : 0;
+	}
+
+	private static Zone zoneFor(int roomID) {
+		Zone[] z = zones;
+		int zone = getZone(roomID);
+		return zone < z.length ? z[zone] : z[0];
+	}
+
+	/*
+	 * Locks the zone the given mob is in, or the first zone if there is no
+	 * such mob, and returns it. The mob can't leave the zone until it is
+	 * unlocked again.
+	 */
+	private static Zone lockMob(int uid) {
+		return lock(mobZones, uid);
+	}
+
+	/*
+	 * Locks the zone the given Character is in, or the first zone if it
+	 * isn't in play, and returns it.
+	 */
+	private static Zone lockCharacter(int characterID) {
+		return lock(characterZones, characterID);
+	}
+
+	private static Zone lock(ConcurrentHashMap<Integer, Zone> zoneOfID, int id) {
+		while (true) {
+			Zone z = zoneOfID.get(id);
+			if (z == null) {
+				z = zones[0];
+			}
+			z.lock.lock();
+			Zone now = zoneOfID.get(id);
+			if (now == z || now == null) {
+				return z;
+			}
+			// It moved on before we had the lock.
+			z.lock.unlock();
+		}
+	}
+
+	/*
+	 * Locks two zones, in the order of the zones, so two moves the opposite
+	 * way can't each wait for the other.
+	 */
+	private static void lockBoth(Zone a, Zone b) {
+		Zone[] z = zones;
+		if (a != b && indexOf(z, b) < indexOf(z, a)) {
+			Zone swap = a;
+			a = b;
+			b = swap;
+		}
+		a.lock.lock();
+		if (b != a) {
+			b.lock.lock();
+		}
+	}
+
+	private static void unlockBoth(Zone a, Zone b) {
+		if (b != a) {
+			b.lock.unlock();
+		}
+		a.lock.unlock();
+	}
+
+	private static int indexOf(Zone[] z, Zone zone) {
+		for (int i = 0; i < z.length; i++) {
+			if (z[i] == zone) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void lockAll(Zone[] z) {
+		for (Zone zone : z) {
+			zone.lock.lock();
+		}
+	}
+
+	private static void unlockAll(Zone[] z) {
+		for (int i = z.length - 1; i >= 0; i--) {
+			z[i].lock.unlock();
+		}
+	}
+
+	private static void lockAll(Inventories[] i) {
+		for (Inventories inventory : i) {
+			inventory.lock.lock();
+		}
+	}
+
+	private static void unlockAll(Inventories[] i) {
+		for (int j = i.length - 1; j >= 0; j--) {
+			i[j].lock.unlock();
+		}
+	}
+
+	private static Inventories inventoriesOf(int characterID) {
+		return inventories[inventoriesIndex(characterID)];
+	}
+
+	private static int inventoriesIndex(int characterID) {
+		return (characterID & Integer.MAX_VALUE) % inventories.length;
+	}
+
+	/*
+	 * ------- Characters -------
+	 */
+
+	/**
+	 * Gets the Character with the given ID. Every caller gets the same
+	 * Character, so changes made to it are seen everywhere at once.
+	 *
+	 * @param characterID
+	 *            The ID of the Character.
+	 * @return The Character, with an ID of -1 if it doesn't exist.
+	 */
+	public static Character getCharacter(int characterID) {
+		Character c = characters.get(characterID);
+		if (c != null) {
+			return c;
+		}
+		c = new Character(characterID);
+		if (c.getID() < 1 || !c.exists()) {
+			return c;
+		}
+		Character raced = characters.putIfAbsent(characterID, c);
+		return raced == null ? c : raced;
+	}
+
+	/**
+	 * Remembers that the given Character changed, so it is written with the
+	 * next flush.
+	 *
+	 * @param c
+	 *            The changed Character.
+	 */
+	public static void save(Character c) {
+		Zone z = zoneFor(c.getLocation());
+		z.lock.lock();
+		try {
+			z.dirtyCharacters.add(c);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/**
+	 * Puts the given Character in play, in the room it is in. Until it
+	 * leaves, getCharacters finds it there and wherever it moves to.
+	 *
+	 * @param c
+	 *            The Character, logging in.
+	 */
+	public static void enterWorld(Character c) {
+		place(c, true);
+	}
+
+	/**
+	 * Takes the given Character out of play.
+	 *
+	 * @param c
+	 *            The Character, logging out.
+	 */
+	public static void leaveWorld(Character c) {
+		Zone z = lockCharacter(c.getID());
+		try {
+			z.charactersByRoom.remove(c.getID());
+			characterZones.remove(c.getID());
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/*
+	 * Moves the given Character to the room it is in now, if it is in play.
+	 * Character.setLocation calls this after every move.
+	 */
+	static void characterMoved(Character c) {
+		place(c, false);
+	}
+
+	/*
+	 * Indexes the given Character in the room it is in, moving it into that
+	 * room's zone if it was in another. Unless it is entering, nothing
+	 * happens if it isn't in play.
+	 */
+	private static void place(Character c, boolean entering) {
+		int id = c.getID();
+		while (true) {
+			Zone was = characterZones.get(id);
+			if (was == null && !entering) {
+				return;
+			}
+			Zone to = zoneFor(c.getLocation());
+			Zone from = was == null ? to : was;
+			lockBoth(from, to);
+			try {
+				if (characterZones.get(id) != was) {
+					// It moved or left before we had the locks.
+					continue;
+				}
+				if (from != to) {
+					from.charactersByRoom.remove(id);
+				}
+				to.charactersByRoom.put(id, c.getLocation());
+				characterZones.put(id, to);
+				return;
+			} finally {
+				unlockBoth(from, to);
+			}
+		}
+	}
+
+	/**
+	 * Gets the Characters in play in the given room.
+	 *
+	 * @param roomID
+	 *            The room to look in.
+	 * @return The IDs of the Characters, in the order they came in.
+	 */
+	public static List<Integer> getCharacters(int roomID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			return z.charactersByRoom.get(roomID);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void healCharacterHP(int characterID, int effectAmount) {
+		Character c = getCharacter(characterID);
+		if (c.getID() == -1) {
+			return;
+		}
+		int level = c.getLevel();
+		int newHP = c.getHP() + effectAmount;
+		c.setHP(Math.min(newHP, c.getMaxHP(level)));
+		save(c);
+	}
+
+	public static void healCharacterAP(int characterID, int effectAmount) {
+		Character c = getCharacter(characterID);
+		if (c.getID() == -1) {
+			return;
+		}
+		int level = c.getLevel();
+		int newAP = c.getAP() + effectAmount;
+		c.setAP(Math.min(newAP, c.getMaxAP(level)));
+		save(c);
+	}
+
+	/**
+	 * Turns lights on for a Character.
+	 *
+	 * @param characterID
+	 *            The Character whose lights to turn on.
+	 */
+	public static void turnLightsOn(int characterID) {
+		setLights(characterID, true);
+	}
+
+	/**
+	 * Turns lights off for a Character.
+	 *
+	 * @param characterID
+	 *            The Character whose lights to turn off.
+	 */
+	public static void turnLightsOff(int characterID) {
+		setLights(characterID, false);
+	}
+
+	private static void setLights(int characterID, boolean lights) {
+		Character c = getCharacter(characterID);
+		if (c.getID() == -1) {
+			return;
+		}
+		c.setLights(lights);
+		save(c);
+	}
+
+	/*
+	 * ------- Mobs -------
+	 */
+
+	public static void addMob(int mobid, int uid, int hp, int location,
+			String name, int level) {
+		SpawnedMob m = new SpawnedMob();
+		m.mobID = mobid;
+		m.hp = hp;
+		m.location = location;
+		m.name = name;
+		m.level = level;
+		m.lastAttacked = Calendar.getInstance().getTimeInMillis();
+		Zone z = zoneFor(location);
+		z.lock.lock();
+		try {
+			z.mobs.put(uid, m);
+			z.mobsByRoom.put(uid, location);
+			z.dirtyMobs.add(uid);
+			mobZones.put(uid, z);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void removeMob(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			z.mobs.remove(uid);
+			z.mobsByRoom.remove(uid);
+			z.dirtyMobs.add(uid);
+			mobZones.remove(uid);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes every mob, from the database too. Only meant for when the
+	 * Server starts.
+	 */
+	public static void removeAllMobs() {
+		Zone[] z = zones;
+		lockAll(z);
+		try {
+			for (Zone zone : z) {
+				zone.mobs.clear();
+				zone.mobsByRoom.clear();
+				zone.dirtyMobs.clear();
+			}
+			mobZones.clear();
+		} finally {
+			unlockAll(z);
+		}
+		DatabaseConnection.removeAllMobs();
+	}
+
+	public static int getNumberOfMobs() {
+		return mobZones.size();
+	}
+
+	/**
+	 * Gets the UIDs of the mobs in the given room.
+	 *
+	 * @param roomID
+	 *            The room to look in.
+	 * @return The UIDs of the mobs in the room, in the order they came in.
+	 */
+	public static List<Integer> getMobs(int roomID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			return z.mobsByRoom.get(roomID);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static String getMobName(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? "" : m.name;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static int getMobIDFromID(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? -1 : m.mobID;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static int getMobLocation(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? 0 : m.location;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void setMobLocation(int uid, int roomID) {
+		moveMob(uid, -1, roomID);
+	}
+
+	/**
+	 * Moves a mob from one room to another, but only if it is still alive
+	 * and in the room it is moved from. A mob going into another zone is
+	 * handed over to that zone at once; it is never in both or in neither.
+	 *
+	 * @param uid
+	 *            The mob's UID.
+	 * @param from
+	 *            The room it should be in now, or -1 for wherever it is.
+	 * @param to
+	 *            The room it goes to.
+	 * @return False if nothing was moved, because the mob was killed or has
+	 *         moved elsewhere.
+	 */
+	public static boolean moveMob(int uid, int from, int to) {
+		while (true) {
+			Zone was = mobZones.get(uid);
+			if (was == null) {
+				return false;
+			}
+			Zone z = zoneFor(to);
+			lockBoth(was, z);
+			try {
+				if (mobZones.get(uid) != was) {
+					// It moved or died before we had the locks.
+					continue;
+				}
+				SpawnedMob m = was.mobs.get(uid);
+				if (m == null || (from != -1 && m.location != from)) {
+					return false;
+				}
+				if (was != z) {
+					was.mobs.remove(uid);
+					was.mobsByRoom.remove(uid);
+					z.mobs.put(uid, m);
+					mobZones.put(uid, z);
+				}
+				m.location = to;
+				z.mobsByRoom.put(uid, to);
+				z.dirtyMobs.add(uid);
+				return true;
+			} finally {
+				unlockBoth(was, z);
+			}
+		}
+	}
+
+	public static boolean isMobAttacked(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m != null && m.attacked;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static int getMobAttacker(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? 0 : m.attackerID;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void setMobAttacked(int uid, int characterID, boolean attacked) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			if (m != null) {
+				m.attacked = attacked;
+				m.attackerID = characterID;
+				z.dirtyMobs.add(uid);
+			}
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static int getMobHP(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? 0 : m.hp;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void setMobHP(int uid, int hp) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			if (m != null) {
+				m.hp = hp;
+				z.dirtyMobs.add(uid);
+			}
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static int getMobLevel(int uid) {
+		Zone z = lockMob(uid);
+		try {
+			SpawnedMob m = z.mobs.get(uid);
+			return m == null ? 0 : m.level;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/*
+	 * ------- Doors -------
+	 */
+
+	public static boolean getDoorLocked(int roomID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			Boolean locked = z.lockedDoors.get(roomID);
+			if (locked == null) {
+				locked = RoomGraph.get().wasLocked(roomID);
+				z.lockedDoors.put(roomID, locked);
+			}
+			return locked;
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	public static void setDoorLocked(int roomID, boolean locked) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			z.lockedDoors.put(roomID, locked);
+			z.dirtyDoors.add(roomID);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/*
+	 * ------- Room items -------
+	 */
+
+	/**
+	 * Retrieves a Map<"Item name", "Quantity"> of items in a given room.
+	 *
+	 * @param roomID
+	 *            The room whose items we are querying.
+	 * @return Map<"Item name", "Quantity"> of items in a given room.
+	 */
+	public static Map<String, String> getItemNamesForRoom(int roomID) {
+		ContentCatalog catalog = ContentCatalog.get();
+		Map<String, String> itemsInRoom = new HashMap<String, String>();
+		for (Map.Entry<Integer, Integer> e : getItemsForRoom(roomID)
+				.entrySet()) {
+			itemsInRoom.put(catalog.getItem(e.getKey()).getName(), e
+					.getValue()
+					+ "");
+		}
+		return itemsInRoom;
+	}
+
+	public static Map<Integer, Integer> getItemIDsForRoom(int roomID) {
+		return getItemsForRoom(roomID);
+	}
+
+	/**
+	 * Retrieves a Map<Item ID, Quantity> of items in a given room.
+	 *
+	 * @param roomID
+	 *            The room whose items we are querying.
+	 * @return A copy of the items in the room.
+	 */
+	public static Map<Integer, Integer> getItemsForRoom(int roomID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			return new HashMap<Integer, Integer>(roomItems(z, roomID));
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given item to the given room.
+	 *
+	 * @param roomID
+	 *            The room ID to add the item to.
+	 * @param itemID
+	 *            The item ID to add to the room.
+	 */
+	public static void addItemToRoom(int roomID, int itemID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			add(roomItems(z, roomID), itemID, 1);
+			z.dirtyRooms.add(roomID);
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the given item ID from the given room.
+	 *
+	 * @param roomID
+	 *            The room ID to remove the item from.
+	 * @param itemID
+	 *            The item ID to remove from the room.
+	 */
+	public static void removeItemFromRoom(int roomID, int itemID) {
+		Zone z = zoneFor(roomID);
+		z.lock.lock();
+		try {
+			if (add(roomItems(z, roomID), itemID, -1)) {
+				z.dirtyRooms.add(roomID);
+			}
+		} finally {
+			z.lock.unlock();
+		}
+	}
+
+	// Must hold the zone's lock.
+	private static Map<Integer, Integer> roomItems(Zone z, int roomID) {
+		Map<Integer, Integer> items = z.roomItems.get(roomID);
+		if (items == null) {
+			items = DatabaseConnection.getItemsForRoom(roomID);
+			z.roomItems.put(roomID, items);
+		}
+		return items;
+	}
+
+	/*
+	 * ------- Inventories -------
+	 */
+
+	/**
+	 * Retrieves the inventory for a given character.
+	 *
+	 * @param characterID
+	 *            The ID of the character whose inventory we are querying.
+	 * @param names
+	 *            Whether or not to display a Map<"Item ID", "Quantity" or
+	 *            Map<"Item name", "Quantity">
+	 * @return Map<"Item ID", "Quantity"> or Map<"Item name", "Quantity"> if
+	 *         names==true.
+	 */
+	public static Map<String, String> getInventoryForCharacter(int characterID,
+			boolean names) {
+		ContentCatalog catalog = ContentCatalog.get();
+		Map<String, String> inventory = new HashMap<String, String>();
+		for (Map.Entry<Integer, Integer> e : getInventoryForCharacter(
+				characterID).entrySet()) {
+			if (names) {
+				inventory.put(catalog.getItem(e.getKey()).getName(), e
+						.getValue()
+						+ "");
+			} else {
+				inventory.put(e.getKey() + "", e.getValue() + "");
+			}
+		}
+		return inventory;
+	}
+
+	/**
+	 * Retrieves the inventory for a given character.
+	 *
+	 * @param characterID
+	 *            The ID of the character whose inventory we are querying.
+	 * @return A copy of the inventory, Map<ItemID, Quantity>
+	 */
+	public static Map<Integer, Integer> getInventoryForCharacter(int characterID) {
+		Inventories i = inventoriesOf(characterID);
+		i.lock.lock();
+		try {
+			return new HashMap<Integer, Integer>(inventory(i, characterID));
+		} finally {
+			i.lock.unlock();
+		}
+	}
+
+	public static int getBottleCapsForCharacter(int characterID) {
+		Inventories i = inventoriesOf(characterID);
+		i.lock.lock();
+		try {
+			Integer caps = inventory(i, characterID).get(BOTTLE_CAP);
+			return caps == null ? 0 : caps;
+		} finally {
+			i.lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given itemID to the given characterID.
+	 *
+	 * @param characterID
+	 *            The ID of the character to add the item to.
+	 * @param itemID
+	 *            The ID of the item to add to the character.
+	 */
+	public static void addItemToCharacter(int characterID, int itemID) {
+		adjustQuantity(characterID, itemID, 1);
+	}
+
+	/**
+	 * Removes the given item ID from the given character.
+	 *
+	 * @param characterID
+	 *            The character ID to remove the item from.
+	 * @param itemID
+	 *            The item ID to remove from the character.
+	 */
+	public static void removeItemFromCharacter(int characterID, int itemID) {
+		adjustQuantity(characterID, itemID, -1);
+	}
+
+	/**
+	 * Adds the given number of an item to a character, or takes it away if
+	 * delta is negative. Nothing is taken away unless the character has all
+	 * of it.
+	 *
+	 * @param characterID
+	 *            The ID of the character.
+	 * @param itemID
+	 *            The ID of the item.
+	 * @param delta
+	 *            How many to add, or take away if negative.
+	 * @return False if the character has fewer than would be taken away.
+	 */
+	public static boolean adjustQuantity(int characterID, int itemID,
+			int delta) {
+		Map<Integer, Integer> deltas = new HashMap<Integer, Integer>();
+		deltas.put(itemID, delta);
+		return adjustQuantities(characterID, deltas);
+	}
+
+	/**
+	 * Changes the quantities of several items a character has at once, such
+	 * as an item bought and the caps paid for it. Either every change is
+	 * made or, if the character has fewer of something than would be taken
+	 * away, none are.
+	 *
+	 * @param characterID
+	 *            The ID of the character.
+	 * @param deltas
+	 *            Map<ItemID, how many to add, or take away if negative>.
+	 * @return False if nothing was changed because the character has too
+	 *         few of something.
+	 */
+	public static boolean adjustQuantities(int characterID,
+			Map<Integer, Integer> deltas) {
+		Inventories i = inventoriesOf(characterID);
+		i.lock.lock();
+		try {
+			Map<Integer, Integer> items = inventory(i, characterID);
+			for (Map.Entry<Integer, Integer> e : deltas.entrySet()) {
+				Integer quantity = items.get(e.getKey());
+				if ((quantity == null ? 0 : quantity) + e.getValue() < 0) {
+					return false;
+				}
+			}
+			Set<Integer> dirty = i.dirty.get(characterID);
+			if (dirty == null) {
+				dirty = new HashSet<Integer>();
+				i.dirty.put(characterID, dirty);
+			}
+			for (Map.Entry<Integer, Integer> e : deltas.entrySet()) {
+				if (e.getValue() != 0) {
+					add(items, e.getKey(), e.getValue());
+					dirty.add(e.getKey());
+				}
+			}
+			return true;
+		} finally {
+			i.lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves the given number of an item from one character to another, so
+	 * that nobody ever sees it in both inventories or in neither.
+	 *
+	 * @param fromCharacterID
+	 *            The ID of the character giving the item.
+	 * @param toCharacterID
+	 *            The ID of the character getting the item.
+	 * @param itemID
+	 *            The ID of the item.
+	 * @param quantity
+	 *            How many to move.
+	 * @return False if nothing was moved because the giver has too few.
+	 */
+	public static boolean moveItem(int fromCharacterID, int toCharacterID,
+			int itemID, int quantity) {
+		// Both locks, taken in order.
+		int x = inventoriesIndex(fromCharacterID);
+		int y = inventoriesIndex(toCharacterID);
+		Inventories a = inventories[Math.min(x, y)];
+		Inventories b = inventories[Math.max(x, y)];
+		a.lock.lock();
+		b.lock.lock();
+		try {
+			if (!adjustQuantity(fromCharacterID, itemID, -quantity)) {
+				return false;
+			}
+			adjustQuantity(toCharacterID, itemID, quantity);
+			return true;
+		} finally {
+			b.lock.unlock();
+			a.lock.unlock();
+		}
+	}
+
+	// Must hold i's lock.
+	private static Map<Integer, Integer> inventory(Inventories i,
+			int characterID) {
+		Map<Integer, Integer> items = i.items.get(characterID);
+		if (items == null) {
+			items = DatabaseConnection.getInventoryForCharacter(characterID);
+			i.items.put(characterID, items);
+		}
+		return items;
+	}
+
+	/*
+	 * Changes the quantity of an item, dropping it when none are left. Nothing
+	 * is taken away if there is none of the item.
+	 */
+	private static boolean add(Map<Integer, Integer> items, int itemID,
+			int amount) {
+		Integer quantity = items.get(itemID);
+		if (quantity == null) {
+			if (amount < 1) {
+				return false;
+			}
+			quantity = 0;
+		}
+		if (quantity + amount < 1) {
+			items.remove(itemID);
+		} else {
+			items.put(itemID, quantity + amount);
+		}
+		return true;
+	}
+
+	/*
+	 * ------- write-behind -------
+	 */
+
+	/**
+	 * Writes everything that changed since the last flush to the database in
+	 * one transaction. If that fails it is all tried again with the next
+	 * flush.
+	 *
+	 * @return The number of statements written.
+	 */
+	public static int flush() {
+		flushLock.lock();
+		try {
+			Set<Character> characters = new HashSet<Character>();
+			Map<Character, Map<String, Object>> characterChanges;
+			characterChanges = new HashMap<Character, Map<String, Object>>();
+			Set<Integer> mobUIDs = new HashSet<Integer>();
+			Set<Integer> doors = new HashSet<Integer>();
+			Set<Integer> rooms = new HashSet<Integer>();
+			Map<Integer, Set<Integer>> inventoryItems = new HashMap<Integer, Set<Integer>>();
+			List<Query> statements = new ArrayList<Query>();
+
+			// Everything as it is at one moment, so a mob moving between
+			// zones is written once, wherever it is.
+			Zone[] z = zones;
+			lockAll(z);
+			lockAll(inventories);
+			try {
+				for (Zone zone : z) {
+					characters.addAll(zone.dirtyCharacters);
+					zone.dirtyCharacters = new HashSet<Character>();
+					mobUIDs.addAll(zone.dirtyMobs);
+					zone.dirtyMobs = new HashSet<Integer>();
+					doors.addAll(zone.dirtyDoors);
+					zone.dirtyDoors = new HashSet<Integer>();
+					rooms.addAll(zone.dirtyRooms);
+					zone.dirtyRooms = new HashSet<Integer>();
+				}
+				for (Inventories i : inventories) {
+					// Every Character's inventory is in one of them only.
+					inventoryItems.putAll(i.dirty);
+					i.dirty = new HashMap<Integer, Set<Integer>>();
+				}
+
+				for (Character c : characters) {
+					if (c.getID() < 1) {
+						// Never stored, so there's nothing to update.
+						continue;
+					}
+					// Only the columns that changed.
+					Map<String, Object> changes = c.takeChanges();
+					if (changes.isEmpty()) {
+						continue;
+					}
+					characterChanges.put(c, changes);
+					statements.add(DatabaseConnection.createUpdateQuery(
+							changes, "characters", c.getID()));
+				}
+				for (int uid : mobUIDs) {
+					Zone at = mobZones.get(uid);
+					writeMob(statements, uid, at == null ? null : at.mobs
+							.get(uid));
+				}
+				for (int roomID : doors) {
+					statements.add(new Query(
+							DatabaseConnection.UPDATE_DOOR_SQL,
+							DatabaseConnection.fromBoolean(zoneFor(roomID).lockedDoors
+									.get(roomID)), roomID));
+				}
+				for (int roomID : rooms) {
+					statements.add(new Query(
+							DatabaseConnection.DELETE_ROOM_ITEMS_SQL, roomID));
+					for (Map.Entry<Integer, Integer> e : zoneFor(roomID).roomItems
+							.get(roomID).entrySet()) {
+						statements.add(new Query(
+								DatabaseConnection.INSERT_ROOM_ITEM_SQL,
+								roomID, e.getKey(), e.getValue()));
+					}
+				}
+				// Only the items whose quantity changed.
+				for (Map.Entry<Integer, Set<Integer>> e : inventoryItems
+						.entrySet()) {
+					int characterID = e.getKey();
+					Map<Integer, Integer> items = inventoriesOf(characterID).items
+							.get(characterID);
+					for (int itemID : e.getValue()) {
+						statements.add(new Query(
+								DatabaseConnection.DELETE_INVENTORY_ITEM_SQL,
+								characterID, itemID));
+						Integer quantity = items.get(itemID);
+						if (quantity != null) {
+							statements.add(new Query(
+									DatabaseConnection.INSERT_INVENTORY_ITEM_SQL,
+									characterID, itemID, quantity));
+						}
+					}
+				}
+			} finally {
+				unlockAll(inventories);
+				unlockAll(z);
+			}
+
+			if (statements.isEmpty()) {
+				return 0;
+			}
+			try {
+				DatabaseConnection.getInstance().executeBatch(statements);
+			} catch (SQLException e) {
+				e.printStackTrace();
+				// Try it all again next time.
+				Zone first = zones[0];
+				first.lock.lock();
+				try {
+					first.dirtyCharacters.addAll(characters);
+					for (Map.Entry<Character, Map<String, Object>> c : characterChanges
+							.entrySet()) {
+						c.getKey().markChanged(c.getValue().keySet());
+					}
+					first.dirtyMobs.addAll(mobUIDs);
+					first.dirtyDoors.addAll(doors);
+					first.dirtyRooms.addAll(rooms);
+				} finally {
+					first.lock.unlock();
+				}
+				for (Map.Entry<Integer, Set<Integer>> d : inventoryItems
+						.entrySet()) {
+					Inventories i = inventoriesOf(d.getKey());
+					i.lock.lock();
+					try {
+						Set<Integer> dirty = i.dirty.get(d.getKey());
+						if (dirty == null) {
+							i.dirty.put(d.getKey(), d.getValue());
+						} else {
+							dirty.addAll(d.getValue());
+						}
+					} finally {
+						i.lock.unlock();
+					}
+				}
+				return 0;
+			}
+			return statements.size();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets how many things changed since the last flush.
+	 *
+	 * @return The number of Characters, mobs, doors, rooms and inventories
+	 *         waiting to be written.
+	 */
+	public static int getPendingChanges() {
+		int pending = 0;
+		for (Zone z : zones) {
+			z.lock.lock();
+			try {
+				pending += z.dirtyCharacters.size() + z.dirtyMobs.size()
+						+ z.dirtyDoors.size() + z.dirtyRooms.size();
+			} finally {
+				z.lock.unlock();
+			}
+		}
+		for (Inventories i : inventories) {
+			i.lock.lock();
+			try {
+				pending += i.dirty.size();
+			} finally {
+				i.lock.unlock();
+			}
+		}
+		return pending;
+	}
+
+	private static void writeMob(List<Query> statements, int uid,
+			SpawnedMob m) {
+		statements.add(new Query(DatabaseConnection.DELETE_ROOM_MOB_SQL, uid));
+		if (m == null) {
+			// It died.
+			return;
+		}
+		statements
+				.add(new Query(
+						DatabaseConnection.INSERT_ROOM_MOB_SQL,
+						m.mobID, uid, m.hp, m.location, m.name,
+						DatabaseConnection.fromBoolean(m.attacked), m.attackerID,
+						m.lastAttacked, m.level));
+	}
+}
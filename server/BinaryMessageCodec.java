@@ -0,0 +1,514 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BinaryMessageCodec is version 2 of the wire protocol. A frame is one byte
+ * for the MessageType, a varint payload length and the payload. The payloads
+ * the Server sends most have fixed layouts:
+ *
+ * DISPLAY is the UTF-8 text itself.
+ *
+ * LOGIN_SUCCESSFUL is the list of class types followed by the list of
+ * characters, each a varint count of strings.
+ *
+ * CHARACTER_STATS is a bit mask of the fields present, then those of the
+ * basic stats (a count and values), HP, AP, experience, room name, class
+ * name and the experience needed for the next level. Fields that didn't
+ * change since the last CHARACTER_STATS are left out and read back as null.
+ *
+ * ROOM_VIEW is the room ID, a byte saying whether the description follows,
+ * the description, the four exits and then the lists of item names, item
+ * quantities, players, NPCs and mobs, each a varint count of strings.
+ *
+ * Every other MessageType carries a tagged value that is null, a String, a
+ * Boolean, an Integer, or an array or List of those. Nothing else can be
+ * sent, so reading a frame never instantiates a class named by the peer.
+ *
+ * Strings are a varint of one more than their byte count followed by
+ * UTF-8, or a lone 0 for a null String. Whole numbers are zig-zag varints. The type byte is the ordinal of the MessageType, so new
+ * MessageTypes must only ever be added at the end of the enum.
+ *
+ * A BinaryMessageCodec keeps no state between frames, so it may be shared.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class BinaryMessageCodec extends MessageCodec {
+
+	public static final int VERSION = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final MessageType[] TYPES = MessageType.values();
+	// A varint of an int never takes more than this many bytes.
+	private static final int MAX_VARINT_SIZE = 5;
+
+	// Fields of CHARACTER_STATS, and which of them are Strings.
+	private static final int STATS_FIELDS = 7;
+	private static final int STATS_ROOM = 4;
+	private static final int STATS_CLASS = 5;
+
+	// Fields of ROOM_VIEW, the exits in it, and the first of its lists.
+	private static final int ROOM_VIEW_FIELDS = 8;
+	private static final int ROOM_VIEW_EXITS = 4;
+	private static final int ROOM_VIEW_FIRST_LIST = 3;
+
+	// Tags of the values carried by the generic payload.
+	private static final int TAG_NULL = 0;
+	private static final int TAG_STRING = 1;
+	private static final int TAG_BOOLEAN = 2;
+	private static final int TAG_INTEGER = 3;
+	private static final int TAG_STRING_ARRAY = 4;
+	private static final int TAG_INT_ARRAY = 5;
+	private static final int TAG_OBJECT_ARRAY = 6;
+	private static final int TAG_LIST = 7;
+	// How deep arrays and lists may be nested in a frame. Nothing sent is
+	// nested more than a couple of levels; a peer nesting deeper is refused
+	// before reading it could run out of stack.
+	private static final int MAX_DEPTH = 8;
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	@Override
+	public boolean isShareable() {
+		return true;
+	}
+
+	@Override
+	public byte[] encode(Message m) throws IOException {
+		Output payload = new Output();
+		try {
+			switch (m.getMessageType()) {
+			case DISPLAY:
+				payload.write(((String) m.getData()).getBytes(UTF8));
+				break;
+			case LOGIN_SUCCESSFUL:
+				writeLoginSuccessful(payload, (Object[]) m.getData());
+				break;
+			case CHARACTER_STATS:
+				writeStats(payload, (Object[]) m.getData());
+				break;
+			case ROOM_VIEW:
+				writeRoomView(payload, (Object[]) m.getData());
+				break;
+			default:
+				payload.writeValue(m.getData());
+			}
+		} catch (ClassCastException e) {
+			throw new IOException("Unexpected " + m.getMessageType()
+					+ " payload.", e);
+		} catch (NullPointerException e) {
+			throw new IOException("Missing " + m.getMessageType()
+					+ " payload.", e);
+		}
+
+		int length = payload.size();
+		checkLength(length);
+		return payload.toFrame(m.getMessageType().ordinal());
+	}
+
+	@Override
+	public Message decode(ByteBuffer in) throws IOException {
+		int start = in.position();
+		if (!in.hasRemaining()) {
+			return null;
+		}
+		int type = in.get() & 0xFF;
+		int length = 0;
+		for (int shift = 0;; shift += 7) {
+			if (!in.hasRemaining()) {
+				in.position(start);
+				return null;
+			}
+			if (shift >= 7 * MAX_VARINT_SIZE) {
+				throw new IOException("Malformed frame length.");
+			}
+			int b = in.get();
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		checkLength(length);
+		if (in.remaining() < length) {
+			in.position(start);
+			return null;
+		}
+		byte[] payload = new byte[length];
+		in.get(payload);
+		return decodePayload(type, payload);
+	}
+
+	@Override
+	public Message read(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		int length = 0;
+		for (int shift = 0;; shift += 7) {
+			if (shift >= 7 * MAX_VARINT_SIZE) {
+				throw new IOException("Malformed frame length.");
+			}
+			int b = in.readUnsignedByte();
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		checkLength(length);
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return decodePayload(type, payload);
+	}
+
+	private Message decodePayload(int type, byte[] payload) throws IOException {
+		if (type >= TYPES.length) {
+			throw new IOException("Unknown MessageType " + type + ".");
+		}
+		MessageType messageType = TYPES[type];
+		ByteBuffer in = ByteBuffer.wrap(payload);
+		Object data;
+		try {
+			switch (messageType) {
+			case DISPLAY:
+				data = new String(payload, UTF8);
+				in.position(in.limit());
+				break;
+			case LOGIN_SUCCESSFUL:
+				data = readLoginSuccessful(in);
+				break;
+			case CHARACTER_STATS:
+				data = readStats(in);
+				break;
+			case ROOM_VIEW:
+				data = readRoomView(in);
+				break;
+			default:
+				data = readValue(in);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated " + messageType + " payload.");
+		}
+		if (in.hasRemaining()) {
+			throw new IOException("Trailing bytes in " + messageType
+					+ " payload.");
+		}
+		return new Message(data, messageType);
+	}
+
+	/*
+	 * ------- fixed layouts -------
+	 */
+
+	@SuppressWarnings("unchecked")
+	private void writeLoginSuccessful(Output out, Object[] data)
+			throws IOException {
+		// data[0] = class types, data[1] = characters
+		for (int i = 0; i < 2; i++) {
+			List<String> strings = (List<String>) data[i];
+			out.writeVarint(strings.size());
+			for (String s : strings) {
+				out.writeString(s);
+			}
+		}
+	}
+
+	private Object[] readLoginSuccessful(ByteBuffer in) throws IOException {
+		Object[] data = new Object[2];
+		for (int i = 0; i < 2; i++) {
+			int count = readCount(in);
+			List<String> strings = new ArrayList<String>(count);
+			for (int j = 0; j < count; j++) {
+				strings.add(readString(in));
+			}
+			data[i] = strings;
+		}
+		return data;
+	}
+
+	private void writeStats(Output out, Object[] data) throws IOException {
+		// See ClientHandler.sendStats for what each field is.
+		int present = 0;
+		for (int i = 0; i < STATS_FIELDS; i++) {
+			if (data[i] != null) {
+				present |= 1 << i;
+			}
+		}
+		out.writeVarint(present);
+		if (data[0] != null) {
+			int[] stats = (int[]) data[0];
+			out.writeVarint(stats.length);
+			for (int stat : stats) {
+				out.writeSignedVarint(stat);
+			}
+		}
+		for (int i = 1; i < STATS_FIELDS; i++) {
+			if (data[i] instanceof String) {
+				out.writeString((String) data[i]);
+			} else if (data[i] != null) {
+				out.writeSignedVarint((Integer) data[i]);
+			}
+		}
+	}
+
+	private Object[] readStats(ByteBuffer in) throws IOException {
+		Object[] data = new Object[STATS_FIELDS];
+		int present = readVarint(in);
+		if ((present & 1) != 0) {
+			int[] stats = new int[readCount(in)];
+			for (int i = 0; i < stats.length; i++) {
+				stats[i] = readSignedVarint(in);
+			}
+			data[0] = stats;
+		}
+		for (int i = 1; i < STATS_FIELDS; i++) {
+			if ((present & (1 << i)) == 0) {
+				continue;
+			}
+			if (i == STATS_ROOM || i == STATS_CLASS) {
+				data[i] = readString(in);
+			} else {
+				data[i] = readSignedVarint(in);
+			}
+		}
+		return data;
+	}
+
+	private void writeRoomView(Output out, Object[] data) throws IOException {
+		// See MessageType.ROOM_VIEW for what each field is.
+		out.writeSignedVarint((Integer) data[0]);
+		if (data[1] != null) {
+			out.write(1);
+			out.writeString((String) data[1]);
+		} else {
+			out.write(0);
+		}
+		int[] exits = (int[]) data[2];
+		for (int i = 0; i < ROOM_VIEW_EXITS; i++) {
+			out.writeSignedVarint(exits[i]);
+		}
+		for (int i = ROOM_VIEW_FIRST_LIST; i < ROOM_VIEW_FIELDS; i++) {
+			String[] strings = (String[]) data[i];
+			out.writeVarint(strings.length);
+			for (String s : strings) {
+				out.writeString(s);
+			}
+		}
+	}
+
+	private Object[] readRoomView(ByteBuffer in) throws IOException {
+		Object[] data = new Object[ROOM_VIEW_FIELDS];
+		data[0] = readSignedVarint(in);
+		if (in.get() != 0) {
+			data[1] = readString(in);
+		}
+		int[] exits = new int[ROOM_VIEW_EXITS];
+		for (int i = 0; i < ROOM_VIEW_EXITS; i++) {
+			exits[i] = readSignedVarint(in);
+		}
+		data[2] = exits;
+		for (int i = ROOM_VIEW_FIRST_LIST; i < ROOM_VIEW_FIELDS; i++) {
+			String[] strings = new String[readCount(in)];
+			for (int j = 0; j < strings.length; j++) {
+				strings[j] = readString(in);
+			}
+			data[i] = strings;
+		}
+		return data;
+	}
+
+	/*
+	 * ------- generic values -------
+	 */
+
+	private Object readValue(ByteBuffer in) throws IOException {
+		return readValue(in, 0);
+	}
+
+	private Object readValue(ByteBuffer in, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("Nesting too deep.");
+		}
+		int tag = in.get();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_STRING:
+			return readString(in);
+		case TAG_BOOLEAN:
+			return in.get() != 0;
+		case TAG_INTEGER:
+			return readSignedVarint(in);
+		case TAG_STRING_ARRAY:
+			String[] strings = new String[readCount(in)];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString(in);
+			}
+			return strings;
+		case TAG_INT_ARRAY:
+			int[] ints = new int[readCount(in)];
+			for (int i = 0; i < ints.length; i++) {
+				ints[i] = readSignedVarint(in);
+			}
+			return ints;
+		case TAG_OBJECT_ARRAY:
+			Object[] objects = new Object[readCount(in)];
+			for (int i = 0; i < objects.length; i++) {
+				objects[i] = readValue(in, depth + 1);
+			}
+			return objects;
+		case TAG_LIST:
+			int count = readCount(in);
+			List<Object> list = new ArrayList<Object>(count);
+			for (int i = 0; i < count; i++) {
+				list.add(readValue(in, depth + 1));
+			}
+			return list;
+		default:
+			throw new IOException("Unknown value tag " + tag + ".");
+		}
+	}
+
+	private static int readVarint(ByteBuffer in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+
+	private static int readSignedVarint(ByteBuffer in) throws IOException {
+		int n = readVarint(in);
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static int readCount(ByteBuffer in) throws IOException {
+		int count = readVarint(in);
+		// Every element takes at least a byte.
+		if (count < 0 || count > in.remaining()) {
+			throw new IOException("Invalid count " + count + ".");
+		}
+		return count;
+	}
+
+	private static String readString(ByteBuffer in) throws IOException {
+		int length = readVarint(in) - 1;
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > in.remaining()) {
+			throw new IOException("Invalid string length " + length + ".");
+		}
+		String s = new String(in.array(), in.arrayOffset() + in.position(),
+				length, UTF8);
+		in.position(in.position() + length);
+		return s;
+	}
+
+	/**
+	 * A growable byte buffer that knows how to write the parts of a frame.
+	 */
+	private static class Output extends ByteArrayOutputStream {
+
+		/**
+		 * Puts the type byte and length in front of what has been written.
+		 */
+		public byte[] toFrame(int type) {
+			int header = 1;
+			for (int n = count; (n & ~0x7F) != 0; n >>>= 7) {
+				header++;
+			}
+			byte[] frame = new byte[header + 1 + count];
+			frame[0] = (byte) type;
+			int i = 1;
+			int n = count;
+			while ((n & ~0x7F) != 0) {
+				frame[i++] = (byte) ((n & 0x7F) | 0x80);
+				n >>>= 7;
+			}
+			frame[i++] = (byte) n;
+			System.arraycopy(buf, 0, frame, i, count);
+			return frame;
+		}
+
+		public void writeVarint(int value) {
+			while ((value & ~0x7F) != 0) {
+				write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+
+		public void writeSignedVarint(int value) {
+			writeVarint((value << 1) ^ (value >> 31));
+		}
+
+		public void writeString(String s) throws IOException {
+			if (s == null) {
+				writeVarint(0);
+				return;
+			}
+			byte[] bytes = s.getBytes(UTF8);
+			writeVarint(bytes.length + 1);
+			write(bytes);
+		}
+
+		public void writeValue(Object o) throws IOException {
+			if (o == null) {
+				write(TAG_NULL);
+			} else if (o instanceof String) {
+				write(TAG_STRING);
+				writeString((String) o);
+			} else if (o instanceof Boolean) {
+				write(TAG_BOOLEAN);
+				write((Boolean) o ? 1 : 0);
+			} else if (o instanceof Integer) {
+				write(TAG_INTEGER);
+				writeSignedVarint((Integer) o);
+			} else if (o instanceof String[]) {
+				String[] strings = (String[]) o;
+				write(TAG_STRING_ARRAY);
+				writeVarint(strings.length);
+				for (String s : strings) {
+					writeString(s);
+				}
+			} else if (o instanceof int[]) {
+				int[] ints = (int[]) o;
+				write(TAG_INT_ARRAY);
+				writeVarint(ints.length);
+				for (int i : ints) {
+					writeSignedVarint(i);
+				}
+			} else if (o instanceof Object[]) {
+				Object[] objects = (Object[]) o;
+				write(TAG_OBJECT_ARRAY);
+				writeVarint(objects.length);
+				for (Object object : objects) {
+					writeValue(object);
+				}
+			} else if (o instanceof List<?>) {
+				List<?> list = (List<?>) o;
+				write(TAG_LIST);
+				writeVarint(list.size());
+				for (Object object : list) {
+					writeValue(object);
+				}
+			} else {
+				throw new IOException("Cannot encode a "
+						+ o.getClass().getName() + ".");
+			}
+		}
+	}
+}
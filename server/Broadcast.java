@@ -0,0 +1,96 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Broadcast is a Message on its way to any number of Connections. Codecs
+ * that keep no per-connection state encode it only once, however many
+ * Clients it goes to, and every Connection writes the same bytes. Codecs
+ * that do keep state, like the serialized one, still encode it per
+ * Connection.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class Broadcast {
+
+	private final Message message;
+	private volatile byte[] shared;
+	private volatile int sharedVersion;
+
+	public Broadcast(Message message) {
+		this.message = message;
+	}
+
+	public Message getMessage() {
+		return message;
+	}
+
+	/**
+	 * Sends this Broadcast to each of the given Connections.
+	 *
+	 * @param recipients
+	 *            The Connections to send to.
+	 */
+	public void sendTo(Iterable<Connection> recipients) {
+		for (Connection c : recipients) {
+			c.send(this);
+		}
+	}
+
+	/**
+	 * Gets the frame of this Broadcast for a Connection using the given
+	 * MessageCodec. The returned buffer is the Connection's own to write,
+	 * though the bytes behind it may be shared and must not be changed.
+	 *
+	 * @param codec
+	 *            The MessageCodec of the Connection.
+	 * @return The frame, ready to be written.
+	 * @throws IOException
+	 */
+	public ByteBuffer frameFor(MessageCodec codec) throws IOException {
+		if (!codec.isShareable()) {
+			return ByteBuffer.wrap(codec.encode(message));
+		}
+		byte[] frame = shared;
+		if (frame == null || sharedVersion != codec.getVersion()) {
+			synchronized (this) {
+				frame = shared;
+				if (frame == null || sharedVersion != codec.getVersion()) {
+					frame = codec.encode(message);
+					sharedVersion = codec.getVersion();
+					shared = frame;
+				}
+			}
+		}
+		return ByteBuffer.wrap(frame);
+	}
+
+	/**
+	 * Gets the frames of the given Broadcasts back to back in one buffer, so
+	 * they can be written at once.
+	 *
+	 * @param broadcasts
+	 *            The Broadcasts, in order.
+	 * @param codec
+	 *            The MessageCodec of the Connection.
+	 * @return The frames, ready to be written.
+	 * @throws IOException
+	 */
+	public static ByteBuffer framesFor(List<Broadcast> broadcasts,
+			MessageCodec codec) throws IOException {
+		if (broadcasts.size() == 1) {
+			return broadcasts.get(0).frameFor(codec);
+		}
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		for (Broadcast b : broadcasts) {
+			ByteBuffer frame = b.frameFor(codec);
+			frames.write(frame.array(), frame.arrayOffset() + frame.position(),
+					frame.remaining());
+		}
+		return ByteBuffer.wrap(frames.toByteArray());
+	}
+}
@@ -0,0 +1,104 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Compressor deflates everything the Server sends to one Client after their
+ * Handshake, when both sides agreed on it. The Deflater lives as long as the
+ * connection, so each Message is compressed against everything sent before
+ * it, and is sync flushed at every write so the Client can inflate it right
+ * away. The Client reads the stream with an InflaterInputStream.
+ *
+ * Bytes in, bytes out and the time spent deflating are counted per Client
+ * and for the whole Server.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class Compressor {
+
+	private static final AtomicLong totalBytesIn = new AtomicLong(0);
+	private static final AtomicLong totalBytesOut = new AtomicLong(0);
+	private static final AtomicLong totalNanos = new AtomicLong(0);
+
+	private Deflater deflater;
+	private boolean ended;
+	private byte[] chunk;
+	private long bytesIn;
+	private long bytesOut;
+	private long nanos;
+
+	public Compressor() {
+		this.deflater = new Deflater(ServerConfig.COMPRESSION_LEVEL);
+		this.chunk = new byte[8 * 1024];
+		this.ended = false;
+	}
+
+	/**
+	 * Compresses the given frames. Calls must be made in the order the frames
+	 * are to be written.
+	 *
+	 * @param frames
+	 *            The frames to compress.
+	 * @return The compressed bytes, ready to be written.
+	 */
+	public synchronized ByteBuffer compress(ByteBuffer frames) {
+		if (ended) {
+			// The connection is gone, nobody is going to read this.
+			return frames;
+		}
+		long start = System.nanoTime();
+		int length = frames.remaining();
+		deflater.setInput(frames.array(), frames.arrayOffset()
+				+ frames.position(), length);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+				length / 2 + 16);
+		int n;
+		do {
+			n = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+			compressed.write(chunk, 0, n);
+		} while (n == chunk.length);
+		byte[] out = compressed.toByteArray();
+
+		long elapsed = System.nanoTime() - start;
+		bytesIn += length;
+		bytesOut += out.length;
+		nanos += elapsed;
+		totalBytesIn.addAndGet(length);
+		totalBytesOut.addAndGet(out.length);
+		totalNanos.addAndGet(elapsed);
+		return ByteBuffer.wrap(out);
+	}
+
+	/**
+	 * Frees the Deflater. Nothing can be compressed afterwards.
+	 */
+	public synchronized void end() {
+		ended = true;
+		deflater.end();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return describe(bytesIn, bytesOut, nanos);
+	}
+
+	/**
+	 * Describes how compression has done for all Clients so far.
+	 *
+	 * @return Bytes before and after, and the CPU time spent.
+	 */
+	public static String describeTotals() {
+		return describe(totalBytesIn.get(), totalBytesOut.get(),
+				totalNanos.get());
+	}
+
+	private static String describe(long in, long out, long nanos) {
+		return in + " -> " + out + " bytes ("
+				+ (in == 0 ? 100 : out * 100 / in) + "%), " + nanos / 1000000
+				+ " ms deflating";
+	}
+}
@@ -0,0 +1,239 @@
+package server;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Connection is the Server's end of a link to one Client. It sends Messages
+ * to the Client and hands every Message it receives to its
+ * ConnectionListener, regardless of whether the Client is served by a thread
+ * of its own or by the NIOReactor.
+ *
+ * While a ResponseBuffer is open on the current thread, Messages for the
+ * Client are collected and go out together when it is closed.
+ *
+ * Messages for the Client wait in a bounded OutboundQueue, so whoever sends
+ * them never waits on the Client's network. A Client that doesn't keep up is
+ * evicted.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public abstract class Connection {
+
+	private volatile ConnectionListener listener;
+	private OutboundQueue outbound = new OutboundQueue();
+	private volatile boolean evicted = false;
+	private volatile ResponseBuffer response = null;
+	private boolean closeAfterResponse = false;
+	private volatile Compressor compressor = null;
+
+	/**
+	 * Sends the given Message to the Client.
+	 *
+	 * @param m
+	 *            The Message to send.
+	 */
+	public void send(Message m) {
+		send(new Broadcast(m));
+	}
+
+	/**
+	 * Sends the given Broadcast to the Client, sharing its frame with the
+	 * other recipients where the MessageCodec allows.
+	 *
+	 * @param b
+	 *            The Broadcast to send.
+	 */
+	public void send(Broadcast b) {
+		ResponseBuffer r = response;
+		if (r != null && r.isOwnedByCurrentThread()) {
+			r.add(b);
+			return;
+		}
+		enqueue(Collections.singletonList(b));
+	}
+
+	/**
+	 * Starts collecting what the current thread sends to the Client, or
+	 * nests in the response it is already collecting.
+	 */
+	public void beginResponse() {
+		ResponseBuffer r = response;
+		if (r != null && r.isOwnedByCurrentThread()) {
+			r.enter();
+			return;
+		}
+		response = new ResponseBuffer();
+	}
+
+	/**
+	 * Finishes the current thread's response and, if it is the outermost
+	 * one, sends everything collected in a single write.
+	 */
+	public void endResponse() {
+		ResponseBuffer r = response;
+		if (r == null || !r.isOwnedByCurrentThread() || !r.leave()) {
+			return;
+		}
+		response = null;
+		List<Broadcast> broadcasts = r.coalesce();
+		if (!broadcasts.isEmpty()) {
+			enqueue(broadcasts);
+		}
+		if (closeAfterResponse) {
+			closeAfterResponse = false;
+			closeGracefully();
+		}
+	}
+
+	/**
+	 * Queues the given Broadcasts to be written to the Client back to back.
+	 *
+	 * @param broadcasts
+	 *            The Broadcasts to send, in order.
+	 */
+	protected abstract void enqueue(List<Broadcast> broadcasts);
+
+	/**
+	 * Closes this Connection once everything already sent has been written,
+	 * including the response the current thread is collecting.
+	 */
+	public void close() {
+		ResponseBuffer r = response;
+		if (r != null && r.isOwnedByCurrentThread()) {
+			closeAfterResponse = true;
+			return;
+		}
+		closeGracefully();
+	}
+
+	/**
+	 * Closes this Connection once everything queued has been written.
+	 */
+	protected abstract void closeGracefully();
+
+	/**
+	 * Gets the address of the Client.
+	 *
+	 * @return The address of the Client.
+	 */
+	public abstract InetAddress getInetAddress();
+
+	/**
+	 * Gets the MessageCodec agreed on with the Client.
+	 *
+	 * @return The MessageCodec, or null before the Handshake.
+	 */
+	public abstract MessageCodec getCodec();
+
+	/**
+	 * Gets the Compressor deflating what is sent to the Client.
+	 *
+	 * @return The Compressor, or null if the Client isn't compressed.
+	 */
+	public Compressor getCompressor() {
+		return compressor;
+	}
+
+	/**
+	 * Starts deflating everything written from now on, if the Handshake
+	 * agreed on it.
+	 *
+	 * @param answer
+	 *            The Server's answer in the Handshake.
+	 */
+	protected void startCompression(Handshake answer) {
+		if (answer.has(Handshake.FLAG_DEFLATE)) {
+			compressor = new Compressor();
+		}
+	}
+
+	/**
+	 * Deflates the given frames if the Client is compressed. Must be called
+	 * in the order the frames are written.
+	 *
+	 * @param frames
+	 *            The frames to write.
+	 * @return What to write.
+	 */
+	protected ByteBuffer compress(ByteBuffer frames) {
+		Compressor c = compressor;
+		return c == null ? frames : c.compress(frames);
+	}
+
+	/**
+	 * Frees the Compressor once nothing more will be written.
+	 */
+	protected void endCompression() {
+		Compressor c = compressor;
+		if (c != null) {
+			c.end();
+		}
+	}
+
+	/**
+	 * Gets the queue of frames waiting to be written to the Client, for its
+	 * depth and drop count.
+	 *
+	 * @return The OutboundQueue of this Connection.
+	 */
+	public OutboundQueue getOutboundQueue() {
+		return outbound;
+	}
+
+	/**
+	 * Whether this Connection was closed because the Client didn't keep up.
+	 *
+	 * @return True if the Client was evicted.
+	 */
+	public boolean wasEvicted() {
+		return evicted;
+	}
+
+	/**
+	 * Marks this Connection evicted if its Client has been backlogged for
+	 * too long. The caller closes it.
+	 *
+	 * @return True if the Client is to be evicted.
+	 */
+	protected boolean checkEviction() {
+		if (outbound.isOverdue()) {
+			evicted = true;
+		}
+		return evicted;
+	}
+
+	public ConnectionListener getListener() {
+		return listener;
+	}
+
+	public void setListener(ConnectionListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Passes a received Message on to the listener, if there is one.
+	 *
+	 * @param m
+	 *            The Message that was received.
+	 */
+	protected void fireMessageReceived(Message m) {
+		ConnectionListener l = listener;
+		if (l != null) {
+			l.messageReceived(m);
+		}
+	}
+
+	/**
+	 * Tells the listener, if there is one, that the Client is gone.
+	 */
+	protected void fireConnectionClosed() {
+		ConnectionListener l = listener;
+		if (l != null) {
+			l.connectionClosed();
+		}
+	}
+}
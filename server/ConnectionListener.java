@@ -0,0 +1,23 @@
+package server;
+
+/**
+ * Receives the Messages and the disconnect of a Connection.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public interface ConnectionListener {
+
+	/**
+	 * Called for every Message the Client sends.
+	 *
+	 * @param m
+	 *            The Message the Client sent.
+	 */
+	void messageReceived(Message m);
+
+	/**
+	 * Called once when the Connection to the Client is lost or closed.
+	 */
+	void connectionClosed();
+}
@@ -0,0 +1,245 @@
+package server;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EventBus delivers the notices players get about the world around them.
+ * Every player in the world is subscribed to three channels: the room its
+ * Character is in, the zone that room is in and the global one. A notice is
+ * published to one channel and goes to that channel's subscribers only, so
+ * publishing to a room costs as much as there are players in it, not as
+ * many as are connected.
+ *
+ * When a Character moves, its Connection is taken off the old room's and
+ * zone's channels and put on the new ones at once; a notice published to
+ * either room at the same time reaches it in exactly one of them. Which
+ * zone a room is in is looked up when the Character moves there.
+ *
+ * Whatever the kind of notice, it is sent as one Broadcast to all of the
+ * subscribers, encoded once and queued on each of their Connections like
+ * any other Message, so a Client that doesn't keep up is dealt with by its
+ * OutboundQueue the same way for all of them.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public final class EventBus {
+
+	private static final Connection[] NONE = new Connection[0];
+
+	// Guards the channels and subscriptions. Subscribers are only read under
+	// it; sending happens outside.
+	private static final Object lock = new Object();
+	private static final Map<Integer, Channel> rooms = new HashMap<Integer, Channel>();
+	private static final Map<Integer, Channel> zones = new HashMap<Integer, Channel>();
+	private static final Channel global = new Channel();
+	private static final Map<Connection, Subscription> subscriptions = new HashMap<Connection, Subscription>();
+
+	private static final AtomicLong published = new AtomicLong(0);
+	private static final AtomicLong delivered = new AtomicLong(0);
+
+	private EventBus() {
+	}
+
+	/**
+	 * Subscribes the given Connection to the channels of the given room and
+	 * its zone, and to the global channel. If the Connection was subscribed
+	 * to another room, it leaves that room's channels at the same time.
+	 *
+	 * @param connection
+	 *            The Connection of the player.
+	 * @param roomID
+	 *            The room the player's Character is in.
+	 */
+	public static void subscribe(Connection connection, int roomID) {
+		int zone = GameLoop.forRoom(roomID).getIndex();
+		synchronized (lock) {
+			Subscription s = subscriptions.get(connection);
+			if (s == null) {
+				s = new Subscription();
+				subscriptions.put(connection, s);
+				global.add(connection);
+			} else {
+				leave(rooms, s.roomID, connection);
+				leave(zones, s.zone, connection);
+			}
+			s.roomID = roomID;
+			s.zone = zone;
+			join(rooms, roomID, connection);
+			join(zones, zone, connection);
+		}
+	}
+
+	/**
+	 * Takes the given Connection off every channel it is subscribed to.
+	 *
+	 * @param connection
+	 *            The Connection of the player.
+	 */
+	public static void unsubscribe(Connection connection) {
+		synchronized (lock) {
+			Subscription s = subscriptions.remove(connection);
+			if (s != null) {
+				leave(rooms, s.roomID, connection);
+				leave(zones, s.zone, connection);
+				global.remove(connection);
+			}
+		}
+	}
+
+	private static void join(Map<Integer, Channel> channels, int key,
+			Connection connection) {
+		Channel c = channels.get(key);
+		if (c == null) {
+			c = new Channel();
+			channels.put(key, c);
+		}
+		c.add(connection);
+	}
+
+	private static void leave(Map<Integer, Channel> channels, int key,
+			Connection connection) {
+		Channel c = channels.get(key);
+		if (c != null && c.remove(connection)) {
+			channels.remove(key);
+		}
+	}
+
+	/**
+	 * Sends a Message to every player in the given room.
+	 *
+	 * @param roomID
+	 *            The room.
+	 * @param m
+	 *            The Message.
+	 */
+	public static void publishRoom(int roomID, Message m) {
+		publishRoom(roomID, m, null);
+	}
+
+	/**
+	 * Sends a Message to every player in the given room but one, usually
+	 * the one the Message is about.
+	 *
+	 * @param roomID
+	 *            The room.
+	 * @param m
+	 *            The Message.
+	 * @param except
+	 *            The Connection not to send it to, or null.
+	 */
+	public static void publishRoom(int roomID, Message m, Connection except) {
+		publish(subscribers(rooms, roomID), m, except);
+	}
+
+	/**
+	 * Sends a Message to every player in the given zone.
+	 *
+	 * @param zone
+	 *            The zone, from 0.
+	 * @param m
+	 *            The Message.
+	 */
+	public static void publishZone(int zone, Message m) {
+		publish(subscribers(zones, zone), m, null);
+	}
+
+	/**
+	 * Sends a Message to every player in the world.
+	 *
+	 * @param m
+	 *            The Message.
+	 */
+	public static void publishGlobal(Message m) {
+		Connection[] to;
+		synchronized (lock) {
+			to = global.subscribers;
+		}
+		publish(to, m, null);
+	}
+
+	private static Connection[] subscribers(Map<Integer, Channel> channels,
+			int key) {
+		synchronized (lock) {
+			Channel c = channels.get(key);
+			return c == null ? NONE : c.subscribers;
+		}
+	}
+
+	private static void publish(Connection[] to, Message m, Connection except) {
+		published.incrementAndGet();
+		Broadcast b = null;
+		for (Connection c : to) {
+			if (c == except) {
+				continue;
+			}
+			if (b == null) {
+				b = new Broadcast(m);
+			}
+			c.send(b);
+			delivered.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Describes the channels and what has been sent through them so far.
+	 *
+	 * @return Subscribers, channels in use and notices published and
+	 *         delivered.
+	 */
+	public static String describe() {
+		int players;
+		int roomChannels;
+		int zoneChannels;
+		synchronized (lock) {
+			players = subscriptions.size();
+			roomChannels = rooms.size();
+			zoneChannels = zones.size();
+		}
+		return String.format("%d players, %d rooms and %d zones with "
+				+ "players, %d notices published, %d delivered", players,
+				roomChannels, zoneChannels, published.get(), delivered.get());
+	}
+
+	/*
+	 * The subscribers of one channel. The array is replaced rather than
+	 * changed, so whoever read it can send to it after letting go of the
+	 * lock.
+	 */
+	private static final class Channel {
+		private Connection[] subscribers = NONE;
+
+		private void add(Connection connection) {
+			Connection[] s = Arrays.copyOf(subscribers, subscribers.length + 1);
+			s[s.length - 1] = connection;
+			subscribers = s;
+		}
+
+		/*
+		 * Returns true if the channel has no subscribers left.
+		 */
+		private boolean remove(Connection connection) {
+			for (int i = 0; i < subscribers.length; i++) {
+				if (subscribers[i] == connection) {
+					Connection[] s = new Connection[subscribers.length - 1];
+					System.arraycopy(subscribers, 0, s, 0, i);
+					System.arraycopy(subscribers, i + 1, s, i, s.length - i);
+					subscribers = s;
+					break;
+				}
+			}
+			return subscribers.length == 0;
+		}
+	}
+
+	/*
+	 * The room and zone a Connection is subscribed to.
+	 */
+	private static final class Subscription {
+		private int roomID;
+		private int zone;
+	}
+}
@@ -0,0 +1,392 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import library.Character;
+import library.RoomGraph;
+import library.WorldState;
+
+/**
+ * A GameLoop is the one thread that changes the game in one zone of the
+ * vault. The rooms are split into ServerConfig.ZONES zones and every zone
+ * has a GameLoop of its own, so the zones are played on as many cores.
+ * Clients' Messages and the GameScheduler's world events don't run where
+ * they arrive; they are queued with the GameLoop of the zone they concern,
+ * and every tick it takes what is queued and runs it, one after the other.
+ * Which zone a room is in is up to WorldState, which keeps what is in each
+ * zone under a lock of that zone's own, so the zones don't wait for each
+ * other.
+ *
+ * A Client's commands go to the zone its Character is in. When a Character
+ * walks into another zone, the Client is handed off: its next command is
+ * passed on to the new zone's GameLoop before anything else happens. A mob
+ * walking into another zone is handed off the same way, as an event posted
+ * to the new zone's GameLoop.
+ * Events about the whole world, rather than some rooms, run in the first
+ * zone.
+ *
+ * A GameLoop ticks ServerConfig.TICK_RATE times a second. A tick first runs
+ * every world event that is waiting, then at most
+ * ServerConfig.COMMANDS_PER_TICK commands, in the order they arrived. The
+ * rest wait for the next tick, so one busy tick can't starve the world.
+ *
+ * How long ticks take is sampled, for percentiles over the recent ones.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public final class GameLoop {
+
+	// Ticks whose duration the percentiles are worked out over.
+	private static final int SAMPLES = 1024;
+
+	private static volatile GameLoop[] zones = { new GameLoop(0,
+			ServerConfig.TICK_RATE, ServerConfig.COMMANDS_PER_TICK) };
+	private static final AtomicInteger nextZone = new AtomicInteger(0);
+	private static final ThreadLocal<GameLoop> current = new ThreadLocal<GameLoop>();
+
+	private final int index;
+	private final int tickRate;
+	private final int commandsPerTick;
+	private final BlockingQueue<Runnable> events = new LinkedBlockingQueue<Runnable>();
+	private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<Runnable>();
+	private final long[] durations = new long[SAMPLES];
+	private final AtomicLong ticks = new AtomicLong(0);
+	private final AtomicLong overruns = new AtomicLong(0);
+	private final AtomicLong deferred = new AtomicLong(0);
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a GameLoop. It doesn't tick until it is started.
+	 *
+	 * @param index
+	 *            The zone it runs, from 0.
+	 * @param tickRate
+	 *            Ticks a second.
+	 * @param commandsPerTick
+	 *            Commands a tick runs at most.
+	 */
+	public GameLoop(int index, int tickRate, int commandsPerTick) {
+		this.index = index;
+		this.tickRate = Math.max(1, tickRate);
+		this.commandsPerTick = commandsPerTick;
+	}
+
+	/**
+	 * Splits the rooms into the given number of zones and starts a GameLoop
+	 * for each of them, if they aren't running yet.
+	 *
+	 * @param count
+	 *            The number of zones, at least 1.
+	 */
+	public static synchronized void startZones(int count) {
+		if (zones[0].thread != null) {
+			return;
+		}
+		WorldState.splitIntoZones(count);
+		GameLoop[] loops = new GameLoop[Math.max(1, count)];
+		for (int i = 0; i < loops.length; i++) {
+			// Anything posted to the first zone before now is kept.
+			loops[i] = i == 0 ? zones[0] : new GameLoop(i,
+					ServerConfig.TICK_RATE, ServerConfig.COMMANDS_PER_TICK);
+			loops[i].start();
+		}
+		zones = loops;
+	}
+
+	/**
+	 * Gets the GameLoops of all zones.
+	 *
+	 * @return The GameLoops, in the order of their zones.
+	 */
+	public static GameLoop[] getZones() {
+		return zones.clone();
+	}
+
+	/**
+	 * Gets the GameLoop of the first zone, which runs the events about the
+	 * whole world.
+	 *
+	 * @return The GameLoop.
+	 */
+	public static GameLoop world() {
+		return zones[0];
+	}
+
+	/**
+	 * Gets the GameLoop of the zone the given room is in.
+	 *
+	 * @param roomID
+	 *            The room's ID.
+	 * @return The GameLoop. Rooms that don't exist are in the first zone.
+	 */
+	public static GameLoop forRoom(int roomID) {
+		GameLoop[] loops = zones;
+		if (loops.length == 1) {
+			return loops[0];
+		}
+		int zone = WorldState.getZone(roomID);
+		return zone < loops.length ? loops[zone] : loops[0];
+	}
+
+	/**
+	 * Gets the GameLoop of a zone for work that isn't in any room, taking
+	 * turns between the zones.
+	 *
+	 * @return The GameLoop.
+	 */
+	public static GameLoop any() {
+		GameLoop[] loops = zones;
+		return loops[(nextZone.getAndIncrement() & Integer.MAX_VALUE)
+				% loops.length];
+	}
+
+	/**
+	 * Runs an event that changes the given Character on the GameLoop of the
+	 * zone it is in, the only one that changes it. If it went into another
+	 * zone before the event ran, the event follows it there.
+	 *
+	 * @param c
+	 *            The Character.
+	 * @param event
+	 *            The event.
+	 */
+	public static void postTo(final Character c, final Runnable event) {
+		forRoom(c.getLocation()).post(new Runnable() {
+
+			@Override
+			public void run() {
+				GameLoop zone = forRoom(c.getLocation());
+				if (zone != current()) {
+					zone.post(this);
+					return;
+				}
+				event.run();
+			}
+		});
+	}
+
+	/**
+	 * Gets the GameLoop running on the current thread.
+	 *
+	 * @return The GameLoop, or null if this isn't a GameLoop's thread.
+	 */
+	public static GameLoop current() {
+		return current.get();
+	}
+
+	/**
+	 * Gets the rooms in this GameLoop's zone.
+	 *
+	 * @return The rooms' IDs, in order.
+	 */
+	public int[] getRooms() {
+		RoomGraph graph = RoomGraph.get();
+		int[] rooms = new int[graph.getMaxID() + 1];
+		int count = 0;
+		for (int i = 1; i < rooms.length; i++) {
+			if (graph.contains(i) && WorldState.getZone(i) == index) {
+				rooms[count++] = i;
+			}
+		}
+		return Arrays.copyOf(rooms, count);
+	}
+
+	/**
+	 * Gets which zone this GameLoop runs.
+	 *
+	 * @return The zone, from 0.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Starts ticking, if this GameLoop isn't yet.
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				current.set(GameLoop.this);
+				loop();
+			}
+		}, "Zone " + index);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops ticking after the current tick. Whatever is still queued is not
+	 * run.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Queues a Client's command to run on a coming tick.
+	 *
+	 * @param command
+	 *            The command.
+	 */
+	public void submit(Runnable command) {
+		commands.add(command);
+	}
+
+	/**
+	 * Queues a world event to run on the next tick.
+	 *
+	 * @param event
+	 *            The event.
+	 */
+	public void post(Runnable event) {
+		events.add(event);
+	}
+
+	/**
+	 * Wraps the given event, so that running the wrapper posts it to this
+	 * GameLoop. Events scheduled with the GameScheduler are wrapped in this.
+	 *
+	 * @param event
+	 *            The event.
+	 * @return A Runnable that posts the event.
+	 */
+	public Runnable later(final Runnable event) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				post(event);
+			}
+		};
+	}
+
+	private void loop() {
+		long period = 1000000000L / tickRate;
+		long next = System.nanoTime();
+		List<Runnable> batch = new ArrayList<Runnable>();
+		while (running) {
+			long start = System.nanoTime();
+			tick(batch);
+			long duration = System.nanoTime() - start;
+			synchronized (durations) {
+				durations[(int) (ticks.getAndIncrement() % SAMPLES)] = duration;
+			}
+
+			next += period;
+			long wait = next - System.nanoTime();
+			if (wait < 0) {
+				// Running behind. Start the next tick now, but don't try
+				// to make up for the ticks that were missed.
+				overruns.incrementAndGet();
+				next = System.nanoTime();
+			}
+			while ((wait = next - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+		}
+	}
+
+	private void tick(List<Runnable> batch) {
+		events.drainTo(batch);
+		commands.drainTo(batch, commandsPerTick);
+		if (!commands.isEmpty()) {
+			deferred.incrementAndGet();
+		}
+		for (Runnable r : batch) {
+			try {
+				r.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Gets how many commands are waiting for a tick.
+	 *
+	 * @return The number of commands.
+	 */
+	public int getQueuedCommands() {
+		return commands.size();
+	}
+
+	/**
+	 * Gets how many ticks there have been so far.
+	 *
+	 * @return The number of ticks.
+	 */
+	public long getTicks() {
+		return ticks.get();
+	}
+
+	/**
+	 * Gets how many ticks took longer than a tick should.
+	 *
+	 * @return The number of ticks.
+	 */
+	public long getOverruns() {
+		return overruns.get();
+	}
+
+	/**
+	 * Gets how many ticks left commands for later because of the cap.
+	 *
+	 * @return The number of ticks.
+	 */
+	public long getDeferredTicks() {
+		return deferred.get();
+	}
+
+	/**
+	 * Gets the given percentiles of how long the recent ticks took.
+	 *
+	 * @param percentiles
+	 *            The percentiles, from 0 to 100.
+	 * @return The durations, in milliseconds, in the order asked for. All 0
+	 *         if there hasn't been a tick yet.
+	 */
+	public double[] getTickPercentiles(double... percentiles) {
+		long[] sorted;
+		synchronized (durations) {
+			sorted = Arrays.copyOf(durations, (int) Math.min(ticks.get(),
+					SAMPLES));
+		}
+		Arrays.sort(sorted);
+		double[] result = new double[percentiles.length];
+		for (int i = 0; i < percentiles.length && sorted.length > 0; i++) {
+			int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+			rank = Math.max(1, Math.min(rank, sorted.length));
+			result[i] = sorted[rank - 1] / 1000000.0;
+		}
+		return result;
+	}
+
+	/**
+	 * Describes how this GameLoop has done so far.
+	 *
+	 * @return Ticks, their durations, overruns and commands waiting.
+	 */
+	public String describe() {
+		double[] p = getTickPercentiles(50, 95, 99, 100);
+		return String.format("%d ticks, %.2f / %.2f / %.2f / %.2f ms "
+				+ "(50th / 95th / 99th / max), %d overran, %d hit the cap, "
+				+ "%d commands waiting", getTicks(), p[0], p[1], p[2], p[3],
+				getOverruns(), getDeferredTicks(), getQueuedCommands());
+	}
+}
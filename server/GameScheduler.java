@@ -0,0 +1,167 @@
+package server;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameScheduler runs every delayed and repeating game action of the Server:
+ * spawning and moving mobs, locking doors, turning off lights, flushing the
+ * WorldState and mob attacks. All of them share a small, fixed pool of
+ * threads, so the number of threads doesn't grow with the number of players
+ * or mobs.
+ *
+ * Every task is timed against when it was due. How late tasks start, and how
+ * many are waiting, shows whether the pool keeps up.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public final class GameScheduler {
+
+	private static final ScheduledThreadPoolExecutor executor;
+	private static final AtomicLong runs = new AtomicLong(0);
+	private static final AtomicLong totalLateness = new AtomicLong(0);
+	private static final AtomicLong maxLateness = new AtomicLong(0);
+
+	static {
+		final AtomicInteger threads = new AtomicInteger(0);
+		executor = new ScheduledThreadPoolExecutor(
+				ServerConfig.SCHEDULER_THREADS, new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Scheduler "
+								+ threads.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		// Cancelled mob attacks and shut down tasks don't wait around until
+		// they would have been due.
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	private GameScheduler() {
+	}
+
+	/**
+	 * Runs the given task once, after the given delay.
+	 *
+	 * @param task
+	 *            What to run.
+	 * @param delay
+	 *            Milliseconds to wait first.
+	 * @return The task's future, to cancel it with.
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+		return executor.schedule(new Timed(task, delay, 0), delay,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the given task every period milliseconds, the first time after
+	 * the given delay. A run that throws is reported and the task carries on.
+	 *
+	 * @param task
+	 *            What to run.
+	 * @param delay
+	 *            Milliseconds to wait before the first run.
+	 * @param period
+	 *            Milliseconds between the starts of two runs.
+	 * @return The task's future, to cancel it with.
+	 */
+	public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task,
+			long delay, long period) {
+		return executor.scheduleAtFixedRate(new Timed(task, delay, period),
+				delay, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets how many tasks are waiting to run, the repeating ones included.
+	 *
+	 * @return The number of tasks waiting.
+	 */
+	public static int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Gets how many runs of tasks there have been so far.
+	 *
+	 * @return The number of runs.
+	 */
+	public static long getRuns() {
+		return runs.get();
+	}
+
+	/**
+	 * Gets how late runs started on average, compared to when they were due.
+	 *
+	 * @return The mean lateness, in milliseconds.
+	 */
+	public static double getMeanLateness() {
+		long n = runs.get();
+		return n == 0 ? 0 : totalLateness.get() / (n * 1000000.0);
+	}
+
+	/**
+	 * Gets the latest any run has started, compared to when it was due.
+	 *
+	 * @return The most lateness, in milliseconds.
+	 */
+	public static double getMaxLateness() {
+		return maxLateness.get() / 1000000.0;
+	}
+
+	/**
+	 * Describes how the GameScheduler has done so far.
+	 *
+	 * @return Threads, tasks waiting, runs and their lateness.
+	 */
+	public static String describe() {
+		return String.format("%d threads, %d tasks waiting, %d runs, "
+				+ "%.1f ms late on average, %.1f ms at most", executor
+				.getPoolSize(), getQueueDepth(), getRuns(),
+				getMeanLateness(), getMaxLateness());
+	}
+
+	/*
+	 * Wraps a task to time each run against when it was due, and to keep a
+	 * repeating task going when a run throws. The executor would quietly
+	 * never run it again otherwise.
+	 */
+	private static class Timed implements Runnable {
+		private final Runnable task;
+		private final long period;
+		private long due;
+
+		private Timed(Runnable task, long delay, long period) {
+			this.task = task;
+			this.period = TimeUnit.MILLISECONDS.toNanos(period);
+			this.due = System.nanoTime()
+					+ TimeUnit.MILLISECONDS.toNanos(delay);
+		}
+
+		@Override
+		public void run() {
+			long lateness = Math.max(0, System.nanoTime() - due);
+			due += period;
+			runs.incrementAndGet();
+			totalLateness.addAndGet(lateness);
+			long max = maxLateness.get();
+			while (lateness > max
+					&& !maxLateness.compareAndSet(max, lateness)) {
+				max = maxLateness.get();
+			}
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
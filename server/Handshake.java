@@ -0,0 +1,145 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Handshake is the hello a Client and the Server exchange before any
+ * Message. The Client opens with the newest protocol version it speaks and
+ * the features it would like, the Server answers with the version and
+ * features both sides will use from then on.
+ *
+ * A hello is the four bytes "UAMD", one byte of version and one byte of
+ * feature flags.
+ *
+ * FLAG_DEFLATE: everything the Server sends after its hello is deflated, see
+ * Compressor.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class Handshake {
+
+	public static final int SIZE = 6;
+	public static final int FLAG_DEFLATE = 1;
+	private static final byte[] MAGIC = { 'U', 'A', 'M', 'D' };
+
+	private int version;
+	private int flags;
+
+	public Handshake(int version, int flags) {
+		this.version = version;
+		this.flags = flags;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Whether the given feature flag is set.
+	 *
+	 * @param flag
+	 *            The feature flag.
+	 * @return True if the feature is on.
+	 */
+	public boolean has(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	/**
+	 * Works out the Server's answer to this hello: the newer of the two sides'
+	 * versions that both speak, and only the features both sides want.
+	 *
+	 * @return The hello to send back.
+	 * @throws IOException
+	 *             If the only version the Client speaks is the serialized
+	 *             one and the Server doesn't allow it.
+	 */
+	public Handshake answer() throws IOException {
+		int agreed = Math.min(version, MessageCodec.LATEST_VERSION);
+		if (agreed == SerializedMessageCodec.VERSION
+				&& !ServerConfig.SERIALIZED_PROTOCOL) {
+			// It would deserialize whatever the Client sends.
+			throw new IOException("Protocol version " + agreed
+					+ " is turned off.");
+		}
+		int accepted = 0;
+		if (ServerConfig.COMPRESSION) {
+			accepted |= FLAG_DEFLATE;
+		}
+		return new Handshake(agreed, flags & accepted);
+	}
+
+	/**
+	 * Creates a MessageCodec for the version agreed on.
+	 *
+	 * @return A new MessageCodec for one connection.
+	 * @throws IOException
+	 *             If the version is unknown.
+	 */
+	public MessageCodec newCodec() throws IOException {
+		return MessageCodec.forVersion(version);
+	}
+
+	public byte[] toBytes() {
+		ByteBuffer b = ByteBuffer.allocate(SIZE);
+		b.put(MAGIC);
+		b.put((byte) version);
+		b.put((byte) flags);
+		return b.array();
+	}
+
+	/**
+	 * Decodes a hello from the given buffer if all of it has arrived. The
+	 * buffer is left untouched when it hasn't.
+	 *
+	 * @param in
+	 *            The buffer to read from, in read mode.
+	 * @return The hello, or null if more bytes are needed.
+	 * @throws IOException
+	 *             If the peer isn't speaking this protocol.
+	 */
+	public static Handshake decode(ByteBuffer in) throws IOException {
+		if (in.remaining() < SIZE) {
+			return null;
+		}
+		byte[] hello = new byte[SIZE];
+		in.get(hello);
+		return fromBytes(hello);
+	}
+
+	/**
+	 * Reads a hello from the given stream, blocking until it has arrived.
+	 *
+	 * @param in
+	 *            The stream to read from.
+	 * @return The hello.
+	 * @throws IOException
+	 *             If the stream ends or the peer isn't speaking this
+	 *             protocol.
+	 */
+	public static Handshake read(DataInputStream in) throws IOException {
+		byte[] hello = new byte[SIZE];
+		in.readFully(hello);
+		return fromBytes(hello);
+	}
+
+	private static Handshake fromBytes(byte[] hello) throws IOException {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (hello[i] != MAGIC[i]) {
+				throw new IOException("Not a UAMUD hello.");
+			}
+		}
+		int version = hello[MAGIC.length] & 0xFF;
+		if (version < SerializedMessageCodec.VERSION) {
+			throw new IOException("Unknown protocol version " + version + ".");
+		}
+		return new Handshake(version, hello[MAGIC.length + 1] & 0xFF);
+	}
+}
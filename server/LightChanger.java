@@ -1,25 +1,33 @@
 package server;
 
 import java.util.List;
-import java.util.TimerTask;
 
 import library.DatabaseConnection;
+import library.WorldState;
 
 /**
- * This TimerTask simply turns off the lights for all Characters.
+ * This task simply turns off the lights for all Characters. Each one's are
+ * turned off by the GameLoop of the zone it is in.
  * 
  * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
  * 
  */
-public class LightChanger extends TimerTask {
+public class LightChanger implements Runnable {
 
 	@Override
 	public void run() {
 
 		List<Integer> characterIDs = DatabaseConnection.getCharacters();
 
-		for (int characterID : characterIDs) {
-			DatabaseConnection.turnLightsOff(characterID);
+		for (final int characterID : characterIDs) {
+			GameLoop.postTo(WorldState.getCharacter(characterID),
+					new Runnable() {
+
+						@Override
+						public void run() {
+							WorldState.turnLightsOff(characterID);
+						}
+					});
 		}
 
 	}
@@ -0,0 +1,109 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * MessageCodec turns Messages into frames and back again. Which codec a
+ * connection uses is agreed on in its Handshake, every connection owns a
+ * codec of its own and frames of different versions never mix on one
+ * connection.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public abstract class MessageCodec {
+
+	// Newest version of the wire protocol this build speaks.
+	public static final int LATEST_VERSION = BinaryMessageCodec.VERSION;
+	// Frames bigger than this are treated as a broken or hostile peer.
+	public static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+	/**
+	 * Creates a MessageCodec speaking the given version of the wire protocol.
+	 *
+	 * @param version
+	 *            The version agreed on in the Handshake.
+	 * @return A new MessageCodec for one connection.
+	 * @throws IOException
+	 *             If the version is unknown.
+	 */
+	public static MessageCodec forVersion(int version) throws IOException {
+		switch (version) {
+		case SerializedMessageCodec.VERSION:
+			return new SerializedMessageCodec();
+		case BinaryMessageCodec.VERSION:
+			return new BinaryMessageCodec();
+		default:
+			throw new IOException("Unknown protocol version " + version + ".");
+		}
+	}
+
+	/**
+	 * Gets the version of the wire protocol this MessageCodec speaks.
+	 *
+	 * @return The protocol version.
+	 */
+	public abstract int getVersion();
+
+	/**
+	 * Whether a frame from this MessageCodec is the same whichever Connection
+	 * it is for, so a Broadcast needs to encode it only once.
+	 *
+	 * @return True if frames may be shared between Connections.
+	 */
+	public boolean isShareable() {
+		return false;
+	}
+
+	/**
+	 * Gets the number of objects the MessageCodec holds on to between frames
+	 * so it can refer back to them.
+	 *
+	 * @return The size of the handle table, 0 if there is none.
+	 */
+	public int getHandleTableSize() {
+		return 0;
+	}
+
+	/**
+	 * Encodes the given Message as a complete frame, ready to be written.
+	 *
+	 * @param m
+	 *            The Message to encode.
+	 * @return The frame holding the Message.
+	 * @throws IOException
+	 */
+	public abstract byte[] encode(Message m) throws IOException;
+
+	/**
+	 * Decodes the next Message from the given buffer if a whole frame is
+	 * available. The buffer is left untouched when the frame is incomplete.
+	 *
+	 * @param in
+	 *            The buffer to read from, in read mode.
+	 * @return The decoded Message, or null if more bytes are needed.
+	 * @throws IOException
+	 *             If the frame is malformed.
+	 */
+	public abstract Message decode(ByteBuffer in) throws IOException;
+
+	/**
+	 * Reads the next Message from the given stream, blocking until a whole
+	 * frame has arrived.
+	 *
+	 * @param in
+	 *            The stream to read from.
+	 * @return The decoded Message.
+	 * @throws IOException
+	 *             If the stream ends or the frame is malformed.
+	 */
+	public abstract Message read(DataInputStream in) throws IOException;
+
+	protected void checkLength(int length) throws IOException {
+		if (length < 0 || length > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame length " + length + ".");
+		}
+	}
+}
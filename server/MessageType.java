@@ -11,6 +11,21 @@ import java.io.Serializable;
  */
 public enum MessageType implements Serializable {
 
-	LOGIN, SELECT_CHARACTER, CREATE_USER, CREATE_CHARACTER, COMMAND, QUIT, CONNECTED, LOGIN_SUCCESSFUL, LOGIN_UNSUCCESSFUL, SELECT_CHARACTER_SUCCESSFUL, DISPLAY, SELECT_CHARACTER_UNSUCCESSFUL, CREATE_CHARACTER_UNSUCCESSFUL, CREATE_CHARACTER_SUCCESSFUL, CREATE_USER_SUCCESSFUL, CREATE_USER_UNSUCCESSFUL, CHARACTER_STATS, SET_CLIENT_FONT, NPC_ATTACK, CLIENT_ATTACK, NPC_BEHAVIOR, INITIAL_NPC_CONNECT, CLIENT_KICKED
+	LOGIN, SELECT_CHARACTER, CREATE_USER, CREATE_CHARACTER, COMMAND, QUIT, CONNECTED, LOGIN_SUCCESSFUL, LOGIN_UNSUCCESSFUL, SELECT_CHARACTER_SUCCESSFUL, DISPLAY, SELECT_CHARACTER_UNSUCCESSFUL, CREATE_CHARACTER_UNSUCCESSFUL, CREATE_CHARACTER_SUCCESSFUL, CREATE_USER_SUCCESSFUL, CREATE_USER_UNSUCCESSFUL, CHARACTER_STATS, SET_CLIENT_FONT, NPC_ATTACK, CLIENT_ATTACK, NPC_BEHAVIOR, INITIAL_NPC_CONNECT, CLIENT_KICKED,
+
+	// The Client renders these itself, see client.EventRenderer.
+
+	// Object[0] = room ID (Integer), Object[1] = description (String), null if
+	// the Client was sent it before, Object[2] = exits north, east, south and
+	// west (int[], 0 for none), Object[3] = item names (String[]), Object[4] =
+	// item quantities (String[]), Object[5] = other players (String[]),
+	// Object[6] = NPCs (String[]), Object[7] = mobs (String[])
+	ROOM_VIEW,
+	// Object[0] = whether it is a mob (Boolean), Object[1] = name (String),
+	// Object[2] = the direction it left in (String), null if it entered
+	ENTITY_MOVED,
+	// Object[0] = the command, say, emote or ooc (String), Object[1] = the
+	// speaker (String), Object[2] = what was said (String)
+	CHAT
 
 }
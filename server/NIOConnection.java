@@ -0,0 +1,244 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NIOConnection serves one Client over a non-blocking SocketChannel. All of
+ * its reads and writes happen on the I/O thread it is registered with; any
+ * other thread that sends a Message only encodes it and queues the frame.
+ * Messages sent before the Client's Handshake has arrived are held back until
+ * it is known how to encode them.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class NIOConnection extends Connection {
+
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	private SocketChannel channel;
+	private NIOReactor.IOLoop loop;
+	private volatile MessageCodec codec;
+	private List<Broadcast> early;
+	// Keeps frames in the order they were encoded.
+	private final ReentrantLock sendLock = new ReentrantLock();
+	private OutboundQueue outbound;
+	private AtomicBoolean writeRequested;
+	private AtomicBoolean closed;
+	private volatile boolean closing;
+	private ByteBuffer readBuffer;
+	private SelectionKey key;
+
+	NIOConnection(SocketChannel channel, NIOReactor.IOLoop loop) {
+		this.channel = channel;
+		this.loop = loop;
+		this.codec = null;
+		this.early = new ArrayList<Broadcast>();
+		this.outbound = getOutboundQueue();
+		this.writeRequested = new AtomicBoolean(false);
+		this.closed = new AtomicBoolean(false);
+		this.closing = false;
+		this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	}
+
+	@Override
+	protected void enqueue(List<Broadcast> broadcasts) {
+		if (closed.get()) {
+			return;
+		}
+		if (checkEviction()) {
+			closeNow();
+			return;
+		}
+		sendLock.lock();
+		try {
+			if (codec == null) {
+				early.addAll(broadcasts);
+				return;
+			}
+			if (outbound.isBacklogged()) {
+				// Don't bother encoding what would be dropped anyway.
+				for (int i = 0; i < broadcasts.size(); i++) {
+					outbound.drop();
+				}
+				return;
+			}
+			outbound.offer(compress(Broadcast.framesFor(broadcasts, codec)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		} finally {
+			sendLock.unlock();
+		}
+		requestWrite();
+	}
+
+	@Override
+	protected void closeGracefully() {
+		closing = true;
+		requestWrite();
+	}
+
+	@Override
+	public MessageCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		return channel.socket().getInetAddress();
+	}
+
+	@Override
+	public String toString() {
+		return channel.socket().toString();
+	}
+
+	private void requestWrite() {
+		if (writeRequested.compareAndSet(false, true)) {
+			loop.requestWrite(this);
+		}
+	}
+
+	/*
+	 * Everything below runs on the I/O thread.
+	 */
+
+	void register(Selector selector) {
+		try {
+			key = channel.register(selector, SelectionKey.OP_READ, this);
+		} catch (IOException e) {
+			closeNow();
+			return;
+		}
+		if (writeRequested.get()) {
+			enableWrite();
+		}
+	}
+
+	void enableWrite() {
+		if (key != null && key.isValid()) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	void read() {
+		int n;
+		try {
+			n = channel.read(readBuffer);
+		} catch (IOException e) {
+			n = -1;
+		}
+		if (n < 0) {
+			closeNow();
+			return;
+		}
+		readBuffer.flip();
+		try {
+			if (codec == null && !handshake()) {
+				readBuffer.compact();
+				return;
+			}
+			Message m;
+			while ((m = codec.decode(readBuffer)) != null) {
+				fireMessageReceived(m);
+			}
+		} catch (IOException e) {
+			closeNow();
+			return;
+		} catch (RuntimeException e) {
+			// A bug decoding one Client's frames mustn't take the other
+			// Clients of this IOLoop down with it.
+			e.printStackTrace();
+			closeNow();
+			return;
+		}
+		readBuffer.compact();
+		if (!readBuffer.hasRemaining()) {
+			// A frame bigger than the buffer is on its way.
+			ByteBuffer bigger = ByteBuffer
+					.allocate(readBuffer.capacity() * 2);
+			readBuffer.flip();
+			bigger.put(readBuffer);
+			readBuffer = bigger;
+		}
+	}
+
+	/**
+	 * Answers the Client's hello, if it has arrived, and sends whatever was
+	 * held back for it.
+	 */
+	private boolean handshake() throws IOException {
+		Handshake hello = Handshake.decode(readBuffer);
+		if (hello == null) {
+			return false;
+		}
+		Handshake answer = hello.answer();
+		MessageCodec agreed = answer.newCodec();
+		sendLock.lock();
+		try {
+			outbound.offer(ByteBuffer.wrap(answer.toBytes()));
+			startCompression(answer);
+			if (!early.isEmpty()) {
+				outbound.offer(compress(Broadcast.framesFor(early, agreed)));
+			}
+			early.clear();
+			codec = agreed;
+		} finally {
+			sendLock.unlock();
+		}
+		requestWrite();
+		return true;
+	}
+
+	void write() {
+		try {
+			ByteBuffer b;
+			while ((b = outbound.peek()) != null) {
+				channel.write(b);
+				if (b.hasRemaining()) {
+					// The socket is full, wait until it is writable again.
+					return;
+				}
+				outbound.poll();
+			}
+		} catch (IOException e) {
+			closeNow();
+			return;
+		}
+		key.interestOps(SelectionKey.OP_READ);
+		writeRequested.set(false);
+		if (!outbound.isEmpty() && writeRequested.compareAndSet(false, true)) {
+			// Something was queued while we were finishing up.
+			enableWrite();
+		} else if (closing && codec != null) {
+			closeNow();
+		}
+	}
+
+	void closeNow() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		outbound.clear();
+		endCompression();
+		fireConnectionClosed();
+	}
+}
@@ -0,0 +1,152 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * NIOReactor accepts Clients on a non-blocking ServerSocketChannel and spreads
+ * their connections over a small, fixed pool of I/O threads. Each I/O thread
+ * owns a Selector, decodes the Message frames of its connections and writes
+ * out whatever has been queued for them, so the number of connected Clients
+ * is no longer tied to the number of threads.
+ *
+ * Decoded Messages are handed to the Connection's listener straight from the
+ * I/O thread; the listener is expected to pass them on to command execution
+ * rather than running the command there.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class NIOReactor implements Runnable {
+
+	private Server server;
+	private int port;
+	private IOLoop[] loops;
+	private int nextLoop;
+
+	public NIOReactor(Server server, int port, int ioThreads) {
+		this.server = server;
+		this.port = port;
+		this.loops = new IOLoop[Math.max(1, ioThreads)];
+		this.nextLoop = 0;
+	}
+
+	@Override
+	public void run() {
+		try {
+			for (int i = 0; i < loops.length; i++) {
+				loops[i] = new IOLoop(i);
+				loops[i].start();
+			}
+
+			ServerSocketChannel serverChannel = ServerSocketChannel.open();
+			serverChannel.configureBlocking(false);
+			serverChannel.socket().bind(new InetSocketAddress(port));
+			Selector selector = Selector.open();
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+			/*
+			 * ------- main accept loop -------
+			 */
+			while (true) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isAcceptable()) {
+						accept(serverChannel);
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void accept(ServerSocketChannel serverChannel) throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+
+			IOLoop loop = loops[nextLoop];
+			nextLoop = (nextLoop + 1) % loops.length;
+
+			NIOConnection connection = new NIOConnection(channel, loop);
+			// Banned Clients are still registered so their goodbye gets out.
+			server.clientConnected(connection);
+			loop.register(connection);
+		}
+	}
+
+	/**
+	 * One I/O thread and the Selector it waits on.
+	 */
+	class IOLoop extends Thread {
+
+		private Selector selector;
+		private Queue<NIOConnection> registrations;
+		private Queue<NIOConnection> writes;
+
+		IOLoop(int number) throws IOException {
+			super("NIOReactor I/O " + number);
+			this.selector = Selector.open();
+			this.registrations = new ConcurrentLinkedQueue<NIOConnection>();
+			this.writes = new ConcurrentLinkedQueue<NIOConnection>();
+			this.setDaemon(true);
+		}
+
+		void register(NIOConnection connection) {
+			registrations.add(connection);
+			selector.wakeup();
+		}
+
+		void requestWrite(NIOConnection connection) {
+			writes.add(connection);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					e.printStackTrace();
+					return;
+				}
+
+				NIOConnection c;
+				while ((c = registrations.poll()) != null) {
+					c.register(selector);
+				}
+				while ((c = writes.poll()) != null) {
+					c.enableWrite();
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					c = (NIOConnection) key.attachment();
+					if (key.isValid() && key.isReadable()) {
+						c.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						c.write();
+					}
+				}
+			}
+		}
+	}
+}
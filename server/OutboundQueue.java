@@ -0,0 +1,159 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OutboundQueue holds the frames waiting to be written to one Client and
+ * keeps a slow Client from holding up whoever is sending to it.
+ *
+ * Once more than the high watermark of bytes is waiting, the Client is
+ * backlogged and new frames are dropped until its queue has drained below
+ * the low watermark. A Client that stays backlogged for longer than the
+ * slow consumer timeout is overdue and should be disconnected.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class OutboundQueue {
+
+	private LinkedBlockingQueue<ByteBuffer> frames;
+	private AtomicLong bytes;
+	private AtomicLong dropped;
+	private long highWatermark;
+	private long lowWatermark;
+	private long timeout;
+	// When the Client became backlogged, 0 while it isn't.
+	private volatile long backloggedSince;
+
+	public OutboundQueue() {
+		this(ServerConfig.OUTBOUND_HIGH_WATERMARK,
+				ServerConfig.OUTBOUND_LOW_WATERMARK,
+				ServerConfig.SLOW_CONSUMER_TIMEOUT);
+	}
+
+	public OutboundQueue(long highWatermark, long lowWatermark, long timeout) {
+		this.frames = new LinkedBlockingQueue<ByteBuffer>();
+		this.bytes = new AtomicLong(0);
+		this.dropped = new AtomicLong(0);
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+		this.timeout = timeout;
+		this.backloggedSince = 0;
+	}
+
+	/**
+	 * Whether the next frame offered would be dropped. Lets senders skip
+	 * encoding a frame nobody is going to write.
+	 *
+	 * @return True while the Client is backlogged.
+	 */
+	public boolean isBacklogged() {
+		return backloggedSince != 0;
+	}
+
+	/**
+	 * Queues a frame unless the Client is backlogged.
+	 *
+	 * @param frame
+	 *            The frame to queue.
+	 * @return False if the frame was dropped.
+	 */
+	public boolean offer(ByteBuffer frame) {
+		if (isBacklogged()) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		frames.add(frame);
+		if (bytes.addAndGet(frame.limit()) > highWatermark) {
+			backloggedSince = System.currentTimeMillis();
+		}
+		return true;
+	}
+
+	/**
+	 * Counts a frame that was dropped without being offered.
+	 */
+	public void drop() {
+		dropped.incrementAndGet();
+	}
+
+	public ByteBuffer peek() {
+		return frames.peek();
+	}
+
+	public ByteBuffer poll() {
+		ByteBuffer frame = frames.poll();
+		if (frame != null) {
+			written(frame);
+		}
+		return frame;
+	}
+
+	/**
+	 * Waits for the next frame.
+	 *
+	 * @return The next frame.
+	 * @throws InterruptedException
+	 */
+	public ByteBuffer take() throws InterruptedException {
+		ByteBuffer frame = frames.take();
+		written(frame);
+		return frame;
+	}
+
+	public boolean isEmpty() {
+		return frames.isEmpty();
+	}
+
+	public void clear() {
+		frames.clear();
+		bytes.set(0);
+		backloggedSince = 0;
+	}
+
+	private void written(ByteBuffer frame) {
+		// The frame's bytes are counted as they were when it was queued.
+		if (bytes.addAndGet(-frame.limit()) <= lowWatermark) {
+			backloggedSince = 0;
+		}
+	}
+
+	/**
+	 * Whether the Client has been backlogged for too long.
+	 *
+	 * @return True if the Client should be disconnected.
+	 */
+	public boolean isOverdue() {
+		long since = backloggedSince;
+		return since != 0 && System.currentTimeMillis() - since > timeout;
+	}
+
+	/**
+	 * Gets the number of frames waiting to be written.
+	 *
+	 * @return The queue depth.
+	 */
+	public int getDepth() {
+		return frames.size();
+	}
+
+	/**
+	 * Gets the number of bytes waiting to be written.
+	 *
+	 * @return The queued bytes.
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Gets the number of frames dropped because the Client was backlogged.
+	 *
+	 * @return The drop count.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,99 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ResponseBuffer collects what a Connection sends while its Client's command
+ * is being handled, so the whole response goes out in one write instead of
+ * one per Message. It belongs to the thread handling the command; Messages
+ * sent to the Client from any other thread don't wait for it.
+ *
+ * Commands that run other commands, like move running look, nest their
+ * responses in the outermost one.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class ResponseBuffer {
+
+	private final Thread owner;
+	private int depth;
+	private List<Broadcast> broadcasts;
+
+	public ResponseBuffer() {
+		this.owner = Thread.currentThread();
+		this.depth = 1;
+		this.broadcasts = new ArrayList<Broadcast>();
+	}
+
+	public boolean isOwnedByCurrentThread() {
+		return owner == Thread.currentThread();
+	}
+
+	public void add(Broadcast b) {
+		broadcasts.add(b);
+	}
+
+	/**
+	 * Starts a nested response.
+	 */
+	public void enter() {
+		depth++;
+	}
+
+	/**
+	 * Finishes a response.
+	 *
+	 * @return True if the outermost response is finished.
+	 */
+	public boolean leave() {
+		return --depth == 0;
+	}
+
+	/**
+	 * Gets what was collected, with every run of DISPLAY Messages merged into
+	 * a single DISPLAY.
+	 *
+	 * @return The Broadcasts to send.
+	 */
+	public List<Broadcast> coalesce() {
+		List<Broadcast> coalesced = new ArrayList<Broadcast>();
+		StringBuilder display = null;
+		Broadcast first = null;
+
+		for (Broadcast b : broadcasts) {
+			Message m = b.getMessage();
+			if (m.getMessageType() == MessageType.DISPLAY
+					&& m.getData() instanceof String) {
+				if (first == null) {
+					first = b;
+				} else {
+					if (display == null) {
+						display = new StringBuilder((String) first
+								.getMessage().getData());
+					}
+					display.append((String) m.getData());
+				}
+				continue;
+			}
+			addDisplay(coalesced, first, display);
+			first = null;
+			display = null;
+			coalesced.add(b);
+		}
+		addDisplay(coalesced, first, display);
+		return coalesced;
+	}
+
+	private void addDisplay(List<Broadcast> coalesced, Broadcast first,
+			StringBuilder display) {
+		if (display != null) {
+			coalesced.add(new Broadcast(new Message(display.toString(),
+					MessageType.DISPLAY)));
+		} else if (first != null) {
+			// A lone DISPLAY keeps its Broadcast and any frame it shares.
+			coalesced.add(first);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SerializedMessageCodec is version 1 of the wire protocol. A frame is a four
+ * byte length followed by the Java serialized Message. Every connection owns
+ * one SerializedMessageCodec, so the Object streams behind it live as long as
+ * the connection does, exactly like the streams the Server and Client used to
+ * keep around the Socket.
+ *
+ * Framing lets a non-blocking reader tell when a whole Message has arrived
+ * before it hands the bytes to the ObjectInputStream.
+ *
+ * An ObjectOutputStream remembers every object it has written so it can send
+ * a back-reference the next time, and so does the ObjectInputStream reading
+ * it. Left alone, both would hold on to every Message of the session. The
+ * output stream is therefore reset every so many Messages or bytes, which
+ * also tells the reading end to forget.
+ *
+ * Reading a frame only resolves the few classes a Message is made of, so a
+ * peer can't have any other class on the classpath instantiated. The Server
+ * only speaks this version when ServerConfig.SERIALIZED_PROTOCOL is set.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class SerializedMessageCodec extends MessageCodec {
+
+	public static final int VERSION = 1;
+	private static final int LENGTH_SIZE = 4;
+	// The only classes a frame may name: a Message and what it can carry.
+	private static final Set<String> ALLOWED = new HashSet<String>(
+			Arrays.asList(Message.class.getName(),
+					MessageType.class.getName(), Enum.class.getName(),
+					String.class.getName(), Boolean.class.getName(),
+					Integer.class.getName(), Number.class.getName(),
+					ArrayList.class.getName(),
+					Object[].class.getName(), String[].class.getName(),
+					int[].class.getName()));
+
+	private ByteArrayOutputStream buffer;
+	private HandleCountingOutputStream oos;
+	private FrameInputStream frameInput;
+	private ObjectInputStream ois;
+	private int resetMessages;
+	private long resetBytes;
+	private int messagesSinceReset;
+	private long bytesSinceReset;
+
+	public SerializedMessageCodec() {
+		this(ServerConfig.SERIALIZED_RESET_MESSAGES,
+				ServerConfig.SERIALIZED_RESET_BYTES);
+	}
+
+	/**
+	 * @param resetMessages
+	 *            Reset the output stream after this many Messages.
+	 * @param resetBytes
+	 *            Reset the output stream after this many bytes.
+	 */
+	public SerializedMessageCodec(int resetMessages, long resetBytes) {
+		this.buffer = new ByteArrayOutputStream();
+		this.frameInput = new FrameInputStream();
+		this.resetMessages = resetMessages;
+		this.resetBytes = resetBytes;
+		this.messagesSinceReset = 0;
+		this.bytesSinceReset = 0;
+	}
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	@Override
+	public synchronized byte[] encode(Message m) throws IOException {
+		// Reserve room for the length, it is filled in once it is known.
+		buffer.reset();
+		buffer.write(new byte[LENGTH_SIZE]);
+		if (oos == null) {
+			// The stream header goes out with the very first frame.
+			oos = new HandleCountingOutputStream(buffer);
+		} else if (messagesSinceReset >= resetMessages
+				|| bytesSinceReset >= resetBytes) {
+			oos.reset();
+			messagesSinceReset = 0;
+			bytesSinceReset = 0;
+		}
+		oos.writeObject(m);
+		oos.flush();
+		byte[] frame = buffer.toByteArray();
+		ByteBuffer.wrap(frame).putInt(0, frame.length - LENGTH_SIZE);
+		messagesSinceReset++;
+		bytesSinceReset += frame.length - LENGTH_SIZE;
+		return frame;
+	}
+
+	@Override
+	public synchronized int getHandleTableSize() {
+		return oos == null ? 0 : oos.getHandles();
+	}
+
+	@Override
+	public Message decode(ByteBuffer in) throws IOException {
+		if (in.remaining() < LENGTH_SIZE) {
+			return null;
+		}
+		int length = in.getInt(in.position());
+		checkLength(length);
+		if (in.remaining() < LENGTH_SIZE + length) {
+			return null;
+		}
+		in.position(in.position() + LENGTH_SIZE);
+		byte[] payload = new byte[length];
+		in.get(payload);
+		return decodePayload(payload);
+	}
+
+	@Override
+	public Message read(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		checkLength(length);
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return decodePayload(payload);
+	}
+
+	private synchronized Message decodePayload(byte[] payload)
+			throws IOException {
+		frameInput.setFrame(payload);
+		if (ois == null) {
+			// The first frame carries the stream header.
+			ois = new AllowListInputStream(frameInput);
+		}
+		try {
+			return (Message) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Counts the objects the ObjectOutputStream has taken a handle for since
+	 * it was last reset. Every object not already in the handle table passes
+	 * through replaceObject on its way out.
+	 */
+	private static class HandleCountingOutputStream extends ObjectOutputStream {
+
+		private int handles = 0;
+
+		public HandleCountingOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			handles++;
+			return obj;
+		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			handles = 0;
+		}
+
+		public int getHandles() {
+			return handles;
+		}
+	}
+
+	/**
+	 * Refuses to resolve any class that isn't ALLOWED, before anything of it
+	 * is instantiated.
+	 */
+	private static class AllowListInputStream extends ObjectInputStream {
+
+		public AllowListInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			if (!ALLOWED.contains(desc.getName())) {
+				throw new InvalidClassException(desc.getName(),
+						"Not allowed in a Message.");
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * Feeds the payload of one frame at a time to the ObjectInputStream.
+	 */
+	private static class FrameInputStream extends InputStream {
+
+		private byte[] frame = new byte[0];
+		private int position;
+
+		public void setFrame(byte[] frame) {
+			this.frame = frame;
+			this.position = 0;
+		}
+
+		@Override
+		public int read() {
+			if (position >= frame.length) {
+				return -1;
+			}
+			return frame[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (position >= frame.length) {
+				return -1;
+			}
+			int n = Math.min(len, frame.length - position);
+			System.arraycopy(frame, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return frame.length - position;
+		}
+	}
+}
@@ -1,24 +1,30 @@
 package server;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Observable;
+import java.util.Queue;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import library.Character;
 import library.ClassType;
+import library.ContentCatalog;
 import library.DatabaseConnection;
 import library.Item;
 import library.ItemType;
@@ -26,12 +32,15 @@ import library.Mob;
 import library.MobAdjective;
 import library.MobClass;
 import library.NonPlayerCharacter;
-import library.Room;
+import library.RoomGraph;
 import library.User;
+import library.WorldState;
 
 /**
- * This class listens on a clientPort for Clients with a ServerSocket to connect
- * to and provides a majority of the game functionality.
+ * This class listens on a clientPort for Clients to connect to and provides a
+ * majority of the game functionality. Clients are either multiplexed over the
+ * NIOReactor or given a SocketConnection with a thread of their own, depending
+ * on the I/O mode in ServerConfig.
  * 
  * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
  * 
@@ -40,14 +49,19 @@ public class Server extends Observable implements Runnable, Serializable {
 
 	private static final long serialVersionUID = 1L;
 	private ServerSocket clientServerSocket;
-	private static Map<ClientHandler, ObjectOutputStream> clients;
+	private static Map<ClientHandler, Connection> clients;
+	// Character IDs, to the ClientHandlers playing them.
+	private static Map<Integer, ClientHandler> players;
 	private static List<Integer> npcUIDs;
 	private int clientPort;
 	private static List<String> log;
 	private static MobSpawner mobSpawner;
-	private static MobMover mobMover;
 	private static DoorLocker doorLocker;
 	private static LightChanger lightChanger;
+	private static WorldFlusher worldFlusher;
+	private static ScheduledFuture<?> spawning;
+	private static ScheduledFuture<?> moving;
+	private static ScheduledFuture<?> flushing;
 	private static DatabaseConnection dbc;
 	private static final int NUMBER_OF_MOBS = 15;
 	// Spawn mobs every MOB_SPAWN_RATE seconds.
@@ -58,19 +72,23 @@ public class Server extends Observable implements Runnable, Serializable {
 	private static final long LOCK_DOOR_RATE = 10 * 60 * 1000;
 	// Turn off lights every LIGHT_CHANGE_RATE seconds.
 	private static final long LIGHT_CHANGE_RATE = 5 * 60 * 1000;
+	// Hostile mobs attack MOB_ATTACK_DELAY seconds after someone shows up.
+	private static final long MOB_ATTACK_DELAY = 5 * 1000;
 	// Mob difficulty multiplier
 	private static int MOB_DIFFICULTY; // Recommend 2-4
 
 	public Server(int port, int mobDifficulty) {
 		this.clientPort = port;
 		MOB_DIFFICULTY = mobDifficulty;
-		clients = new HashMap<ClientHandler, ObjectOutputStream>();
-		npcUIDs = new ArrayList<Integer>();
-		log = new ArrayList<String>();
+		clients = new ConcurrentHashMap<ClientHandler, Connection>();
+		players = new ConcurrentHashMap<Integer, ClientHandler>();
+		// Mobs are spawned, killed and logged about from every zone.
+		npcUIDs = Collections.synchronizedList(new ArrayList<Integer>());
+		log = Collections.synchronizedList(new ArrayList<String>());
 		mobSpawner = new MobSpawner();
-		mobMover = new MobMover();
 		doorLocker = new DoorLocker();
 		lightChanger = new LightChanger();
+		worldFlusher = new WorldFlusher();
 		dbc = DatabaseConnection.getInstance();
 	}
 
@@ -78,16 +96,44 @@ public class Server extends Observable implements Runnable, Serializable {
 	public void run() {
 		try {
 			// Empty mobs on first run.
-			DatabaseConnection.removeAllMobs();
+			WorldState.removeAllMobs();
+			// Load the rooms and content before anyone plays with them.
+			RoomGraph.reload();
+			ContentCatalog.reload();
+			// Start up a Game Loop for each zone, which runs every command
+			// and event there.
+			GameLoop.startZones(ServerConfig.ZONES);
 			// Start up Mob Spawner
-			Timer t = new Timer();
-			t.schedule(mobSpawner, 0, MOB_SPAWN_RATE);
-			// Start up Mob Mover
-			t.schedule(mobMover, MOB_MOVE_RATE, MOB_MOVE_RATE);
+			spawning = GameScheduler.scheduleAtFixedRate(GameLoop.world()
+					.later(mobSpawner), 0, MOB_SPAWN_RATE);
+			// Start up Mob Mover, each zone moves its own mobs.
+			moving = GameScheduler.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					for (GameLoop zone : GameLoop.getZones()) {
+						zone.post(new MobMover(zone));
+					}
+				}
+			}, MOB_MOVE_RATE, MOB_MOVE_RATE);
 			// Start up Door Locker
-			t.schedule(doorLocker, 0, LOCK_DOOR_RATE);
+			GameScheduler.scheduleAtFixedRate(GameLoop.world().later(
+					doorLocker), 0, LOCK_DOOR_RATE);
 			// Start up Light Changer
-			t.schedule(lightChanger, 0, LIGHT_CHANGE_RATE);
+			GameScheduler.scheduleAtFixedRate(GameLoop.world().later(
+					lightChanger), 0, LIGHT_CHANGE_RATE);
+			// Start up World Flusher. It only reads the WorldState, so it
+			// runs beside the Game Loops.
+			flushing = GameScheduler.scheduleAtFixedRate(worldFlusher,
+					ServerConfig.WORLD_FLUSH_INTERVAL,
+					ServerConfig.WORLD_FLUSH_INTERVAL);
+
+			if (ServerConfig.isNIO()) {
+				// Accept and serve Clients until the Server shuts down.
+				new NIOReactor(this, clientPort, ServerConfig.IO_THREADS)
+						.run();
+				return;
+			}
 
 			// Attempt to start listening on given clientPort.
 			clientServerSocket = new ServerSocket(clientPort);
@@ -96,32 +142,43 @@ public class Server extends Observable implements Runnable, Serializable {
 			 * ------- main server loop -------
 			 */
 			while (true) {
-				Socket s;
-				ClientHandler c;
 				// Accept Client connections.
-				s = clientServerSocket.accept();
-				// Only allow them to continue if the Client's IP isn't banned.
-				if (!DatabaseConnection.isBanned(s.getInetAddress().toString())) {
-					addToLog("Got Client: " + s);
-					c = new ClientHandler(s);
-					clients.put(c, new ObjectOutputStream(s.getOutputStream()));
-					// Start the Client's ClientHandler thread.
-					c.start();
-				} else {
-					addToLog(s + " tried to log in but was IP banned.");
-					new ObjectOutputStream(s.getOutputStream())
-							.writeObject(new Message(
-									"You have been IP banned.",
-									MessageType.CLIENT_KICKED));
-					s.close();
-				}
+				Socket s = clientServerSocket.accept();
+				SocketConnection connection = new SocketConnection(s,
+						ServerConfig.THREAD_MODE);
+				clientConnected(connection);
+				// Start the Client's thread. Banned Clients need it too, to
+				// shake hands and get their goodbye.
+				connection.start();
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
-	public static Map<ClientHandler, ObjectOutputStream> getClients() {
+	/**
+	 * Sets up a ClientHandler for a freshly accepted Connection.
+	 * 
+	 * @param connection
+	 *            The Connection to the new Client.
+	 */
+	void clientConnected(Connection connection) {
+		// Only allow them to continue if the Client's IP isn't banned.
+		if (!DatabaseConnection.isBanned(connection.getInetAddress()
+				.toString())) {
+			addToLog("Got Client: " + connection);
+			ClientHandler c = new ClientHandler(connection);
+			connection.setListener(c);
+			clients.put(c, connection);
+			return;
+		}
+		addToLog(connection + " tried to log in but was IP banned.");
+		connection.send(new Message("You have been IP banned.",
+				MessageType.CLIENT_KICKED));
+		connection.close();
+	}
+
+	public static Map<ClientHandler, Connection> getClients() {
 		return clients;
 	}
 
@@ -132,13 +189,7 @@ public class Server extends Observable implements Runnable, Serializable {
 	 *            The Message to send to all of the Clients.
 	 */
 	public static void notifyAll(Message m) {
-		for (Entry<ClientHandler, ObjectOutputStream> c : clients.entrySet()) {
-			try {
-				c.getValue().writeObject(m);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
+		new Broadcast(m).sendTo(clients.values());
 	}
 
 	/**
@@ -263,36 +314,47 @@ public class Server extends Observable implements Runnable, Serializable {
 	}
 
 	/**
+	 * Moves the mobs in one zone. A mob that walks into another zone is
+	 * handed off to it: the move is posted to that zone's GameLoop, which
+	 * makes it there if the mob is still where it was, and is that zone's to
+	 * move from then on.
 	 * 
 	 * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
 	 * 
 	 */
-	private class MobMover extends TimerTask {
+	private class MobMover implements Runnable {
+
+		private GameLoop zone;
+
+		private MobMover(GameLoop zone) {
+			this.zone = zone;
+		}
 
 		@Override
 		public void run() {
 			Random moveGenerator = new Random();
 
-			int numMobs = DatabaseConnection.getNumberOfMobs();
+			List<Integer> mobs = new ArrayList<Integer>();
+			for (int roomID : zone.getRooms()) {
+				mobs.addAll(WorldState.getMobs(roomID));
+			}
 
-			for (int i = 0; i < numMobs; i++) {
+			for (int uid : mobs) {
 				boolean doesMove = moveGenerator.nextBoolean();
 				if (doesMove) {
 
-					int uid = npcUIDs.get(i);
-
-					if (DatabaseConnection.isMobAttacked(uid)) {
+					if (WorldState.isMobAttacked(uid)) {
 						continue;
 					}
 
-					int location = DatabaseConnection.getMobLocation(uid);
+					int location = WorldState.getMobLocation(uid);
 
-					Room room = new Room(location);
+					RoomGraph rooms = RoomGraph.get();
 
-					int north = Integer.parseInt(room.get("north"));
-					int south = Integer.parseInt(room.get("south"));
-					int east = Integer.parseInt(room.get("east"));
-					int west = Integer.parseInt(room.get("west"));
+					int north = rooms.getNorth(location);
+					int south = rooms.getSouth(location);
+					int east = rooms.getEast(location);
+					int west = rooms.getWest(location);
 
 					int whichRoom = moveGenerator.nextInt(5);
 
@@ -300,33 +362,25 @@ public class Server extends Observable implements Runnable, Serializable {
 
 					case 0: // north
 						if (north != 0 && north != 1) {
-							DatabaseConnection.setMobLocation(uid, north);
-							notifyPlayers(uid, location, north, "north");
-							doMobAttack(north);
+							move(uid, location, north, "north");
 							break;
 						}
 
 					case 1: // east
 						if (east != 0 && east != 1) {
-							DatabaseConnection.setMobLocation(uid, east);
-							notifyPlayers(uid, location, east, "east");
-							doMobAttack(east);
+							move(uid, location, east, "east");
 							break;
 						}
 
 					case 2: // south
 						if (south != 0 && south != 1) {
-							DatabaseConnection.setMobLocation(uid, south);
-							notifyPlayers(uid, location, south, "south");
-							doMobAttack(south);
+							move(uid, location, south, "south");
 							break;
 						}
 
 					case 3: // west
 						if (west != 0 && west != 1) {
-							DatabaseConnection.setMobLocation(uid, west);
-							notifyPlayers(uid, location, west, "west");
-							doMobAttack(west);
+							move(uid, location, west, "west");
 							break;
 						}
 					}
@@ -334,44 +388,45 @@ public class Server extends Observable implements Runnable, Serializable {
 			}
 		}
 
-		private void notifyPlayers(int uid, int location, int destination,
-				String direction) {
-			for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
-					.entrySet()) {
-
-				Character character = c.getKey().character;
-				if (character != null) {
-					if (Integer.parseInt(character.get("location")) == location) {
-						c.getKey()
-								.sendMessage(
-										new Message(
-												"<span class=\"enemy\">"
-														+ DatabaseConnection
-																.getMobName(uid)
-														+ "</span><span class=\"normal\"> has gone "
-														+ direction
-														+ ".</span><br />",
-												MessageType.DISPLAY));
-					}
-				}
+		/*
+		 * Moves the mob now if the destination is in this zone, or hands it
+		 * off to the destination's zone.
+		 */
+		private void move(final int uid, final int location,
+				final int destination, final String direction) {
+			GameLoop to = GameLoop.forRoom(destination);
+			if (to == zone) {
+				arrive(uid, location, destination, direction);
+				return;
 			}
-			for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
-					.entrySet()) {
+			to.post(new Runnable() {
 
-				Character character = c.getKey().character;
-				if (character != null) {
-					if (Integer.parseInt(character.get("location")) == destination) {
-						c.getKey()
-								.sendMessage(
-										new Message(
-												"<span class=\"enemy\">"
-														+ DatabaseConnection
-																.getMobName(uid)
-														+ "</span><span class=\"normal\"> has entered the room!</span><br />",
-												MessageType.DISPLAY));
-					}
+				@Override
+				public void run() {
+					arrive(uid, location, destination, direction);
 				}
+			});
+		}
+
+		private void arrive(int uid, int location, int destination,
+				String direction) {
+			if (!WorldState.moveMob(uid, location, destination)) {
+				// Killed, or gone elsewhere, before it got going.
+				return;
 			}
+			notifyPlayers(uid, location, destination, direction);
+			doMobAttack(destination);
+		}
+
+		private void notifyPlayers(int uid, int location, int destination,
+				String direction) {
+			String mobName = WorldState.getMobName(uid);
+			// See MessageType.ENTITY_MOVED for what each field is.
+			EventBus.publishRoom(location, new Message(new Object[] { true,
+					mobName, direction }, MessageType.ENTITY_MOVED));
+			EventBus.publishRoom(destination, new Message(new Object[] { true,
+					mobName,
+					null }, MessageType.ENTITY_MOVED));
 		}
 	}
 
@@ -385,26 +440,31 @@ public class Server extends Observable implements Runnable, Serializable {
 
 		// get list of mobs, see which ones are hostile.
 
-		List<Integer> mobUIDs = DatabaseConnection.getMobs(roomID);
+		List<Integer> mobUIDs = WorldState.getMobs(roomID);
 		final List<Integer> hostileMobs = new ArrayList<Integer>();
 
 		for (int i : mobUIDs) {
-			Mob m = new Mob(DatabaseConnection.getMobIDFromID(i));
+			Mob m = ContentCatalog.get().getMob(WorldState.getMobIDFromID(i));
 
-			if (Boolean.parseBoolean(m.get("hostile"))) {
+			if (m.isHostile()) {
 				hostileMobs.add(i);
 			}
 		}
 
-		TimerTask task = new TimerTask() {
+		Runnable task = new Runnable() {
 
 			@Override
 			public void run() {
 
 				for (int uid : hostileMobs) {
 
+					int mobID = WorldState.getMobIDFromID(uid);
+					if (mobID < 1) {
+						// Killed while it was getting ready.
+						continue;
+					}
 					Random randomGenerator = new Random();
-					Mob m = new Mob(DatabaseConnection.getMobIDFromID(uid));
+					Mob m = ContentCatalog.get().getMob(mobID);
 
 					// Make attacking Random.
 					List<Integer> charsInRoom = getCharacterIDsInRoom(roomID);
@@ -422,95 +482,71 @@ public class Server extends Observable implements Runnable, Serializable {
 						charToAttack = 0;
 					}
 
-					ClientHandler c = null;
-
-					for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
-							.entrySet()) {
-
-						if (e.getKey().character == null)
-							continue;
+					ClientHandler c = getPlayer(charToAttack);
 
-						if (e.getKey().getCharacterID() == charToAttack) {
-							c = e.getKey();
-						}
-
-						if (c != null) {
+					if (c != null) {
 
-							int characterHP = Integer.parseInt(c.character
-									.get("hp"));
-							int defense = c.character.getDefense();
-							int mobLevel = DatabaseConnection.getMobLevel(uid);
-							int mobDamage = m.getDamage(mobLevel,
-									MOB_DIFFICULTY) - defense;
+						int characterHP = c.character.getHP();
+						int defense = c.character.getDefense();
+						int mobLevel = WorldState.getMobLevel(uid);
+						int mobDamage = m.getDamage(mobLevel,
+								MOB_DIFFICULTY) - defense;
 
-							mobDamage = mobDamage < 1 ? mobLevel : mobDamage;
+						mobDamage = mobDamage < 1 ? mobLevel : mobDamage;
 
-							int level = Integer.parseInt(c.character
-									.get("level"));
+						int level = c.character.getLevel();
 
-							if (characterHP - mobDamage <= 0) {
-								// Character is dead. Move back to room 1
-								// and
-								// reduce
-								// experience by 5%
+						if (characterHP - mobDamage <= 0) {
+							// Character is dead. Move back to room 1
+							// and
+							// reduce
+							// experience by 5%
 
-								int reducedXP = (int) (Integer
-										.parseInt(c.character.get("experience")) * .95);
+							int reducedXP = (int) (c.character.getExperience() * .95);
 
-								c.character.set("hp",
-										c.character.getMaxHP(level) + "");
-								c.character.set("location", "1");
-								c.character.set("experience", reducedXP + "");
+							c.character.setHP(c.character.getMaxHP(level));
+							c.moveTo(1);
+							c.character.setExperience(reducedXP);
 
-								try {
-									c.character.save();
-								} catch (SQLException e2) {
-									e2.printStackTrace();
-								}
+							WorldState.save(c.character);
 
-								c.sendMessage(new Message(
-										"<span class=\"enemy\">"
-												+ DatabaseConnection
-														.getMobName(uid)
-												+ "</span><span class=\"normal\"> attacked you for "
-												+ mobDamage
-												+ " and you nearly died!</span><br /><span class=\"normal\">You barely escape from death"
-												+ " and find yourself at the Vault entrance.</span><br />",
-										MessageType.DISPLAY));
-								// Mob isn't attacked anymore.
-								DatabaseConnection
-										.setMobAttacked(uid, 0, false);
-							} else {
-								c.character.set("hp", (characterHP - mobDamage)
-										+ "");
+							c.sendMessage(new Message(
+									"<span class=\"enemy\">"
+											+ WorldState
+													.getMobName(uid)
+											+ "</span><span class=\"normal\"> attacked you for "
+											+ mobDamage
+											+ " and you nearly died!</span><br /><span class=\"normal\">You barely escape from death"
+											+ " and find yourself at the Vault entrance.</span><br />",
+									MessageType.DISPLAY));
+							// Mob isn't attacked anymore.
+							WorldState
+									.setMobAttacked(uid, 0, false);
+						} else {
+							c.character.setHP(characterHP - mobDamage);
 
-								try {
-									c.character.save();
-								} catch (SQLException e1) {
-									e1.printStackTrace();
-								}
+							WorldState.save(c.character);
 
-								c.sendMessage(new Message(
-										"<span class=\"enemy\">"
-												+ DatabaseConnection
-														.getMobName(uid)
-												+ "</span><span class=\"normal\"> attacks you for "
-												+ mobDamage + "!</span><br />",
-										MessageType.DISPLAY));
-							}
+							c.sendMessage(new Message(
+									"<span class=\"enemy\">"
+											+ WorldState
+													.getMobName(uid)
+											+ "</span><span class=\"normal\"> attacks you for "
+											+ mobDamage + "!</span><br />",
+									MessageType.DISPLAY));
 						}
 					}
-
 				}
-				this.cancel();
 			}
 		};
-		Timer t = new Timer();
-		// Attack in 5 seconds. First run will cancel and not repeat.
-		t.schedule(task, 5000, 100000);
+		// Attack in 5 seconds, in the zone of the room. Only whoever is in
+		// the room by then is attacked, so the Characters it changes are in
+		// that zone and its GameLoop is the one that may change them.
+		GameScheduler.schedule(GameLoop.forRoom(roomID).later(task),
+				MOB_ATTACK_DELAY);
 	}
 
-	private class MobSpawner extends TimerTask {
+	private class MobSpawner implements Runnable {
 
 		@Override
 		public void run() {
@@ -522,7 +558,7 @@ public class Server extends Observable implements Runnable, Serializable {
 			Random locationGenerator = new Random();
 			Random mobAdjectiveGenerator = new Random();
 
-			while (DatabaseConnection.getNumberOfMobs() < NUMBER_OF_MOBS) {
+			while (WorldState.getNumberOfMobs() < NUMBER_OF_MOBS) {
 
 				int uid = uidGenerator.nextInt();
 				int classType = classGenerator
@@ -550,10 +586,9 @@ public class Server extends Observable implements Runnable, Serializable {
 					i++;
 				}
 
-				int mobid = DatabaseConnection.getMobIDFromClass(mobClass
-						.name());
+				int mobid = ContentCatalog.get().getMobID(mobClass);
 
-				Mob mob = new Mob(mobid);
+				Mob mob = ContentCatalog.get().getMob(mobid);
 
 				int location = locationGenerator.nextInt(28) + 2;
 				int mobLevel = classGenerator.nextBoolean() ? getAverageCharacterLevel()
@@ -563,12 +598,12 @@ public class Server extends Observable implements Runnable, Serializable {
 				if (mobLevel < 1)
 					mobLevel = 1;
 
-				DatabaseConnection.addMob(mobid, uid,
-						Integer.parseInt(mob.get("hp")), location,
-						mobAdjectiveString + " " + mob.get("name"), mobLevel);
+				WorldState.addMob(mobid, uid,
+						mob.getHP(), location,
+						mobAdjectiveString + " " + mob.getName(), mobLevel);
 
 				addToLog("Got Mob " + uid + ": " + mobAdjectiveString + " "
-						+ mob.get("name") + " in room " + location);
+						+ mob.getName() + " in room " + location);
 
 				npcUIDs.add(uid);
 				setChanged();
@@ -582,10 +617,10 @@ public class Server extends Observable implements Runnable, Serializable {
 	 */
 	public static void shutdown() {
 
-		mobSpawner.cancel();
-		mobMover.cancel();
+		spawning.cancel(false);
+		moving.cancel(false);
 
-		TimerTask task = new TimerTask() {
+		Runnable task = new Runnable() {
 
 			private int TIMES_EXECUTED = 0;
 
@@ -598,7 +633,7 @@ public class Server extends Observable implements Runnable, Serializable {
 					ClientHandler[] toDisconnect = new ClientHandler[clients
 							.size()];
 
-					for (Entry<ClientHandler, ObjectOutputStream> e : clients
+					for (Entry<ClientHandler, Connection> e : clients
 							.entrySet()) {
 						toDisconnect[i] = e.getKey();
 						i++;
@@ -608,8 +643,10 @@ public class Server extends Observable implements Runnable, Serializable {
 						toDisconnect[j].disconnect();
 					}
 
+					// Write out what hasn't been yet.
+					flushing.cancel(false);
+					WorldState.flush();
 					dbc.close(); // SUPER DUPER IMPORTANT.
-					this.cancel();
 					System.exit(0);
 				}
 				Server.notifyAll(new Message(
@@ -621,8 +658,33 @@ public class Server extends Observable implements Runnable, Serializable {
 				TIMES_EXECUTED++;
 			}
 		};
-		Timer t = new Timer();
-		t.schedule(task, 0, 1000);
+		GameScheduler.scheduleAtFixedRate(GameLoop.world().later(task), 0,
+				1000);
+	}
+
+	/**
+	 * Takes back the given changes to a Character's items if the command's
+	 * writes to the database aren't committed, so a transfer with an NPC
+	 * isn't left half done.
+	 * 
+	 * @param characterID
+	 *            The ID of the Character.
+	 * @param changes
+	 *            The changes made, as given to WorldState.adjustQuantities.
+	 */
+	private static void undoOnRollback(final int characterID,
+			Map<Integer, Integer> changes) {
+		final Map<Integer, Integer> undo = new HashMap<Integer, Integer>();
+		for (Entry<Integer, Integer> e : changes.entrySet()) {
+			undo.put(e.getKey(), -e.getValue());
+		}
+		DatabaseConnection.getInstance().onRollback(new Runnable() {
+
+			@Override
+			public void run() {
+				WorldState.adjustQuantities(characterID, undo);
+			}
+		});
 	}
 
 	/**
@@ -636,17 +698,8 @@ public class Server extends Observable implements Runnable, Serializable {
 
 		List<String> charactersInRoom = new ArrayList<String>();
 
-		for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
-				.entrySet()) {
-
-			Character c = e.getKey().character;
-
-			if (c != null && e.getKey().online
-					&& (Integer.parseInt(c.get("location")) == roomID)) {
-				// Character is not null, character is online, and character
-				// is in the same room.
-				charactersInRoom.add(c.get("name"));
-			}
+		for (ClientHandler c : getPlayersInRoom(roomID)) {
+			charactersInRoom.add(c.character.getName());
 		}
 		return charactersInRoom;
 	}
@@ -655,102 +708,217 @@ public class Server extends Observable implements Runnable, Serializable {
 
 		List<Integer> charactersInRoom = new ArrayList<Integer>();
 
-		for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
-				.entrySet()) {
+		for (ClientHandler c : getPlayersInRoom(roomID)) {
+			charactersInRoom.add(c.getCharacterID());
+		}
+		return charactersInRoom;
+	}
 
-			Character c = e.getKey().character;
+	/*
+	 * Gets the ClientHandlers of the online players in a given room, from
+	 * the WorldState's index of who is where.
+	 */
+	private static List<ClientHandler> getPlayersInRoom(int roomID) {
 
-			if (c != null && e.getKey().online
-					&& (Integer.parseInt(c.get("location")) == roomID)) {
-				// Character is not null, character is online, and character
-				// is in the same room.
-				charactersInRoom.add(c.getID());
+		List<ClientHandler> playersInRoom = new ArrayList<ClientHandler>();
+
+		for (int characterID : WorldState.getCharacters(roomID)) {
+			ClientHandler c = getPlayer(characterID);
+			if (c != null) {
+				playersInRoom.add(c);
 			}
 		}
-		return charactersInRoom;
+		return playersInRoom;
+	}
+
+	/*
+	 * Gets the ClientHandler of the online player with the given Character.
+	 * Returns null if the Character isn't online.
+	 */
+	private static ClientHandler getPlayer(int characterID) {
+		ClientHandler c = players.get(characterID);
+		return c != null && c.online ? c : null;
 	}
 
 	/**
-	 * ClientHandler is a Runnable that is spawned on a per-Client basis. Each
-	 * Client gets their own thread in order to have interaction that happens in
-	 * real time. It sends Messages for a Client to log in or create a user,
-	 * select or create a character, and also sends Messages in response to
-	 * Client interaction by receiving Messages from Clients and parsing them
-	 * into a ClientCommand.
+	 * ClientHandler is created on a per-Client basis and listens to the
+	 * Client's Connection. It sends Messages for a Client to log in or create a
+	 * user, select or create a character, and also sends Messages in response
+	 * to Client interaction by receiving Messages from Clients and parsing them
+	 * into a ClientCommand. Messages are queued and handled one at a time, in
+	 * the order they arrived, on the GameLoop of the zone the Character is
+	 * in, whichever thread received them.
 	 * 
 	 * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
 	 * 
 	 */
-	private class ClientHandler implements Runnable {
-
-		private Socket socket;
-		private ObjectInputStream ois;
-		private User user;
-		private Thread thread;
-		private Character character;
-		private boolean online;
-		private String tradeItem;
-		private int tradingTo;
-		private boolean tradeAccept;
-
-		public ClientHandler(Socket s) {
-			this.socket = s;
+	private class ClientHandler implements ConnectionListener, Runnable {
+
+		private Connection connection;
+		// Other zones look at these, the Client's own zone changes them.
+		private volatile User user;
+		private volatile Character character;
+		private volatile boolean online;
+		private volatile String tradeItem;
+		private volatile int tradingTo;
+		private volatile boolean tradeAccept;
+		private Queue<Message> inbox;
+		private AtomicBoolean scheduled;
+		// The zone of a Client without a Character yet.
+		private GameLoop lobby;
+		// What the Client was last told about its Character.
+		private Object[] lastStats;
+		private Boolean lastLights;
+		// Frames dropped for the Client as of when that was last checked.
+		private long seenDrops;
+		private int statsLocation;
+		private String statsRoomName;
+		// Rooms whose descriptions the Client has been sent, from which
+		// RoomGraph.
+		private Set<Integer> describedRooms;
+		private RoomGraph describedGraph;
+
+		public ClientHandler(Connection connection) {
+			this.connection = connection;
 			this.online = false;
-			thread = new Thread(this);
 			tradeItem = "";
 			tradingTo = -1;
 			tradeAccept = false;
+			inbox = new ConcurrentLinkedQueue<Message>();
+			scheduled = new AtomicBoolean(false);
+			lobby = GameLoop.any();
+			lastStats = null;
+			lastLights = null;
+			statsLocation = -1;
+			statsRoomName = "";
+			describedRooms = new HashSet<Integer>();
 		}
 
-		/**
-		 * Starts this ClientHandler by opening an ObjectInputStream and
-		 * starting itself in a Thread.
+		public int getCharacterID() {
+			return this.character.getID();
+		}
+
+		@Override
+		public void messageReceived(Message m) {
+			inbox.add(m);
+			if (scheduled.compareAndSet(false, true)) {
+				getZone().submit(this);
+			}
+		}
+
+		/*
+		 * Gets the GameLoop of the zone this Client's Character is in.
 		 */
-		public void start() {
-			try {
-				ois = new ObjectInputStream(socket.getInputStream());
-			} catch (IOException e) {
-				e.printStackTrace();
+		private GameLoop getZone() {
+			Character c = character;
+			return c == null ? lobby : GameLoop.forRoom(c.getLocation());
+		}
+
+		@Override
+		public void connectionClosed() {
+			if (connection.wasEvicted()) {
+				addToLog(connection + " was disconnected for not keeping up.");
 			}
-			thread.start();
+			getClients().remove(this);
+			leaveWorld();
 		}
 
-		public int getCharacterID() {
-			return this.character.getID();
+		/*
+		 * Takes the Character out of the rooms, if it is in play.
+		 */
+		private void leaveWorld() {
+			Character c = character;
+			if (c != null && players.remove(c.getID(), this)) {
+				WorldState.leaveWorld(c);
+			}
+			EventBus.unsubscribe(connection);
 		}
 
+		/*
+		 * Moves the Character to the given room and subscribes the Client to
+		 * that room's notices instead of the old room's.
+		 */
+		private void moveTo(int roomID) {
+			character.setLocation(roomID);
+			EventBus.subscribe(connection, roomID);
+		}
+
+		/**
+		 * Handles this Client's next queued Message on the GameLoop of its
+		 * zone. Only one zone at a time runs this for a given Client, so its
+		 * Messages are handled in the order they arrived. When the Character
+		 * has gone into another zone, the Client is handed off to that
+		 * zone's GameLoop instead, and the Message handled there.
+		 */
 		@Override
 		public void run() {
-			// Run this while the ClientHandler has not quit the game.
-			Message m;
+			GameLoop zone = getZone();
+			if (zone != GameLoop.current()) {
+				zone.submit(this);
+				return;
+			}
+			Message m = inbox.poll();
 			try {
-				while ((m = (Message) ois.readObject()) != null) {
-
-					switch (m.getMessageType()) {
-					case LOGIN:
-						login(m);
-						break;
-					case SELECT_CHARACTER:
-						selectCharacter(m);
-						break;
-					case CREATE_USER:
-						createUser(m);
-						break;
-					case CREATE_CHARACTER:
-						createCharacter(m);
-						break;
-					case COMMAND:
-						executeCommand(m);
-						break;
-					case QUIT:
-						disconnect();
-						break;
-					}
+				if (m != null) {
+					handleMessage(m);
 				}
-			} catch (IOException e) {
-				getClients().remove(this);
-			} catch (ClassNotFoundException e) {
-				getClients().remove(this);
+			} catch (RuntimeException e) {
+				// One bad Message mustn't stop the Client's others from
+				// being handled.
+				e.printStackTrace();
+			} finally {
+				reschedule();
+			}
+		}
+
+		/*
+		 * Submits this Client again if it has more Messages waiting, or marks
+		 * it as no longer scheduled. One Message at a time, so every Client's
+		 * commands count against the tick's cap. The next one goes wherever
+		 * the Character is now.
+		 */
+		private void reschedule() {
+			if (!inbox.isEmpty()) {
+				getZone().submit(this);
+				return;
+			}
+			scheduled.set(false);
+			if (!inbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+				// A Message arrived while we were finishing up.
+				getZone().submit(this);
+			}
+		}
+
+		private void handleMessage(Message m) {
+			// Everything sent in response goes out in one write.
+			connection.beginResponse();
+			try {
+				dispatch(m);
+			} finally {
+				connection.endResponse();
+			}
+		}
+
+		private void dispatch(Message m) {
+			switch (m.getMessageType()) {
+			case LOGIN:
+				login(m);
+				break;
+			case SELECT_CHARACTER:
+				selectCharacter(m);
+				break;
+			case CREATE_USER:
+				createUser(m);
+				break;
+			case CREATE_CHARACTER:
+				createCharacter(m);
+				break;
+			case COMMAND:
+				executeCommand(m);
+				break;
+			case QUIT:
+				disconnect();
+				break;
 			}
 		}
 
@@ -781,24 +949,17 @@ public class Server extends Observable implements Runnable, Serializable {
 		 */
 		public void disconnect() {
 			getClients().remove(this);
+			leaveWorld();
 			if (this.character != null) {
-				Server.notifyAll(new Message(
+				EventBus.publishGlobal(new Message(
 						"<span class=\"player\">"
-								+ this.character.get("name")
+								+ this.character.getName()
 								+ "</span><span class=\"normal\"> has disconnected.</span><br />",
 						MessageType.DISPLAY));
 				this.online = false;
-				try {
-					this.character.save();
-				} catch (SQLException e1) {
-					e1.printStackTrace();
-				}
-			}
-			try {
-				this.socket.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+				WorldState.save(this.character);
 			}
+			this.connection.close();
 		}
 
 		/**
@@ -816,7 +977,7 @@ public class Server extends Observable implements Runnable, Serializable {
 			this.user = new User(login[0]);
 			// User doesn't exist.
 			if (user.getID() == -1) {
-				addToLog(this.socket + " failed to login. User doesn't exist.");
+				addToLog(this.connection + " failed to login. User doesn't exist.");
 				sendMessage(new Message("User doesn't exist.",
 						MessageType.LOGIN_UNSUCCESSFUL));
 				return;
@@ -824,7 +985,7 @@ public class Server extends Observable implements Runnable, Serializable {
 
 			// Make sure the User isn't already logged in.
 
-			for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+			for (Entry<ClientHandler, Connection> e : getClients()
 					.entrySet()) {
 
 				User loggedInUser = e.getKey().user;
@@ -836,7 +997,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				if (loggedInUser.getID() == user.getID()
 						&& e.getKey().character != null) {
 					// User is already logged in.
-					addToLog("User " + user.get("name")
+					addToLog("User " + user.getName()
 							+ " tried to log in twice.");
 					sendMessage(new Message("User already logged in.",
 							MessageType.LOGIN_UNSUCCESSFUL));
@@ -847,14 +1008,14 @@ public class Server extends Observable implements Runnable, Serializable {
 			// If the user exists, make sure the password is correct.
 			if (!user.validatePassword(login[1])) {
 				// Wrong password was entered.
-				addToLog(this.socket + " failed to validate password.");
+				addToLog(this.connection + " failed to validate password.");
 				sendMessage(new Message("Incorrect password.",
 						MessageType.LOGIN_UNSUCCESSFUL));
 				return;
 			}
 
 			// User is banned.
-			if (Boolean.parseBoolean(user.get("banned"))) {
+			if (user.isBanned()) {
 				sendMessage(new Message("User is banned.",
 						MessageType.LOGIN_UNSUCCESSFUL));
 				return;
@@ -885,22 +1046,25 @@ public class Server extends Observable implements Runnable, Serializable {
 		private void selectCharacter(Message m) {
 			// Data for SELECT_CHARACTER comes as a String.
 			String character = (String) m.getData();
-			this.character = new Character(
+			leaveWorld();
+			this.character = WorldState.getCharacter(
 					DatabaseConnection.getIDFromCharacter(character));
+			// The Client knows nothing about this Character yet.
+			this.lastStats = null;
+			this.lastLights = null;
 
-			addToLog(this.user.get("username") + " logged in with character "
+			addToLog(this.user.getUsername() + " logged in with character "
 					+ character + ".");
 			// Sets the character to online.
 			this.online = true;
-			try {
-				this.character.save();
-			} catch (SQLException e) {
-				e.printStackTrace();
-			}
+			players.put(this.character.getID(), this);
+			WorldState.enterWorld(this.character);
+			EventBus.subscribe(connection, this.character.getLocation());
+			WorldState.save(this.character);
 			// Tell everyone on the server that this character has logged in.
-			Server.notifyAll(new Message(
+			EventBus.publishGlobal(new Message(
 					"<span class=\"player\">"
-							+ this.character.get("name")
+							+ this.character.getName()
 							+ "</span><span class=\"normal\"> has logged in!</span><br />",
 					MessageType.DISPLAY));
 			sendMessage(new Message(null,
@@ -939,7 +1103,7 @@ public class Server extends Observable implements Runnable, Serializable {
 			DatabaseConnection.createUser(username, password, name);
 
 			this.user = new User(username);
-			addToLog(this.socket + " created new user " + username + ".");
+			addToLog(this.connection + " created new user " + username + ".");
 			sendMessage(new Message("User created successfully.",
 					MessageType.CREATE_USER_SUCCESSFUL));
 
@@ -972,13 +1136,12 @@ public class Server extends Observable implements Runnable, Serializable {
 			}
 
 			DatabaseConnection.createCharacter(name, classid, username);
-			this.character = new Character(
+			this.character = WorldState.getCharacter(
 					DatabaseConnection.getIDFromCharacter(name));
-			addToLog(this.user.get("username") + " created new character "
+			addToLog(this.user.getUsername() + " created new character "
 					+ name + ".");
 			sendMessage(new Message("Character created successfully",
 					MessageType.CREATE_CHARACTER_SUCCESSFUL));
-			updateCharacterReference();
 		}
 
 		/**
@@ -995,23 +1158,63 @@ public class Server extends Observable implements Runnable, Serializable {
 			// Object[1] = Character's HP (int)
 			// Object[2] = Character's AP (int)
 			// Object[3] = Character's Experience (int)
-			// Object[4] = Character's Location (int)
+			// Object[4] = Character's Location Name (String)
 			// Object[5] = Character's Class (String)
-			updateCharacterReference();
+			// Object[6] = Experience needed for the next level (int)
+
+			// Only what changed since the last stats sent to this Client is
+			// sent, everything else is null. Nothing is sent if nothing
+			// changed.
+			checkDrops();
 			int[] basicStats = character.getStats();
-			int hp = Integer.parseInt(character.get("hp"));
-			int ap = Integer.parseInt(character.get("ap"));
-			int exp = Integer.parseInt(character.get("experience"));
-			Room room = new Room(Integer.parseInt(character.get("location")));
-			String roomid = room.get("name");
+			int hp = character.getHP();
+			int ap = character.getAP();
+			int exp = character.getExperience();
+			int location = character.getLocation();
+			if (location != statsLocation) {
+				statsRoomName = RoomGraph.get().getName(location);
+				statsLocation = location;
+			}
 			String classname = character.getClassType().toString() + " lv. "
-					+ character.get("level");
-			int nextExp = getNextExp(Integer.parseInt(character.get("level")));
-			Object[] messageData = { basicStats, hp, ap, exp, roomid,
+					+ character.getLevel();
+			int nextExp = getNextExp(character.getLevel());
+			Object[] stats = { basicStats, hp, ap, exp, statsRoomName,
 					classname, nextExp };
 
-			this.sendMessage(new Message(messageData,
-					MessageType.CHARACTER_STATS));
+			Object[] changes = new Object[stats.length];
+			boolean changed = false;
+			for (int i = 0; i < stats.length; i++) {
+				if (lastStats == null || !sameStat(lastStats[i], stats[i])) {
+					changes[i] = stats[i];
+					changed = true;
+				}
+			}
+			if (!changed) {
+				return;
+			}
+			lastStats = stats;
+			this.sendMessage(new Message(changes, MessageType.CHARACTER_STATS));
+		}
+
+		/*
+		 * Forgets what the Client was last told if anything sent to it since
+		 * was dropped by its OutboundQueue, so it is told everything again.
+		 */
+		private void checkDrops() {
+			long dropped = connection.getOutboundQueue().getDropped();
+			if (dropped != seenDrops) {
+				seenDrops = dropped;
+				lastStats = null;
+				lastLights = null;
+				describedRooms.clear();
+			}
+		}
+
+		private boolean sameStat(Object last, Object current) {
+			if (last instanceof int[]) {
+				return Arrays.equals((int[]) last, (int[]) current);
+			}
+			return last.equals(current);
 		}
 
 		/**
@@ -1021,30 +1224,21 @@ public class Server extends Observable implements Runnable, Serializable {
 		 *            The Message to send to the Client.
 		 */
 		public void sendMessage(Message m) {
-			try {
-				clients.get(this).writeObject(m);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			connection.send(m);
 		}
 
 		/**
-		 * Grabs updated data from the Database.
-		 */
-		private void updateCharacterReference() {
-			this.character.load();
-		}
-
-		/**
-		 * 
+		 * Tells the Client whether the lights are on, if that changed since it
+		 * was last told.
 		 */
 		public void sendFonts() {
-			if (Boolean.parseBoolean((this.character.get("lights")))) {
-				this.sendMessage(new Message(true, MessageType.SET_CLIENT_FONT));
-			} else {
-				this.sendMessage(new Message(false, MessageType.SET_CLIENT_FONT));
+			checkDrops();
+			boolean lights = this.character.hasLights();
+			if (lastLights != null && lastLights == lights) {
+				return;
 			}
-			this.sendMessage(new Message("", MessageType.DISPLAY));
+			lastLights = lights;
+			this.sendMessage(new Message(lights, MessageType.SET_CLIENT_FONT));
 		}
 
 		/**
@@ -1057,8 +1251,6 @@ public class Server extends Observable implements Runnable, Serializable {
 		 */
 		private void executeCommand(Message m) {
 
-			updateCharacterReference();
-
 			// Data for COMMAND comes in the form of a String
 			String whole = (String) m.getData();
 			String command = ""; // The command in String form
@@ -1109,15 +1301,25 @@ public class Server extends Observable implements Runnable, Serializable {
 						}
 					}
 				}
-				addToLog(character.get("name") + " executed command " + "\""
+				addToLog(character.getName() + " executed command " + "\""
 						+ whole + "\"");
-				commandToExecute.execute(arguments, this);
+				// Whatever the command writes is committed at once, before
+				// the stats are worked out from it.
+				DatabaseConnection db = DatabaseConnection.getInstance();
+				db.beginWork();
+				try {
+					commandToExecute.execute(arguments, this);
+					db.commitWork();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				} finally {
+					db.endWork();
+				}
 			} else {
 				this.sendMessage(new Message(
 						"<span class=\"normal\">Command not recognized. To see all commands say: 'commands'<br />Commands are CaSe SeNsItIvE.</span><br />",
 						MessageType.DISPLAY));
 			}
-			updateCharacterReference();
 			// Send stats and light updates.
 			if (commandToExecute != ClientCommand.quit) {
 				sendStats();
@@ -1148,155 +1350,60 @@ public class Server extends Observable implements Runnable, Serializable {
 
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
-				// Create a "map" of where the player is.
+				int characterLocation = client.character.getLocation();
 
-				int characterLocation = Integer.parseInt(client.character
-						.get("location"));
+				RoomGraph rooms = RoomGraph.get();
 
-				Room r = new Room(characterLocation);
-
-				client.sendMessage(new Message("<span class=\"normal\">"
-						+ r.get("description") + "</span><br />",
-						MessageType.DISPLAY));
-
-				int north = Integer.parseInt(r.get("north"));
-				int east = Integer.parseInt(r.get("east"));
-				int south = Integer.parseInt(r.get("south"));
-				int west = Integer.parseInt(r.get("west"));
-				String map = "<table border=\"0\"><tr><td></td>";
-				if (north != 0) {
-					map += "<td class=\"normal\" border=\"1\">north";
-				} else {
-					map += "<td class=\"normal\">&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp";
-				}
-				map += "</td><td></td></tr><tr>";
-				if (west != 0) {
-					map += "<td class=\"normal\" border=\"1\">west";
-				} else {
-					map += "<td class=\"normal\">&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp";
+				// The Client keeps the descriptions it was sent, so each is
+				// only sent once, unless the rooms were reloaded or a
+				// description may have been dropped since.
+				client.checkDrops();
+				if (client.describedGraph != rooms) {
+					client.describedGraph = rooms;
+					client.describedRooms.clear();
 				}
-				map += "</td><td class=\"player\" border=\"1\"><center>you</center></td>";
-				if (east != 0) {
-					map += "<td class=\"normal\" border=\"1\">east";
-				} else {
-					map += "<td class=\"normal\">&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp";
+				String description = null;
+				if (client.describedRooms.add(characterLocation)) {
+					description = rooms.getDescription(characterLocation);
 				}
-				map += "</td></tr><tr><td></td>";
-				if (south != 0) {
-					map += "<td class=\"normal\" border=\"1\">south";
-				} else {
-					map += "<td class=\"normal\">&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp";
-				}
-				map += "</td><td></td></tr></table>";
 
-				client.sendMessage(new Message(map, MessageType.DISPLAY));
+				int[] exits = rooms.getExits(characterLocation);
 
-				Map<String, String> items = DatabaseConnection
-						.getItemNamesForRoom(r.getID());
+				Map<String, String> items = WorldState
+						.getItemNamesForRoom(characterLocation);
+				String[] itemNames = items.keySet().toArray(
+						new String[items.size()]);
+				String[] itemQuantities = items.values().toArray(
+						new String[items.size()]);
 
-				String itemList = "";
-				if (items.size() > 0) {
-					itemList = "<span class=\"normal\">You see the following items in the room:</span><br />";
-				} else {
-					itemList = "<span class=\"normal\">There are no items in this room.</span><br />";
-				}
+				List<String> charactersInRoom = Server
+						.getCharactersInRoom(characterLocation);
+				charactersInRoom.remove(client.character.getName());
 
-				for (Entry<String, String> s : items.entrySet()) {
-					itemList += "<span class=\"item\">" + s.getKey()
-							+ "</span><span class=\"normal\"> : "
-							+ s.getValue() + "</span><br />";
+				List<Integer> permNPCs = ContentCatalog.get().getNPCsIn(
+						characterLocation);
+				String[] npcs = new String[permNPCs.size()];
+				for (int i = 0; i < npcs.length; i++) {
+					npcs[i] = ContentCatalog.get().getNPC(permNPCs.get(i))
+							.getName();
 				}
-				client.sendMessage(new Message(itemList, MessageType.DISPLAY));
 
-				// ------------------- Display users -------------------
-				List<String> charactersInRoom = Server.getCharactersInRoom(r
-						.getID());
-				charactersInRoom.remove(client.character.get("name"));
-				String charsInRoom = "";
-				if (charactersInRoom.size() > 0) {
-					charsInRoom = "<span class=\"normal\">You see </span>";
-				} else {
-					charsInRoom = "<span class=\"normal\">There's no one</span>";
-				}
-				int i = 0;
-				for (String s : charactersInRoom) {
-					if (i == charactersInRoom.size() - 1) {
-						charsInRoom += "<span class=\"player\">" + s
-								+ "</span>";
-					} else {
-						charsInRoom += "<span class=\"player\">" + s
-								+ "</span><span class=\"normal\">, </span>";
-					}
-					i++;
-				}
-				client.sendMessage(new Message(
-						charsInRoom
-								+ "<span class=\"normal\"> in the room with you.</span><br />",
-						MessageType.DISPLAY));
-
-				// ------------------- Display NPCs in room -------------------
-				String npcsInRoom = "";
-				List<Integer> permNPCs = DatabaseConnection
-						.getPermanentNPCs(characterLocation);
-
-				if (permNPCs.size() != 0) {
-					npcsInRoom = "<span class=\"normal\">You see </span>";
-				}
-
-				int j = 0;
-
-				for (int k : permNPCs) {
-
-					NonPlayerCharacter nonPlayerCharacter = new NonPlayerCharacter(
-							k);
-					if (j == permNPCs.size() - 1) {
-						npcsInRoom += "<span class=\"friendly\">"
-								+ nonPlayerCharacter.get("name") + "</span>";
-					} else {
-						npcsInRoom += "<span class=\"friendly\">"
-								+ nonPlayerCharacter.get("name")
-								+ "</span><span class=\"normal\">, </span>";
-					}
-					j++;
-				}
-
-				if (permNPCs.size() != 0) {
-					client.sendMessage(new Message(
-							npcsInRoom
-									+ "<span class=\"normal\"> in the room with you.</span><br />",
-							MessageType.DISPLAY));
-				}
-
-				// ----------------- Display enemies in room -----------------
-
-				List<Integer> mobList = DatabaseConnection
+				List<Integer> mobList = WorldState
 						.getMobs(characterLocation);
-				int l = 0;
-				String mobString = "";
-
-				for (int m : mobList) {
-					if (l == mobList.size() - 1) {
-						mobString += "<span class=\"enemy\">"
-								+ DatabaseConnection.getMobName(m) + "</span>";
-					} else {
-						mobString += "<span class=\"enemy\">"
-								+ DatabaseConnection.getMobName(m)
-								+ "</span><span class=\"normal\">, </span>";
-					}
-					l++;
+				String[] mobs = new String[mobList.size()];
+				for (int i = 0; i < mobs.length; i++) {
+					mobs[i] = WorldState.getMobName(mobList.get(i));
 				}
 
-				if (mobList.size() == 1) {
-					client.sendMessage(new Message(
-							mobString
-									+ "<span class =\"normal\"> is in the room with you!</span><br />",
-							MessageType.DISPLAY));
-				} else if (mobList.size() > 1) {
-					client.sendMessage(new Message(
-							mobString
-									+ "<span class =\"normal\"> are in the room with you!</span><br />",
-							MessageType.DISPLAY));
-				}
+				// See MessageType.ROOM_VIEW for what each field is.
+				client.sendMessage(new Message(new Object[] {
+						characterLocation,
+						description,
+						exits,
+						itemNames,
+						itemQuantities,
+						charactersInRoom.toArray(new String[charactersInRoom
+								.size()]), npcs, mobs }, MessageType.ROOM_VIEW));
 			}
 		},
 		move(
@@ -1306,26 +1413,22 @@ public class Server extends Observable implements Runnable, Serializable {
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
 
-				int currentLocation = Integer.parseInt(client.character
-						.get("location"));
-				Room r = new Room(currentLocation);
-				int roomID = r.getID();
+				int currentLocation = client.character.getLocation();
+				RoomGraph rooms = RoomGraph.get();
+				int roomID = currentLocation;
 
-				int north = Integer.parseInt(r.get("north"));
-				int east = Integer.parseInt(r.get("east"));
-				int south = Integer.parseInt(r.get("south"));
-				int west = Integer.parseInt(r.get("west"));
+				int north = rooms.getNorth(roomID);
+				int east = rooms.getEast(roomID);
+				int south = rooms.getSouth(roomID);
+				int west = rooms.getWest(roomID);
 
-				boolean isLocked = DatabaseConnection.getDoorLocked(roomID);
+				boolean isLocked = WorldState.getDoorLocked(roomID);
 
-				boolean northLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("north");
-				boolean eastLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("east");
-				boolean southLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("south");
-				boolean westLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("west");
+				String door = rooms.getDoor(roomID);
+				boolean northLocked = "north".equals(door);
+				boolean eastLocked = "east".equals(door);
+				boolean southLocked = "south".equals(door);
+				boolean westLocked = "west".equals(door);
 
 				// Move north
 				if (arguments[0].equals("north") || arguments[0].equals("n")) {
@@ -1335,27 +1438,22 @@ public class Server extends Observable implements Runnable, Serializable {
 								MessageType.DISPLAY));
 					} else if (!isLocked || !northLocked) {
 
-						client.character.set("location", "" + north);
-						try {
-							client.character.save();
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+						client.moveTo(north);
+						WorldState.save(client.character);
 
-						roomChangeNotifier(north, currentLocation,
-								client.character.getID(), "north");
+						roomChangeNotifier(north, currentLocation, client,
+								"north");
 
 						client.executeCommand(new Message("look",
 								MessageType.COMMAND));
 						doMobAttack(north);
 					} else if (northLocked && isLocked) {
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 
 						client.sendMessage(new Message(
 								"<span class=\"normal\">The northern door is locked!<br />You need </span><span class=\"item\">"
-										+ item.get("name")
+										+ item.getName()
 										+ "</span><span class=\"normal\"> to unlock the door.</span><br />",
 								MessageType.DISPLAY));
 					}
@@ -1369,27 +1467,22 @@ public class Server extends Observable implements Runnable, Serializable {
 								MessageType.DISPLAY));
 					} else if (!isLocked || !eastLocked) {
 
-						client.character.set("location", "" + east);
-						try {
-							client.character.save();
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+						client.moveTo(east);
+						WorldState.save(client.character);
 
-						roomChangeNotifier(east, currentLocation,
-								client.character.getID(), "east");
+						roomChangeNotifier(east, currentLocation, client,
+								"east");
 
 						client.executeCommand(new Message("look",
 								MessageType.COMMAND));
 						doMobAttack(east);
 					} else if (isLocked && eastLocked) {
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 
 						client.sendMessage(new Message(
 								"<span class=\"normal\">The eastern door is locked!<br />You need </span><span class=\"item\">"
-										+ item.get("name")
+										+ item.getName()
 										+ "</span><span class=\"normal\"> to open the door.</span><br />",
 								MessageType.DISPLAY));
 					}
@@ -1403,28 +1496,23 @@ public class Server extends Observable implements Runnable, Serializable {
 								MessageType.DISPLAY));
 					} else if (!isLocked || !southLocked) {
 
-						client.character.set("location", "" + south);
-						try {
-							client.character.save();
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+						client.moveTo(south);
+						WorldState.save(client.character);
 
-						roomChangeNotifier(south, currentLocation,
-								client.character.getID(), "south");
+						roomChangeNotifier(south, currentLocation, client,
+								"south");
 
 						client.executeCommand(new Message("look",
 								MessageType.COMMAND));
 						doMobAttack(south);
 					} else if (isLocked && southLocked) {
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
+						int requiredItem = rooms.getRequiredItem(roomID);
 
-						Item item = new Item(requiredItem);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 
 						client.sendMessage(new Message(
 								"<span class=\"normal\">The southern door is locked!<br />You need </span><span class=\"item\">"
-										+ item.get("name")
+										+ item.getName()
 										+ "</span><span class=\"normal\"> to open the door.</span><br />",
 								MessageType.DISPLAY));
 					}
@@ -1437,27 +1525,22 @@ public class Server extends Observable implements Runnable, Serializable {
 								"<span class=\"normal\">You can't go west!</span><br />",
 								MessageType.DISPLAY));
 					} else if (!isLocked || !westLocked) {
-						client.character.set("location", "" + west);
-						try {
-							client.character.save();
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+						client.moveTo(west);
+						WorldState.save(client.character);
 
-						roomChangeNotifier(west, currentLocation,
-								client.character.getID(), "west");
+						roomChangeNotifier(west, currentLocation, client,
+								"west");
 
 						client.executeCommand(new Message("look",
 								MessageType.COMMAND));
 						doMobAttack(west);
 					} else if (isLocked && westLocked) {
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 
 						client.sendMessage(new Message(
 								"<span class=\"normal\">The western door is locked!<br />You need </span><span class=\"item\">"
-										+ item.get("name")
+										+ item.getName()
 										+ "</span><span class=\"normal\"> to open the door.</span><br />",
 								MessageType.DISPLAY));
 					}
@@ -1465,41 +1548,15 @@ public class Server extends Observable implements Runnable, Serializable {
 			}
 
 			private void roomChangeNotifier(int currentRoom, int previousRoom,
-					int movingCharacter, String direction) {
-
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
-						.entrySet()) {
-
-					ClientHandler ch = e.getKey();
-
-					if (ch.online) {
-						Character character = new Character(movingCharacter);
-						if (Integer.parseInt(ch.character.get("location")) == currentRoom
-								&& ch.character.getID() != movingCharacter) {
-
-							ch.sendMessage(new Message(
-									"<span class=\"player\">"
-											+ character.get("name")
-											+ "</span><span class=\"normal\"> has entered the room.</span><br />",
-									MessageType.DISPLAY));
-
-						} else if (Integer.parseInt(ch.character
-								.get("location")) == previousRoom
-								&& ch.character.getID() != movingCharacter) {
-
-							ch.sendMessage(new Message(
-									"<span class=\"player\">"
-											+ character.get("name")
-											+ "</span><span class=\"normal\"> has left the room "
-											+ direction + "ward.</span><br />",
-									MessageType.DISPLAY));
-
-						}
-
-					}
-
-				}
+					ClientHandler mover, String direction) {
 
+				String name = mover.character.getName();
+				EventBus.publishRoom(currentRoom, new Message(new Object[] {
+						false, name, null }, MessageType.ENTITY_MOVED),
+						mover.connection);
+				EventBus.publishRoom(previousRoom, new Message(new Object[] {
+						false, name, direction }, MessageType.ENTITY_MOVED),
+						mover.connection);
 			}
 
 		},
@@ -1536,29 +1593,10 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int location = Integer.parseInt(client.character
-						.get("location"));
-				for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
-						.entrySet()) {
-
-					Character character = c.getKey().character;
-					if (character != null) {
-						if (Integer.parseInt(character.get("location")) == location
-								&& c.getKey().online) {
-							// Character is in the same room and online.
-							c.getKey()
-									.sendMessage(
-											new Message(
-													"<span class=\"player\">"
-															+ client.character
-																	.get("name")
-															+ "</span><span class=\"normal\">: "
-															+ arguments[0]
-															+ "</span><br />",
-													MessageType.DISPLAY));
-						}
-					}
-				}
+				int location = client.character.getLocation();
+				EventBus.publishRoom(location, new Message(new Object[] { "say",
+						client.character.getName(), arguments[0] },
+						MessageType.CHAT));
 			}
 		},
 		who(
@@ -1570,12 +1608,12 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				String online = "<span class=\"normal\">Online players:</span><br />";
 
-				for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
+				for (Entry<ClientHandler, Connection> c : getClients()
 						.entrySet()) {
 					Character character = c.getKey().character;
 					if (character != null) {
 						online += "<span class=\"player\">"
-								+ character.get("name") + "</span><br />";
+								+ character.getName() + "</span><br />";
 					}
 				}
 				client.sendMessage(new Message(online, MessageType.DISPLAY));
@@ -1643,7 +1681,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				int characterToTellID = DatabaseConnection
 						.getIDFromCharacter(characterToTell);
 
-				Character otherChar = new Character(characterToTellID);
+				Character otherChar = WorldState.getCharacter(characterToTellID);
 
 				if (otherChar.getID() == -1) {
 					// Character doesn't exist.
@@ -1665,9 +1703,9 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Character is online. Get his ClientHandler so we can send it
 				// a message.
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
-					if (e.getKey().character.get("name")
+					if (e.getKey().character.getName()
 							.equals(characterToTell)) {
 						if (e.getKey().online) {
 							// Character is online.
@@ -1677,7 +1715,7 @@ public class Server extends Observable implements Runnable, Serializable {
 											new Message(
 													"<span class=\"player\">"
 															+ client.character
-																	.get("name")
+																	.getName()
 															+ "</span><span class=\"normal\"> whispers: "
 															+ message
 															+ "</span><br />",
@@ -1685,7 +1723,7 @@ public class Server extends Observable implements Runnable, Serializable {
 							// Show on client side as well.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You whisper to </span><span class=\"player\">"
-											+ e.getKey().character.get("name")
+											+ e.getKey().character.getName()
 											+ "</span><span class=\"normal\">: "
 											+ message + "</span><br />",
 									MessageType.DISPLAY));
@@ -1717,8 +1755,8 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int itemid = DatabaseConnection.getIDFromItemName(arguments[0]);
-				Item item = new Item(itemid);
+				int itemid = ContentCatalog.get().getItemID(arguments[0]);
+				Item item = ContentCatalog.get().getItem(itemid);
 
 				if (item.getID() == -1) {
 					client.sendMessage(new Message(
@@ -1732,15 +1770,14 @@ public class Server extends Observable implements Runnable, Serializable {
 				if (item.getType() == ItemType.PERMANENT) {
 					client.sendMessage(new Message(
 							"<span class=\"item\">"
-									+ item.get("name")
+									+ item.getName()
 									+ "</span><span class=\"normal\"> cannot be picked up!</span><br />",
 							MessageType.DISPLAY));
 					return;
 				}
 
-				Map<Integer, Integer> itemsInRoom = DatabaseConnection
-						.getItemsForRoom(Integer.parseInt(client.character
-								.get("location")));
+				Map<Integer, Integer> itemsInRoom = WorldState
+						.getItemsForRoom(client.character.getLocation());
 
 				if (!itemsInRoom.containsKey(item.getID())) {
 					client.sendMessage(new Message(
@@ -1751,10 +1788,10 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				DatabaseConnection.addItemToCharacter(client.getCharacterID(),
+				WorldState.addItemToCharacter(client.getCharacterID(),
 						item.getID());
-				DatabaseConnection.removeItemFromRoom(
-						Integer.parseInt(client.character.get("location")),
+				WorldState.removeItemFromRoom(
+						client.character.getLocation(),
 						item.getID());
 				client.sendMessage(new Message(
 						"<span class=\"normal\">You pick up </span><span class=\"item\">"
@@ -1770,7 +1807,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				"i") {
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
-				Map<String, String> inventory = DatabaseConnection
+				Map<String, String> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID(), true);
 				String inv = "<span class=\"normal\">Inventory:</span><br />";
 
@@ -1799,10 +1836,10 @@ public class Server extends Observable implements Runnable, Serializable {
 							MessageType.DISPLAY));
 					return;
 				}
-				Map<Integer, Integer> inventory = DatabaseConnection
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[0]);
-				Item item = new Item(itemID);
+				int itemID = ContentCatalog.get().getItemID(arguments[0]);
+				Item item = ContentCatalog.get().getItem(itemID);
 
 				if (item.getID() < 0) {
 					// Item doesn't even exist in the database.
@@ -1817,10 +1854,10 @@ public class Server extends Observable implements Runnable, Serializable {
 				if (inventory.containsKey(itemID)) {
 					// Inventory contains Item
 					// Remove it from Inventory, Add it to Room, Unequip it.
-					DatabaseConnection.addItemToRoom(
-							Integer.parseInt(client.character.get("location")),
+					WorldState.addItemToRoom(
+							client.character.getLocation(),
 							itemID);
-					DatabaseConnection.removeItemFromCharacter(
+					WorldState.removeItemFromCharacter(
 							client.getCharacterID(), itemID);
 					DatabaseConnection.unequipItem(client.getCharacterID(),
 							itemID);
@@ -1843,14 +1880,13 @@ public class Server extends Observable implements Runnable, Serializable {
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
 
-				Map<Integer, Integer> inventory = DatabaseConnection
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
-				Map<Integer, Integer> room = DatabaseConnection
-						.getItemIDsForRoom(Integer.parseInt(client.character
-								.get("location")));
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[0]);
+				Map<Integer, Integer> room = WorldState
+						.getItemIDsForRoom(client.character.getLocation());
+				int itemID = ContentCatalog.get().getItemID(arguments[0]);
 
-				Item itemToUse = new Item(itemID);
+				Item itemToUse = ContentCatalog.get().getItem(itemID);
 
 				if (itemToUse.getID() == -1) {
 					// Item doesn't even exist in the database.
@@ -1862,7 +1898,7 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				if (!Boolean.parseBoolean(itemToUse.get("usable"))) {
+				if (!itemToUse.isUsable()) {
 					// Item isn't usable.
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You cannot use </span><span class=\"item\">"
@@ -1872,17 +1908,14 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int requiredItemID = Integer.parseInt(itemToUse
-						.get("requireditem"));
-				int requiredQuantity = Integer.parseInt(itemToUse
-						.get("requiredquantity"));
+				int requiredItemID = itemToUse.getRequiredItem();
+				int requiredQuantity = itemToUse.getRequiredQuantity();
 
-				if (Integer.parseInt(client.character.get("level")) < Integer
-						.parseInt(itemToUse.get("requiredlevel"))) {
+				if (client.character.getLevel() < itemToUse.getRequiredLevel()) {
 					// Character isn't of sufficient level to use the item.
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You need to be level "
-									+ itemToUse.get("requiredlevel")
+									+ itemToUse.getRequiredLevel()
 									+ " to use </span><span class=\"item\">"
 									+ arguments[0]
 									+ "</span><span class=\"normal\">!</span><br />",
@@ -1902,10 +1935,11 @@ public class Server extends Observable implements Runnable, Serializable {
 								MessageType.DISPLAY));
 						client.sendMessage(new Message(
 								"<span class=\"normal\">"
-										+ itemToUse.get("effectdescription")
+										+ itemToUse.getEffectDescription()
 										+ "</span><br />", MessageType.DISPLAY));
 					} else {
-						Item requiredItem = new Item(requiredItemID);
+						Item requiredItem = ContentCatalog.get().getItem(
+								requiredItemID);
 						if (inventory.containsKey(requiredItemID)) {
 							// Required Item is in Character's Inventory.
 
@@ -1916,11 +1950,9 @@ public class Server extends Observable implements Runnable, Serializable {
 								// Quantity amount of Required Item from
 								// Character's Inventory.
 								itemToUse.doEffect(client.getCharacterID());
-								for (int i = 0; i < requiredQuantity; i++) {
-									DatabaseConnection.removeItemFromCharacter(
-											client.getCharacterID(),
-											requiredItemID);
-								}
+								WorldState.adjustQuantity(client
+										.getCharacterID(), requiredItemID,
+										-requiredQuantity);
 								client.sendMessage(new Message(
 										"<span class=\"normal\">You use </span><span class=\"item\">"
 												+ arguments[0]
@@ -1929,7 +1961,7 @@ public class Server extends Observable implements Runnable, Serializable {
 								client.sendMessage(new Message(
 										"<span class=\"normal\">"
 												+ itemToUse
-														.get("effectdescription")
+														.getEffectDescription()
 												+ "</span><br />",
 										MessageType.DISPLAY));
 							} else {
@@ -1937,7 +1969,7 @@ public class Server extends Observable implements Runnable, Serializable {
 								// Item.
 								client.sendMessage(new Message(
 										"<span class=\"normal\">You need more </span><span class=\"item\">"
-												+ requiredItem.get("name")
+												+ requiredItem.getName()
 												+ "</span><span class=\"normal\"> to use </span><span class=\"item\">"
 												+ arguments[0]
 												+ "</span><br />",
@@ -1958,10 +1990,11 @@ public class Server extends Observable implements Runnable, Serializable {
 								MessageType.DISPLAY));
 						client.sendMessage(new Message(
 								"<span class=\"normal\">"
-										+ itemToUse.get("effectdescription")
+										+ itemToUse.getEffectDescription()
 										+ "</span><br />", MessageType.DISPLAY));
 					} else {
-						Item requiredItem = new Item(requiredItemID);
+						Item requiredItem = ContentCatalog.get().getItem(
+								requiredItemID);
 						if (inventory.containsKey(requiredItemID)) {
 							// Required Item is in Character's Inventory.
 
@@ -1972,11 +2005,9 @@ public class Server extends Observable implements Runnable, Serializable {
 								// Quantity amount of Required Item from
 								// Character's Inventory.
 								itemToUse.doEffect(client.getCharacterID());
-								for (int i = 0; i < requiredQuantity; i++) {
-									DatabaseConnection.removeItemFromCharacter(
-											client.getCharacterID(),
-											requiredItemID);
-								}
+								WorldState.adjustQuantity(client
+										.getCharacterID(), requiredItemID,
+										-requiredQuantity);
 								client.sendMessage(new Message(
 										"<span class=\"normal\">You use </span><span class=\"item\">"
 												+ arguments[0]
@@ -1985,7 +2016,7 @@ public class Server extends Observable implements Runnable, Serializable {
 								client.sendMessage(new Message(
 										"<span class=\"normal\">"
 												+ itemToUse
-														.get("effectdescription")
+														.getEffectDescription()
 												+ "</span><br />",
 										MessageType.DISPLAY));
 							} else {
@@ -1993,7 +2024,7 @@ public class Server extends Observable implements Runnable, Serializable {
 								// Item.
 								client.sendMessage(new Message(
 										"<span class=\"normal\">You need more </span><span class=\"item\">"
-												+ requiredItem.get("name")
+												+ requiredItem.getName()
 												+ "</span><span class=\"normal\"> to use </span><span class=\"item\">"
 												+ arguments[0]
 												+ "</span><br />",
@@ -2044,6 +2075,51 @@ public class Server extends Observable implements Runnable, Serializable {
 				}
 			}
 		},
+		reload(
+				0,
+				"<span class=\"normal\"><b>reload</b> reloads the rooms, items, mobs and NPCs from the database if you have admin rights.</span>",
+				"reload") {
+			@Override
+			void execute(String[] arguments, ClientHandler client) {
+				if (DatabaseConnection.isAdmin(client.user.getID())) {
+					RoomGraph.reload();
+					ContentCatalog.reload();
+					client.sendMessage(new Message(
+							"<span class=\"normal\">The rooms and content were reloaded.</span><br />",
+							MessageType.DISPLAY));
+				} else {
+					client.sendMessage(new Message(
+							"<span class=\"normal\">You don't have administrator rights.</span><br />",
+							MessageType.DISPLAY));
+				}
+			}
+		},
+		metrics(
+				0,
+				"<span class=\"normal\"><b>metrics</b> shows how the server's zones, scheduler and notices are keeping up if you have admin rights.</span>",
+				"metrics") {
+			@Override
+			void execute(String[] arguments, ClientHandler client) {
+				if (DatabaseConnection.isAdmin(client.user.getID())) {
+					StringBuilder metrics = new StringBuilder();
+					for (GameLoop zone : GameLoop.getZones()) {
+						metrics.append("Zone ").append(zone.getIndex())
+								.append(": ").append(zone.describe())
+								.append("<br />");
+					}
+					client.sendMessage(new Message(
+							"<span class=\"normal\">" + metrics
+									+ "Scheduler: "
+									+ GameScheduler.describe() + "<br />Events: "
+									+ EventBus.describe() + "</span><br />",
+							MessageType.DISPLAY));
+				} else {
+					client.sendMessage(new Message(
+							"<span class=\"normal\">You don't have administrator rights.</span><br />",
+							MessageType.DISPLAY));
+				}
+			}
+		},
 		emote(
 				1,
 				"<span class=\"normal\"><b>emote</b> 'message' - emotifies a message.</span>",
@@ -2059,23 +2135,10 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int location = Integer.parseInt(client.character
-						.get("location"));
-				for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
-						.entrySet()) {
-
-					Character character = c.getKey().character;
-					if (character != null) {
-						if (Integer.parseInt(character.get("location")) == location) {
-							c.getKey().sendMessage(
-									new Message("<span class=\"player\">"
-											+ client.character.get("name")
-											+ "</span><span class=\"normal\"> "
-											+ arguments[0] + "</span><br />",
-											MessageType.DISPLAY));
-						}
-					}
-				}
+				int location = client.character.getLocation();
+				EventBus.publishRoom(location, new Message(new Object[] {
+						"emote", client.character.getName(), arguments[0] },
+						MessageType.CHAT));
 
 			}
 		},
@@ -2086,15 +2149,15 @@ public class Server extends Observable implements Runnable, Serializable {
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
 
-				List<Integer> mobsInRoom = DatabaseConnection.getMobs(Integer
-						.parseInt(client.character.get("location")));
+				List<Integer> mobsInRoom = WorldState.getMobs(client.character.getLocation());
 
 				Mob mob = null;
 				int uid = 0;
 
 				for (int i : mobsInRoom) {
-					if (DatabaseConnection.getMobName(i).equals(arguments[0])) {
-						mob = new Mob(DatabaseConnection.getMobIDFromID(i));
+					if (WorldState.getMobName(i).equals(arguments[0])) {
+						mob = ContentCatalog.get().getMob(
+								WorldState.getMobIDFromID(i));
 						uid = i;
 					}
 				}
@@ -2109,20 +2172,20 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				if (DatabaseConnection.isMobAttacked(uid)) {
+				if (WorldState.isMobAttacked(uid)) {
 					// Mob is already being attacked.
-					int attackerID = DatabaseConnection.getMobAttacker(uid);
+					int attackerID = WorldState.getMobAttacker(uid);
 					if (attackerID == client.getCharacterID()) {
 						// This client is the one already attacking the mob.
 						doAttack(uid, client, arguments, mob);
 					} else {
 						// Someone else is attacking the mob.
-						Character attackingCharacter = new Character(attackerID);
+						Character attackingCharacter = WorldState.getCharacter(attackerID);
 						client.sendMessage(new Message(
 								"<span class=\"enemy\">"
 										+ arguments[0]
 										+ "</span><span class=\"normal\"> is already being attacked by </span><span class=\"player\">"
-										+ attackingCharacter.get("name")
+										+ attackingCharacter.getName()
 										+ "</span><span class=\"normal\">.</span><br />",
 								MessageType.DISPLAY));
 
@@ -2131,7 +2194,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				}
 
 				// Set the mob to being attacked by this character.
-				DatabaseConnection.setMobAttacked(uid, client.getCharacterID(),
+				WorldState.setMobAttacked(uid, client.getCharacterID(),
 						true);
 				doAttack(uid, client, arguments, mob);
 			}
@@ -2139,51 +2202,35 @@ public class Server extends Observable implements Runnable, Serializable {
 			private void doAttack(int uid, ClientHandler client,
 					String[] arguments, Mob mob) {
 
-				int mobHP = DatabaseConnection.getMobHP(uid);
-				int characterHP = Integer.parseInt(client.character.get("hp"));
+				int mobHP = WorldState.getMobHP(uid);
+				int characterHP = client.character.getHP();
 				int defense = client.character.getDefense();
 				int characterDamage = client.character.getDamage();
-				int mobLevel = DatabaseConnection.getMobLevel(uid);
+				int mobLevel = WorldState.getMobLevel(uid);
 				int mobDamage = mob.getDamage(mobLevel, MOB_DIFFICULTY)
 						- defense;
 
 				mobDamage = mobDamage < 1 ? 1 : mobDamage;
 
-				int mobXP = DatabaseConnection
-						.getMobExpValue(DatabaseConnection.getMobIDFromID(uid));
+				int mobXP = ContentCatalog.get().getMob(
+						WorldState.getMobIDFromID(uid)).getExpValue();
 
 				if ((mobHP - characterDamage) <= 0) {
 					// Mob died, so remove it from the UID list, add
 					// XP to character, and do drops.
 
-					int npcIndex = 0;
-
-					for (int i : npcUIDs) {
-						if (i == uid)
-							break;
-						npcIndex++;
-					}
+					npcUIDs.remove(Integer.valueOf(uid));
 
-					npcUIDs.remove(npcIndex);
-
-					int currentXP = Integer.parseInt(client.character
-							.get("experience"));
-					client.character.set("experience", ""
-							+ (currentXP + (mobXP * mobLevel)));
-					try {
-						client.character.save();
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
+					int currentXP = client.character.getExperience();
+					client.character.setExperience(currentXP
+							+ (mobXP * mobLevel));
+					WorldState.save(client.character);
 
 					int numBottleCaps = new Random().nextInt(mobXP);
 
-					for (int i = 0; i < numBottleCaps; i++) {
-						// add numBottleCaps to character.
-						DatabaseConnection.addItemToCharacter(
-								client.getCharacterID(), 21);
-						// 21 == bottle cap
-					}
+					// 21 == bottle cap
+					WorldState.adjustQuantity(client.getCharacterID(), 21,
+							numBottleCaps);
 					if (numBottleCaps != 0)
 						client.sendMessage(new Message(
 								"<span class=\"normal\">You killed </span><span class=\"enemy\">"
@@ -2196,33 +2243,28 @@ public class Server extends Observable implements Runnable, Serializable {
 
 					// update level whenever we get experience.
 
-					int characterLevel = Integer.parseInt(client.character
-							.get("level"));
+					int characterLevel = client.character.getLevel();
 
 					int newLevel = Server.getLevelFromExp(currentXP + mobXP);
 
 					if (newLevel > characterLevel) {
 						// character has leveled up!
 
-						client.character.set("level", newLevel + "");
-						try {
-							client.character.save();
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+						client.character.setLevel(newLevel);
+						WorldState.save(client.character);
 
 						client.sendMessage(new Message(
 								"<span class=\"normal\">You have leveled up! You are now level "
 										+ newLevel + ".</span><br />",
 								MessageType.DISPLAY));
 					}
-					DatabaseConnection.removeMob(uid);
+					WorldState.removeMob(uid);
 					return; // mob can't attack back if we kill it.
 				} else {
-					DatabaseConnection.setMobHP(uid, (mobHP - characterDamage));
+					WorldState.setMobHP(uid, (mobHP - characterDamage));
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You attack </span><span class=\"enemy\">"
-									+ DatabaseConnection.getMobName(uid)
+									+ WorldState.getMobName(uid)
 									+ "</span><span class=\"normal\"> for "
 									+ characterDamage + "!</span><br />",
 							MessageType.DISPLAY));
@@ -2233,48 +2275,37 @@ public class Server extends Observable implements Runnable, Serializable {
 					// reduce
 					// experience by 5%
 
-					int reducedXP = (int) (Integer.parseInt(client.character
-							.get("experience")) * .95);
+					int reducedXP = (int) (client.character.getExperience() * .95);
 
-					int level = Integer.parseInt(client.character.get("level"));
+					int level = client.character.getLevel();
 
 					client.character
-							.set("hp",
-									(int) (client.character.getMaxHP(level) * .75)
-											+ "");
-					client.character.set("location", "1");
-					client.character.set("experience", reducedXP + "");
-
-					try {
-						client.character.save();
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
+							.setHP((int) (client.character.getMaxHP(level) * .75));
+					client.moveTo(1);
+					client.character.setExperience(reducedXP);
+
+					WorldState.save(client.character);
 
 					client.sendMessage(new Message(
 							"<span class=\"enemy\">"
-									+ DatabaseConnection.getMobName(uid)
+									+ WorldState.getMobName(uid)
 									+ "</span><span class=\"normal\"> attacked you for "
 									+ mobDamage
 									+ " and you nearly died!</span><br /><span class=\"normal\">You barely escape from death"
 									+ " and find yourself at the Vault entrance.</span><br />",
 							MessageType.DISPLAY));
 					// Mob isn't attacked anymore.
-					DatabaseConnection.setMobAttacked(uid, 0, false);
+					WorldState.setMobAttacked(uid, 0, false);
 					return;
 				} else {
 					// Character is still alive, take damage and
 					// save.
-					client.character.set("hp", "" + (characterHP - mobDamage));
-					try {
-						client.character.save();
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
+					client.character.setHP(characterHP - mobDamage);
+					WorldState.save(client.character);
 
 					client.sendMessage(new Message(
 							"<span class=\"enemy\">"
-									+ DatabaseConnection.getMobName(uid)
+									+ WorldState.getMobName(uid)
 									+ "</span><span class=\"normal\"> attacked you for "
 									+ mobDamage + "!</span><br />",
 							MessageType.DISPLAY));
@@ -2298,16 +2329,9 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				for (Entry<ClientHandler, ObjectOutputStream> c : getClients()
-						.entrySet()) {
-					c.getKey().sendMessage(
-							new Message("<span class=\"normal\">(ooc)</span>"
-									+ "<span class=\"player\">"
-									+ client.character.get("name")
-									+ "</span><span class=\"normal\">: "
-									+ arguments[0] + "</span><br />",
-									MessageType.DISPLAY));
-				}
+				EventBus.publishGlobal(new Message(new Object[] { "ooc",
+						client.character.getName(), arguments[0] },
+						MessageType.CHAT));
 			}
 
 		},
@@ -2328,14 +2352,14 @@ public class Server extends Observable implements Runnable, Serializable {
 					int i = 0;
 					for (Entry<Integer, String> e : equippedItems.entrySet()) {
 
-						Item item = new Item(e.getKey());
+						Item item = ContentCatalog.get().getItem(e.getKey());
 
 						if (i == (equippedItems.size() - 1)) {
 							equipped += "<span class=\"item\">"
-									+ item.get("name") + "</span><br />";
+									+ item.getName() + "</span><br />";
 						} else {
 							equipped += "<span class=\"item\">"
-									+ item.get("name")
+									+ item.getName()
 									+ "</span><span class=\"normal\">, </span>";
 						}
 						i++;
@@ -2352,9 +2376,9 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[0]);
-				Item item = new Item(itemID);
-				Map<Integer, Integer> inventory = DatabaseConnection
+				int itemID = ContentCatalog.get().getItemID(arguments[0]);
+				Item item = ContentCatalog.get().getItem(itemID);
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
 
 				if (item.getID() < 0) {
@@ -2367,7 +2391,7 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				if (!Boolean.parseBoolean(item.get("equippable"))) {
+				if (!item.isEquippable()) {
 					// Item isn't equippable.
 					client.sendMessage(new Message(
 							"<span class=\"item\">"
@@ -2377,9 +2401,9 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				int requiredLevel = Integer.parseInt(item.get("requiredlevel"));
+				int requiredLevel = item.getRequiredLevel();
 
-				if (Integer.parseInt(client.character.get("level")) < requiredLevel) {
+				if (client.character.getLevel() < requiredLevel) {
 					// Character isn't of sufficient level.
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You need to be level "
@@ -2403,7 +2427,7 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				String itemType = item.get("type");
+				String itemType = item.getType().name();
 
 				if (equippedItems.containsValue(itemType)) {
 					// User already has the same ItemType equipped.
@@ -2441,9 +2465,9 @@ public class Server extends Observable implements Runnable, Serializable {
 
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[0]);
-				Item item = new Item(itemID);
-				Map<Integer, Integer> inventory = DatabaseConnection
+				int itemID = ContentCatalog.get().getItemID(arguments[0]);
+				Item item = ContentCatalog.get().getItem(itemID);
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
 				Map<Integer, String> equippedItems = DatabaseConnection
 						.getEquippedItems(client.getCharacterID());
@@ -2485,7 +2509,7 @@ public class Server extends Observable implements Runnable, Serializable {
 							MessageType.DISPLAY));
 				} else {
 					// Item isn't equipped.
-					if (Boolean.parseBoolean(item.get("equippable"))) {
+					if (item.isEquippable()) {
 						// Item is equippable but Character doesn't have it
 						// equipped.
 						client.sendMessage(new Message(
@@ -2513,12 +2537,12 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Make sure item actually exists in the room or in the
 				// character's inventory and that the item actually exists.
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[0]);
-				int roomid = Integer.parseInt(client.character.get("location"));
-				Item item = new Item(itemID);
-				Map<Integer, Integer> inventory = DatabaseConnection
+				int itemID = ContentCatalog.get().getItemID(arguments[0]);
+				int roomid = client.character.getLocation();
+				Item item = ContentCatalog.get().getItem(itemID);
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
-				Map<Integer, Integer> roomItems = DatabaseConnection
+				Map<Integer, Integer> roomItems = WorldState
 						.getItemIDsForRoom(roomid);
 
 				if (item.getID() < 0) {
@@ -2533,9 +2557,9 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				if (inventory.containsKey(itemID)
 						|| roomItems.containsKey(itemID)) {
-					String itemDescription = DatabaseConnection
-							.getItemDescription(DatabaseConnection
-									.getIDFromItemName(arguments[0]));
+					ContentCatalog catalog = ContentCatalog.get();
+					String itemDescription = catalog.getItem(
+							catalog.getItemID(arguments[0])).getDescription();
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You inspect </span><span class=\"item\">"
 									+ arguments[0]
@@ -2565,7 +2589,7 @@ public class Server extends Observable implements Runnable, Serializable {
 			void execute(String[] arguments, ClientHandler client) {
 				// Check if the NPC exists.
 
-				int npcID = DatabaseConnection.getIDFromNPCName(arguments[0]);
+				int npcID = ContentCatalog.get().getNPCID(arguments[0]);
 
 				if (npcID <= 0) {
 					// NPC doesn't exist.
@@ -2576,10 +2600,9 @@ public class Server extends Observable implements Runnable, Serializable {
 							MessageType.DISPLAY));
 					return;
 				}
-				NonPlayerCharacter npc = new NonPlayerCharacter(npcID);
-				int npcLocation = Integer.parseInt(npc.get("location"));
-				int characterLocation = Integer.parseInt(client.character
-						.get("location"));
+				NonPlayerCharacter npc = ContentCatalog.get().getNPC(npcID);
+				int npcLocation = npc.getLocation();
+				int characterLocation = client.character.getLocation();
 
 				if (npcLocation != characterLocation) {
 					// Character isn't in the same room.
@@ -2593,8 +2616,8 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Check that the item is valid and that the NPC has it.
 
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[1]);
-				Item item = new Item(itemID);
+				int itemID = ContentCatalog.get().getItemID(arguments[1]);
+				Item item = ContentCatalog.get().getItem(itemID);
 
 				if (item.getID() <= 0) {
 					// Item isn't valid
@@ -2624,44 +2647,38 @@ public class Server extends Observable implements Runnable, Serializable {
 							"<span class=\"friendly\">"
 									+ arguments[0]
 									+ "</span><span class=\"normal\"> doesn't have </span><span class=\"item\">"
-									+ item.get("name")
+									+ item.getName()
 									+ "</span><span class=\"normal\">.</span><br />",
 							MessageType.DISPLAY));
 					return;
 				}
 
-				// Check Character has the correct amount of Bottle Caps.
-				int caps = DatabaseConnection.getBottleCapsForCharacter(client
-						.getCharacterID());
+				// Add item to character and remove 'price' amount of Caps,
+				// both at once and only if the Character has enough Caps.
+				Map<Integer, Integer> changes = new HashMap<Integer, Integer>();
+				changes.put(item.getID(), 1);
+				changes.put(21, -price);
 
-				if (caps < price) {
+				if (!WorldState.adjustQuantities(client.getCharacterID(),
+						changes)) {
 					// Character doesn't have enough Caps
 					client.sendMessage(new Message(
 							"<span class=\"normal\">You need at least "
 									+ price
 									+ " caps in order to buy </span><span class=\"item\">"
-									+ item.get("name")
+									+ item.getName()
 									+ "</span><span class=\"normal\">.</span><br />",
 							MessageType.DISPLAY));
 					return;
 				}
 
-				// Character has enough Caps. Add item to character, remove
-				// 'price' amount of Caps, remove 1 item from NPC inventory.
-
-				DatabaseConnection.addItemToCharacter(client.getCharacterID(),
-						item.getID());
-
-				for (int k = 0; k < price; k++) {
-					DatabaseConnection.removeItemFromCharacter(
-							client.getCharacterID(), 21);
-				}
-
+				undoOnRollback(client.getCharacterID(), changes);
+				// Remove 1 item from NPC inventory.
 				DatabaseConnection.removeItemFromNPC(npc.getID(), item.getID());
 
 				client.sendMessage(new Message(
 						"<span class=\"normal\">You buy </span><span class=\"item\">"
-								+ item.get("name")
+								+ item.getName()
 								+ "</span><span class=\"normal\"> for " + price
 								+ " caps.</span><br />", MessageType.DISPLAY));
 			}
@@ -2673,7 +2690,7 @@ public class Server extends Observable implements Runnable, Serializable {
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
 
-				int npcID = DatabaseConnection.getIDFromNPCName(arguments[0]);
+				int npcID = ContentCatalog.get().getNPCID(arguments[0]);
 
 				if (npcID <= 0) {
 					// NPC doesn't exist.
@@ -2685,11 +2702,10 @@ public class Server extends Observable implements Runnable, Serializable {
 					return;
 				}
 
-				NonPlayerCharacter npc = new NonPlayerCharacter(npcID);
+				NonPlayerCharacter npc = ContentCatalog.get().getNPC(npcID);
 
-				int npcLocation = Integer.parseInt(npc.get("location"));
-				int characterLocation = Integer.parseInt(client.character
-						.get("location"));
+				int npcLocation = npc.getLocation();
+				int characterLocation = client.character.getLocation();
 
 				if (npcLocation != characterLocation) {
 					// Character isn't in the same room.
@@ -2703,8 +2719,8 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Check that the item is valid.
 
-				int itemID = DatabaseConnection.getIDFromItemName(arguments[1]);
-				Item item = new Item(itemID);
+				int itemID = ContentCatalog.get().getItemID(arguments[1]);
+				Item item = ContentCatalog.get().getItem(itemID);
 
 				if (item.getID() <= 0) {
 					// Item isn't valid
@@ -2718,18 +2734,26 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Item is valid.
 
-				int price = Integer.parseInt(item.get("requiredlevel")) * 10;
-				price += Integer.parseInt(item.get("effectamount")) * 3;
+				int price = item.getRequiredLevel() * 10;
+				price += item.getEffectAmount() * 3;
 
 				// Add price amount of caps to the Character. Remove the item.
-				DatabaseConnection.removeItemFromCharacter(
-						client.getCharacterID(), item.getID());
+				Map<Integer, Integer> changes = new HashMap<Integer, Integer>();
+				changes.put(item.getID(), -1);
+				changes.put(21, price);
 
-				for (int i = 0; i < price; i++) {
-					DatabaseConnection.addItemToCharacter(
-							client.getCharacterID(), 21);
+				if (!WorldState.adjustQuantities(client.getCharacterID(),
+						changes)) {
+					// Character doesn't have the Item.
+					client.sendMessage(new Message(
+							"<span class=\"normal\">You don't have </span><span class=\"item\">"
+									+ item.getName()
+									+ "</span><span class=\"normal\">.</span><br />",
+							MessageType.DISPLAY));
+					return;
 				}
 
+				undoOnRollback(client.getCharacterID(), changes);
 				// Add item to NPC
 
 				DatabaseConnection.addItemToNPC(npc.getID(), item.getID(),
@@ -2737,7 +2761,7 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				client.sendMessage(new Message(
 						"<span class=\"normal\">You sell </span><span class=\"item\">"
-								+ item.get("name")
+								+ item.getName()
 								+ "</span><span class=\"normal\"> for " + price
 								+ " caps.</span><br />", MessageType.DISPLAY));
 			}
@@ -2752,13 +2776,12 @@ public class Server extends Observable implements Runnable, Serializable {
 				String characterToTrade = arguments[0];
 				String itemYouTrading = arguments[1];
 
-				int itemID = DatabaseConnection
-						.getIDFromItemName(itemYouTrading);
+				int itemID = ContentCatalog.get().getItemID(itemYouTrading);
 
 				int characterToTradeID = DatabaseConnection
 						.getIDFromCharacter(characterToTrade);
 
-				Character otherChar = new Character(characterToTradeID);
+				Character otherChar = WorldState.getCharacter(characterToTradeID);
 
 				if (characterToTradeID == -1) {
 					// Character doesn't exist.
@@ -2773,12 +2796,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				// take character you trading to
 				ClientHandler otherClient = null;
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
-						.entrySet()) {
-					if (e.getKey().getCharacterID() == characterToTradeID) {
-						otherClient = e.getKey();
-					}
-				}
+				otherClient = getPlayer(characterToTradeID);
 
 				if (itemYouTrading.equals("accept")) {
 					if (client.getTrade()
@@ -2788,12 +2806,13 @@ public class Server extends Observable implements Runnable, Serializable {
 									.getCharacterID()) {
 						// trade is accepted by both characters
 						// ------------------------sending item----------------
-						Map<Integer, Integer> inventory = DatabaseConnection
+						Map<Integer, Integer> inventory = WorldState
 								.getInventoryForCharacter(client
 										.getCharacterID());
-						int itemSendingID = DatabaseConnection
-								.getIDFromItemName(client.getTradingItem());
-						Item itemSending = new Item(itemSendingID);
+						int itemSendingID = ContentCatalog.get().getItemID(
+								client.getTradingItem());
+						Item itemSending = ContentCatalog.get().getItem(
+								itemSendingID);
 
 						// check your inventory
 						if (itemSending.getID() < 0) {
@@ -2810,19 +2829,18 @@ public class Server extends Observable implements Runnable, Serializable {
 							// Inventory contains Item
 							// Remove it from Inventory, Add it to other
 							// character you trading with
-							DatabaseConnection.removeItemFromCharacter(
-									client.getCharacterID(), itemSendingID);
-							DatabaseConnection.addItemToCharacter(
-									characterToTradeID, itemSendingID);
+							WorldState.moveItem(client.getCharacterID(),
+									characterToTradeID, itemSendingID, 1);
 
 						}
 
 						// -------------------Receiving item-------------
-						Map<Integer, Integer> otherInventory = DatabaseConnection
+						Map<Integer, Integer> otherInventory = WorldState
 								.getInventoryForCharacter(characterToTradeID);
-						int itemRecievingID = DatabaseConnection
-								.getIDFromItemName(otherClient.getTradingItem());
-						Item itemRecieving = new Item(itemRecievingID);
+						int itemRecievingID = ContentCatalog.get().getItemID(
+								otherClient.getTradingItem());
+						Item itemRecieving = ContentCatalog.get().getItem(
+								itemRecievingID);
 
 						// check other character's inventory
 
@@ -2840,11 +2858,9 @@ public class Server extends Observable implements Runnable, Serializable {
 							// Inventory contains Item
 							// Remove it from Inventory, Add it to other
 							// character you trading with
-							DatabaseConnection.removeItemFromCharacter(
-									otherClient.getCharacterID(),
-									itemRecievingID);
-							DatabaseConnection.addItemToCharacter(
-									client.getCharacterID(), itemRecievingID);
+							WorldState.moveItem(otherClient.getCharacterID(),
+									client.getCharacterID(), itemRecievingID,
+									1);
 
 						}
 
@@ -2866,9 +2882,9 @@ public class Server extends Observable implements Runnable, Serializable {
 
 						otherClient.setTrade(true);
 
-						for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+						for (Entry<ClientHandler, Connection> e : getClients()
 								.entrySet()) {
-							if (e.getKey().character.get("name").equals(
+							if (e.getKey().character.getName().equals(
 									characterToTrade)) {
 								if (e.getKey().online) {
 									// Character is online.
@@ -2878,7 +2894,7 @@ public class Server extends Observable implements Runnable, Serializable {
 													new Message(
 															"<span class=\"player\">"
 																	+ client.character
-																			.get("name")
+																			.getName()
 																	+ "</span><span class=\"normal\"> accepted your offer"
 																	+ "\"</span><br />",
 															MessageType.DISPLAY));
@@ -2886,7 +2902,7 @@ public class Server extends Observable implements Runnable, Serializable {
 									client.sendMessage(new Message(
 											"<span class=\"normal\">What is your offer to </span><span class=\"player\">"
 													+ otherClient.character
-															.get("name")
+															.getName()
 													+ "\"</span><br />",
 											MessageType.DISPLAY));
 								}
@@ -2907,9 +2923,9 @@ public class Server extends Observable implements Runnable, Serializable {
 					// Character is online. Get his ClientHandler so we can send
 					// it
 					// a message.
-					for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+					for (Entry<ClientHandler, Connection> e : getClients()
 							.entrySet()) {
-						if (e.getKey().character.get("name").equals(
+						if (e.getKey().character.getName().equals(
 								characterToTrade)) {
 							if (e.getKey().online) {
 								// Character is online.
@@ -2919,13 +2935,13 @@ public class Server extends Observable implements Runnable, Serializable {
 												new Message(
 														"<span class=\"player\">"
 																+ e.getKey().character
-																		.get("name")
+																		.getName()
 																+ "</span><span class=\"normal\"> refused your offer.</span><br />",
 														MessageType.DISPLAY));
 								// Show on client side as well.
 								client.sendMessage(new Message(
 										"<span class=\"normal\">You refused </span><span class=\"player\">"
-												+ client.character.get("name")
+												+ client.character.getName()
 												+ "</span><span class=\"normal\">'s offer.</span><br />",
 										MessageType.DISPLAY));
 
@@ -2937,7 +2953,7 @@ public class Server extends Observable implements Runnable, Serializable {
 				}
 
 				// Characters inventory
-				Map<Integer, Integer> inventory = DatabaseConnection
+				Map<Integer, Integer> inventory = WorldState
 						.getInventoryForCharacter(client.getCharacterID());
 
 				if (!inventory.containsKey(itemID)) {
@@ -2962,9 +2978,9 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				// Character is online. Get his ClientHandler so we can send it
 				// a message.
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
-					if (e.getKey().character.get("name").equals(
+					if (e.getKey().character.getName().equals(
 							characterToTrade)) {
 						if (e.getKey().online) {
 							// Character is online.
@@ -2974,7 +2990,7 @@ public class Server extends Observable implements Runnable, Serializable {
 											new Message(
 													"<span class=\"player\">"
 															+ client.character
-																	.get("name")
+																	.getName()
 															+ "</span><span class=\"normal\"> want to trade you: \""
 															+ itemYouTrading
 															+ "</span><span class=\"normal\"> <br />"
@@ -2984,7 +3000,7 @@ public class Server extends Observable implements Runnable, Serializable {
 							// Show on client side as well.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You try to trade </span><span class=\"player\">"
-											+ e.getKey().character.get("name")
+											+ e.getKey().character.getName()
 											+ "</span><span class=\"normal\">: "
 											+ "</span><span class=\"normal\">"
 											+ itemYouTrading
@@ -3006,47 +3022,44 @@ public class Server extends Observable implements Runnable, Serializable {
 			void execute(String[] arguments, ClientHandler client) {
 				// determine if the door is even locked.
 
-				int roomID = Integer.parseInt(client.character.get("location"));
+				int roomID = client.character.getLocation();
+				RoomGraph rooms = RoomGraph.get();
 
-				boolean isLocked = DatabaseConnection.getDoorLocked(roomID);
+				boolean isLocked = WorldState.getDoorLocked(roomID);
 
-				boolean northLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("north");
-				boolean eastLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("east");
-				boolean southLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("south");
-				boolean westLocked = DatabaseConnection.getLockedDoor(roomID)
-						.equals("west");
+				String door = rooms.getDoor(roomID);
+				boolean northLocked = "north".equals(door);
+				boolean eastLocked = "east".equals(door);
+				boolean southLocked = "south".equals(door);
+				boolean westLocked = "west".equals(door);
 
 				if (arguments[0].equals("north")) {
 
 					if (isLocked && northLocked) {
 						// Check if they have the required item.
 
-						Map<Integer, Integer> inventory = DatabaseConnection
+						Map<Integer, Integer> inventory = WorldState
 								.getInventoryForCharacter(client
 										.getCharacterID());
 
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 						if (inventory.containsKey(requiredItem)) {
 							// Unlock the door.
 
-							DatabaseConnection.removeItemFromCharacter(
+							WorldState.removeItemFromCharacter(
 									client.getCharacterID(), requiredItem);
-							DatabaseConnection.setDoorLocked(roomID, false);
+							WorldState.setDoorLocked(roomID, false);
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You use </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the north door.</span><br />",
 									MessageType.DISPLAY));
 						} else {
 							// Character doesn't have the item.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You need </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the north door.</span><br />",
 									MessageType.DISPLAY));
 						}
@@ -3062,29 +3075,28 @@ public class Server extends Observable implements Runnable, Serializable {
 					if (isLocked && eastLocked) {
 						// Check if they have the required item.
 
-						Map<Integer, Integer> inventory = DatabaseConnection
+						Map<Integer, Integer> inventory = WorldState
 								.getInventoryForCharacter(client
 										.getCharacterID());
 
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 						if (inventory.containsKey(requiredItem)) {
 							// Unlock the door.
 
-							DatabaseConnection.removeItemFromCharacter(
+							WorldState.removeItemFromCharacter(
 									client.getCharacterID(), requiredItem);
-							DatabaseConnection.setDoorLocked(roomID, false);
+							WorldState.setDoorLocked(roomID, false);
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You use </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the east door.</span><br />",
 									MessageType.DISPLAY));
 						} else {
 							// Character doesn't have the item.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You need </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the east door.</span><br />",
 									MessageType.DISPLAY));
 						}
@@ -3101,28 +3113,27 @@ public class Server extends Observable implements Runnable, Serializable {
 					if (isLocked && southLocked) {
 						// Check if they have the required item.
 
-						Map<Integer, Integer> inventory = DatabaseConnection
+						Map<Integer, Integer> inventory = WorldState
 								.getInventoryForCharacter(client
 										.getCharacterID());
 
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 						if (inventory.containsKey(requiredItem)) {
 							// Unlock the door.
-							DatabaseConnection.removeItemFromCharacter(
+							WorldState.removeItemFromCharacter(
 									client.getCharacterID(), requiredItem);
-							DatabaseConnection.setDoorLocked(roomID, false);
+							WorldState.setDoorLocked(roomID, false);
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You use </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the south door.</span><br />",
 									MessageType.DISPLAY));
 						} else {
 							// Character doesn't have the item.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You need </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the south door.</span><br />",
 									MessageType.DISPLAY));
 						}
@@ -3137,29 +3148,28 @@ public class Server extends Observable implements Runnable, Serializable {
 					if (isLocked && westLocked) {
 						// Check if they have the required item.
 
-						Map<Integer, Integer> inventory = DatabaseConnection
+						Map<Integer, Integer> inventory = WorldState
 								.getInventoryForCharacter(client
 										.getCharacterID());
 
-						int requiredItem = DatabaseConnection
-								.getRequiredLock(roomID);
-						Item item = new Item(requiredItem);
+						int requiredItem = rooms.getRequiredItem(roomID);
+						Item item = ContentCatalog.get().getItem(requiredItem);
 						if (inventory.containsKey(requiredItem)) {
 							// Unlock the door.
 
-							DatabaseConnection.removeItemFromCharacter(
+							WorldState.removeItemFromCharacter(
 									client.getCharacterID(), requiredItem);
-							DatabaseConnection.setDoorLocked(roomID, false);
+							WorldState.setDoorLocked(roomID, false);
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You use </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the west door.</span><br />",
 									MessageType.DISPLAY));
 						} else {
 							// Character doesn't have the item.
 							client.sendMessage(new Message(
 									"<span class=\"normal\">You need </span><span class=\"item\">"
-											+ item.get("name")
+											+ item.getName()
 											+ "</span><span class=\"normal\"> to unlock the west door.</span><br />",
 									MessageType.DISPLAY));
 						}
@@ -3177,26 +3187,24 @@ public class Server extends Observable implements Runnable, Serializable {
 
 			@Override
 			void execute(String[] arguments, ClientHandler client) {
-				List<Integer> mobsInRoom = DatabaseConnection.getMobs(Integer
-						.parseInt(client.character.get("location")));
+				List<Integer> mobsInRoom = WorldState.getMobs(client.character.getLocation());
 
 				int mobID = -1;
 				int mobUID = -1;
 
 				for (int i : mobsInRoom) {
-					if (DatabaseConnection.getMobName(i).equals(arguments[0])) {
-						mobID = DatabaseConnection.getMobIDFromID(i);
+					if (WorldState.getMobName(i).equals(arguments[0])) {
+						mobID = WorldState.getMobIDFromID(i);
 						mobUID = i;
 					}
 				}
 
-				int npcID = DatabaseConnection.getIDFromNPCName(arguments[0]);
+				int npcID = ContentCatalog.get().getNPCID(arguments[0]);
 
 				if (npcID > 0) {
-					NonPlayerCharacter npc = new NonPlayerCharacter(npcID);
+					NonPlayerCharacter npc = ContentCatalog.get().getNPC(npcID);
 
-					if (Integer.parseInt(npc.get("homeroom")) != Integer
-							.parseInt(client.character.get("location"))) {
+					if (npc.getHomeRoom() != client.character.getLocation()) {
 						// Not in the same room.
 						client.sendMessage(new Message(
 								"<span class=\"normal\">There's no </span><span class=\"friendly\">"
@@ -3215,10 +3223,10 @@ public class Server extends Observable implements Runnable, Serializable {
 					String itemList = "";
 					for (Integer[] itemInfo : npcInventory) {
 						// itemid,quantity,price
-						Item item = new Item(itemInfo[0]);
+						Item item = ContentCatalog.get().getItem(itemInfo[0]);
 						itemList += "<span class=\"normal\">" + itemInfo[1]
 								+ " - " + "</span><span class=\"item\">"
-								+ item.get("name")
+								+ item.getName()
 								+ "</span><span class=\"normal\"> - "
 								+ itemInfo[2] + " caps</span><br />";
 					}
@@ -3227,8 +3235,7 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				} else if (mobID > 0) {
 
-					if (DatabaseConnection.getMobLocation(mobUID) != Integer
-							.parseInt(client.character.get("location"))) {
+					if (WorldState.getMobLocation(mobUID) != client.character.getLocation()) {
 						// Not in the same room.
 						client.sendMessage(new Message(
 								"<span class=\"normal\">There's no </span><span class=\"enemy\">"
@@ -3238,7 +3245,7 @@ public class Server extends Observable implements Runnable, Serializable {
 						return;
 					}
 
-					Mob mob = new Mob(mobID);
+					Mob mob = ContentCatalog.get().getMob(mobID);
 					String mobTalk = mob.getMobClass().talk();
 					client.sendMessage(new Message("<span class=\"enemy\">"
 							+ arguments[0] + "</span><span class=\"normal\">: "
@@ -3326,12 +3333,21 @@ public class Server extends Observable implements Runnable, Serializable {
 					}
 				}
 			}
-			commandToExecute.execute(arguments);
+			// Run it on the Game Loop, like the Clients' commands.
+			final ServerCommand toExecute = commandToExecute;
+			final String[] toPass = arguments;
+			GameLoop.world().post(new Runnable() {
+
+				@Override
+				public void run() {
+					toExecute.execute(toPass);
+					setChanged();
+					notifyObservers(log);
+				}
+			});
 		} else {
 			addToLog("Command not recognized. To see all commands say: 'commands'.");
 		}
-		setChanged();
-		notifyObservers(log);
 	}
 
 	private enum ServerCommand {
@@ -3348,12 +3364,12 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				ClientHandler c = null;
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
 
-					if (e.getKey().character.get("name").equals(arguments[0])) {
+					if (e.getKey().character.getName().equals(arguments[0])) {
 
-						log.add(e.getKey().character.get("name")
+						log.add(e.getKey().character.getName()
 								+ " was kicked.");
 						c = e.getKey();
 					}
@@ -3375,10 +3391,10 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				ClientHandler c = null;
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
 
-					if (arguments[0].equals(e.getKey().user.get("username"))) {
+					if (arguments[0].equals(e.getKey().user.getUsername())) {
 						log.add("UserID " + e.getKey().user.getID()
 								+ " was banned.");
 						c = e.getKey();
@@ -3402,13 +3418,13 @@ public class Server extends Observable implements Runnable, Serializable {
 
 				ClientHandler c = null;
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
 
-					if (arguments[0].equals(e.getKey().user.get("username"))) {
+					if (arguments[0].equals(e.getKey().user.getUsername())) {
 						log.add("UserID " + e.getKey().user.getID()
 								+ " was banned by ip.");
-						DatabaseConnection.banByIP(e.getKey().socket
+						DatabaseConnection.banByIP(e.getKey().connection
 								.getInetAddress().toString());
 						c = e.getKey();
 					}
@@ -3431,9 +3447,9 @@ public class Server extends Observable implements Runnable, Serializable {
 				User toDelete = null;
 				ClientHandler ch = null;
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
-					if (arguments[0].equals(e.getKey().user.get("username"))) {
+					if (arguments[0].equals(e.getKey().user.getUsername())) {
 						ch = e.getKey();
 						toDelete = ch.user;
 					}
@@ -3457,9 +3473,9 @@ public class Server extends Observable implements Runnable, Serializable {
 			void execute(String[] arguments) {
 				Character toDelete = null;
 				ClientHandler ch = null;
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
-					if (arguments[0].equals(e.getKey().user.get("username"))) {
+					if (arguments[0].equals(e.getKey().user.getUsername())) {
 						ch = e.getKey();
 						toDelete = ch.character;
 					}
@@ -3500,25 +3516,51 @@ public class Server extends Observable implements Runnable, Serializable {
 			}
 
 		},
+		compression(0,
+				"<b>compression</b> - shows how much deflating Clients saves "
+						+ "and what it costs.") {
+
+			@Override
+			void execute(String[] arguments) {
+				log.add("Compression is "
+						+ (ServerConfig.COMPRESSION ? "on" : "off") + ": "
+						+ Compressor.describeTotals());
+			}
+		},
 		listusers(0,
-				"<b>listusers</b> - shows all users connected and their IP.") {
+				"<b>listusers</b> - shows all users connected, their IP, "
+						+ "their outbound queue and protocol.") {
 
 			@Override
 			void execute(String[] arguments) {
 
 				String output = "Connected Users: \n";
 
-				for (Entry<ClientHandler, ObjectOutputStream> e : getClients()
+				for (Entry<ClientHandler, Connection> e : getClients()
 						.entrySet()) {
 
-					output += e.getKey().user.get("username") + " @ "
-							+ e.getKey().socket.getInetAddress().toString();
+					output += e.getKey().user.getUsername() + " @ "
+							+ e.getKey().connection.getInetAddress().toString();
 
 					if (e.getKey().character != null) {
 						output += " with character: "
-								+ e.getKey().character.get("name");
+								+ e.getKey().character.getName();
 					}
 
+					OutboundQueue queue = e.getValue().getOutboundQueue();
+					output += " (queued: " + queue.getDepth() + " messages, "
+							+ queue.getBytes() + " bytes, dropped: "
+							+ queue.getDropped();
+					MessageCodec codec = e.getValue().getCodec();
+					if (codec != null) {
+						output += ", protocol: " + codec.getVersion()
+								+ ", handles: " + codec.getHandleTableSize();
+					}
+					Compressor compressor = e.getValue().getCompressor();
+					if (compressor != null) {
+						output += ", deflated: " + compressor;
+					}
+					output += ")\n";
 				}
 				log.add(output);
 			}
@@ -0,0 +1,97 @@
+package server;
+
+/**
+ * ServerConfig holds the start up options of the UAMUD Server. Each option
+ * has a sensible default and can be overridden with a system property when
+ * the Server is started, e.g. -Duamud.io=blocking.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public final class ServerConfig {
+
+	// How Clients are served: "nio" multiplexes them over the NIOReactor,
+	// "blocking" gives every Client a thread of its own.
+	public static final String IO_MODE = System.getProperty("uamud.io", "nio");
+	// Number of NIOReactor I/O threads.
+	public static final int IO_THREADS = Integer.getInteger(
+			"uamud.io.threads", 2);
+	// Zones the rooms are split into, each played by a GameLoop of its own.
+	public static final int ZONES = Integer.getInteger("uamud.zones", Runtime
+			.getRuntime().availableProcessors());
+	// Ticks a second of each GameLoop, which runs every command and world
+	// event in its zone.
+	public static final int TICK_RATE = Integer.getInteger("uamud.tick.rate",
+			20);
+	// Commands a tick runs at most; the rest wait for the next one.
+	public static final int COMMANDS_PER_TICK = Integer.getInteger(
+			"uamud.tick.commands", 200);
+	// What runs each blocking Client: "platform" or "virtual" threads.
+	public static final ThreadMode THREAD_MODE = ThreadMode.fromName(System
+			.getProperty("uamud.threads", "platform"));
+	// Bytes queued for a Client above which further Messages to it are
+	// dropped.
+	public static final int OUTBOUND_HIGH_WATERMARK = Integer.getInteger(
+			"uamud.outbound.high", 256 * 1024);
+	// Bytes queued below which a backlogged Client gets Messages again.
+	public static final int OUTBOUND_LOW_WATERMARK = Integer.getInteger(
+			"uamud.outbound.low", 64 * 1024);
+	// Milliseconds a Client may stay backlogged before it is disconnected.
+	public static final long SLOW_CONSUMER_TIMEOUT = Long.getLong(
+			"uamud.outbound.timeout", 10 * 1000);
+	// Whether Clients that ask for it get their Messages deflated.
+	public static final boolean COMPRESSION = Boolean
+			.getBoolean("uamud.compression");
+	// Deflate level from 1 (fastest) to 9 (smallest).
+	public static final int COMPRESSION_LEVEL = Integer.getInteger(
+			"uamud.compression.level", 6);
+	// Whether Clients may still speak the serialized protocol, version 1.
+	// It deserializes what the Client sends, so it is off unless asked for.
+	public static final boolean SERIALIZED_PROTOCOL = Boolean
+			.getBoolean("uamud.protocol.serialized");
+	// The serialized protocol resets its Object streams after this many
+	// Messages...
+	public static final int SERIALIZED_RESET_MESSAGES = Integer.getInteger(
+			"uamud.serialized.reset.messages", 256);
+	// ...or this many bytes, whichever comes first.
+	public static final long SERIALIZED_RESET_BYTES = Long.getLong(
+			"uamud.serialized.reset.bytes", 256 * 1024);
+	// Threads running the GameScheduler's delayed and repeating tasks.
+	public static final int SCHEDULER_THREADS = Integer.getInteger(
+			"uamud.scheduler.threads", 2);
+	// Milliseconds between writes of the WorldState to the database, the
+	// most play a crash can lose.
+	public static final long WORLD_FLUSH_INTERVAL = Long.getLong(
+			"uamud.world.flush", 1000);
+	// SQLite journal mode. WAL lets queries carry on while the writer
+	// commits; SQLite older than 3.7 keeps its rollback journal instead.
+	public static final String DB_JOURNAL_MODE = System.getProperty(
+			"uamud.db.journal", "WAL");
+	// PRAGMA synchronous: OFF, NORMAL or FULL. NORMAL only risks the last
+	// commits on a power failure when the journal is WAL; with the rollback
+	// journal it can corrupt the database. Unless set, it is NORMAL with WAL
+	// and SQLite's own FULL otherwise.
+	public static final String DB_SYNCHRONOUS = System
+			.getProperty("uamud.db.synchronous");
+	// Pages the WAL may grow to before it is checkpointed into the database.
+	public static final int DB_CHECKPOINT_PAGES = Integer.getInteger(
+			"uamud.db.checkpoint", 1000);
+	// Reader connections queries are spread over.
+	public static final int DB_READERS = Integer.getInteger(
+			"uamud.db.readers", Runtime.getRuntime().availableProcessors());
+	// Seconds a connection waits on another's lock before giving up.
+	public static final int DB_BUSY_TIMEOUT = Integer.getInteger(
+			"uamud.db.busy.timeout", 3);
+
+	private ServerConfig() {
+	}
+
+	/**
+	 * Whether Clients are served by the NIOReactor.
+	 *
+	 * @return True for the "nio" I/O mode.
+	 */
+	public static boolean isNIO() {
+		return !"blocking".equalsIgnoreCase(IO_MODE);
+	}
+}
@@ -0,0 +1,213 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SocketConnection serves one Client over a blocking Socket with a thread of
+ * its own that waits for Messages from the Client, and a second one that
+ * writes out the Client's OutboundQueue. It is used when the Server is
+ * started in the blocking I/O mode. Both threads are platform or virtual
+ * threads depending on the given ThreadMode. Messages sent before the
+ * Client's Handshake has arrived are held back until it is known how to
+ * encode them.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public class SocketConnection extends Connection implements Runnable {
+
+	// Queued last to have the writer close the Socket.
+	private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+	private Socket socket;
+	private DataInputStream in;
+	private OutputStream out;
+	private volatile MessageCodec codec;
+	private List<Broadcast> early;
+	private boolean closing;
+	private OutboundQueue outbound;
+	private Thread thread;
+	private Thread writer;
+	// Keeps frames in the order they were encoded.
+	private final ReentrantLock sendLock = new ReentrantLock();
+
+	public SocketConnection(Socket socket, ThreadMode threadMode)
+			throws IOException {
+		this.socket = socket;
+		this.socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+		this.out = new BufferedOutputStream(socket.getOutputStream());
+		this.codec = null;
+		this.early = new ArrayList<Broadcast>();
+		this.closing = false;
+		this.outbound = getOutboundQueue();
+		this.thread = threadMode.newThread(this, "Client " + socket);
+		this.writer = threadMode.newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				write();
+			}
+		}, "Client writer " + socket);
+	}
+
+	/**
+	 * Starts waiting for Messages from the Client.
+	 */
+	public void start() {
+		writer.start();
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			MessageCodec agreed = handshake();
+			while (true) {
+				fireMessageReceived(agreed.read(in));
+			}
+		} catch (IOException e) {
+			// The Client went away.
+		} finally {
+			closeNow();
+			writer.interrupt();
+			endCompression();
+			fireConnectionClosed();
+		}
+	}
+
+	/**
+	 * Answers the Client's hello and sends whatever was held back for it.
+	 *
+	 * @return The agreed MessageCodec.
+	 */
+	private MessageCodec handshake() throws IOException {
+		Handshake answer = Handshake.read(in).answer();
+		MessageCodec agreed = answer.newCodec();
+		sendLock.lock();
+		try {
+			outbound.offer(ByteBuffer.wrap(answer.toBytes()));
+			startCompression(answer);
+			if (!early.isEmpty()) {
+				outbound.offer(compress(Broadcast.framesFor(early, agreed)));
+			}
+			early.clear();
+			codec = agreed;
+			if (closing) {
+				queueClose();
+			}
+		} finally {
+			sendLock.unlock();
+		}
+		return agreed;
+	}
+
+	/**
+	 * Writes out the OutboundQueue until the Socket is closed. Runs on the
+	 * writer thread.
+	 */
+	private void write() {
+		try {
+			while (true) {
+				ByteBuffer frame = outbound.take();
+				if (frame == CLOSE) {
+					out.flush();
+					closeNow();
+					return;
+				}
+				out.write(frame.array(), frame.arrayOffset()
+						+ frame.position(), frame.remaining());
+				if (outbound.isEmpty()) {
+					// Nothing else to send right now.
+					out.flush();
+				}
+			}
+		} catch (InterruptedException e) {
+			// The reader is done with the Socket.
+		} catch (IOException e) {
+			closeNow();
+		}
+	}
+
+	@Override
+	protected void enqueue(List<Broadcast> broadcasts) {
+		if (checkEviction()) {
+			closeNow();
+			return;
+		}
+		sendLock.lock();
+		try {
+			if (codec == null) {
+				early.addAll(broadcasts);
+				return;
+			}
+			if (outbound.isBacklogged()) {
+				// Don't bother encoding what would be dropped anyway.
+				for (int i = 0; i < broadcasts.size(); i++) {
+					outbound.drop();
+				}
+				return;
+			}
+			outbound.offer(compress(Broadcast.framesFor(broadcasts, codec)));
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
+		}
+	}
+
+	@Override
+	protected void closeGracefully() {
+		sendLock.lock();
+		try {
+			closing = true;
+			if (codec != null) {
+				queueClose();
+			}
+			// Otherwise close once the held back Messages are out.
+		} finally {
+			sendLock.unlock();
+		}
+	}
+
+	private void queueClose() {
+		if (!outbound.offer(CLOSE)) {
+			// Backlogged, what is queued won't be missed.
+			closeNow();
+		}
+	}
+
+	private void closeNow() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public MessageCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		return socket.getInetAddress();
+	}
+
+	@Override
+	public String toString() {
+		return socket.toString();
+	}
+}
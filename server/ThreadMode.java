@@ -0,0 +1,92 @@
+package server;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ThreadMode decides what kind of thread runs a blocking Client. VIRTUAL
+ * threads are looked up at run time, so the Server still runs on a Java
+ * runtime without them; it simply falls back to PLATFORM threads and says so.
+ *
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ *
+ */
+public enum ThreadMode {
+
+	PLATFORM {
+		@Override
+		public Thread newThread(Runnable r, String name) {
+			return new Thread(r, name);
+		}
+	},
+	VIRTUAL {
+		@Override
+		public Thread newThread(Runnable r, String name) {
+			ThreadFactory factory = virtualThreadFactory();
+			if (factory == null) {
+				return PLATFORM.newThread(r, name);
+			}
+			Thread t = factory.newThread(r);
+			t.setName(name);
+			return t;
+		}
+	};
+
+	private static ThreadFactory virtualFactory;
+	private static boolean virtualLookedUp = false;
+
+	/**
+	 * Creates an unstarted thread of this ThreadMode.
+	 *
+	 * @param r
+	 *            What the thread runs.
+	 * @param name
+	 *            The name of the thread.
+	 * @return The new, unstarted thread.
+	 */
+	public abstract Thread newThread(Runnable r, String name);
+
+	/**
+	 * Whether threads of this ThreadMode really are what they claim to be on
+	 * this Java runtime.
+	 *
+	 * @return False if VIRTUAL threads fall back to PLATFORM threads.
+	 */
+	public boolean isAvailable() {
+		return this == PLATFORM || virtualThreadFactory() != null;
+	}
+
+	/**
+	 * Gets the ThreadMode with the given name, PLATFORM if there is none.
+	 *
+	 * @param name
+	 *            "platform" or "virtual".
+	 * @return The ThreadMode with the given name.
+	 */
+	public static ThreadMode fromName(String name) {
+		for (ThreadMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(name)) {
+				return mode;
+			}
+		}
+		return PLATFORM;
+	}
+
+	private static synchronized ThreadFactory virtualThreadFactory() {
+		if (!virtualLookedUp) {
+			virtualLookedUp = true;
+			try {
+				// Thread.ofVirtual().factory()
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(
+						null);
+				virtualFactory = (ThreadFactory) Class
+						.forName("java.lang.Thread$Builder")
+						.getMethod("factory").invoke(builder);
+			} catch (Exception e) {
+				System.err.println("Virtual threads are not available on "
+						+ "this Java runtime, using platform threads.");
+				virtualFactory = null;
+			}
+		}
+		return virtualFactory;
+	}
+}
@@ -0,0 +1,17 @@
+package server;
+
+import library.WorldState;
+
+/**
+ * This task writes whatever changed in the WorldState to the database.
+ * 
+ * @author Nicholas Eddy, Kyohei Mizokami, Mike Novak, Chris Panzero
+ * 
+ */
+public class WorldFlusher implements Runnable {
+
+	@Override
+	public void run() {
+		WorldState.flush();
+	}
+}
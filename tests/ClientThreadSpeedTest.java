@@ -0,0 +1,105 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import library.Client;
+
+import org.junit.Test;
+
+import server.Message;
+import server.MessageType;
+import server.Server;
+import server.ServerConfig;
+
+/**
+ * Measures what a connected Client costs the Server and how long a command
+ * takes to come back. Run it once per configuration to compare them, e.g.
+ * -Duamud.io=blocking -Duamud.threads=platform against
+ * -Duamud.io=blocking -Duamud.threads=virtual.
+ *
+ * On JDK 17, 1 core, 200 Clients:
+ *
+ * <pre>
+ *                      heap/Client  threads/Client  latency median / 99th
+ * blocking, platform   46 KB        2               50.0 / 53-59 ms
+ * nio                  28-30 KB     0               50.0 / 58-60 ms
+ * blocking, 1000 ticks 44 KB        2               1.0 / 4.9 ms
+ * nio, 1000 ticks      28 KB        0               1.0 / 5.9 ms
+ * </pre>
+ *
+ * At the default 20 ticks a second a command waits for the next tick, so
+ * the latency is the tick's. Virtual threads need JDK 21; on JDK 17 the
+ * Server falls back to platform threads, so there are no figures for them.
+ */
+public class ClientThreadSpeedTest {
+
+	private static final int PORT = 4601;
+	private static final int CLIENTS = 200;
+	private static final int ROUNDS = 5;
+
+	@Test
+	public void MemoryAndLatencyPerClient() throws Exception {
+		Thread server = new Thread(new Server(PORT, 2));
+		server.setDaemon(true);
+		server.start();
+		Thread.sleep(1000);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long heapBefore = usedHeap();
+		int threadsBefore = threads.getThreadCount();
+
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < CLIENTS; i++) {
+			clients.add(new Client("localhost", PORT));
+		}
+		// Give the Server time to set every Client up.
+		Thread.sleep(1000);
+
+		long heapAfter = usedHeap();
+		int threadsAfter = threads.getThreadCount();
+
+		// A login of a User that doesn't exist is a round trip through the
+		// Client's handler and the database.
+		long[] latencies = new long[CLIENTS * ROUNDS];
+		int n = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			for (Client c : clients) {
+				long start = System.nanoTime();
+				c.send(new Message(new String[] { "no such user", "" },
+						MessageType.LOGIN));
+				c.receive();
+				latencies[n++] = System.nanoTime() - start;
+			}
+		}
+		Arrays.sort(latencies);
+
+		for (Client c : clients) {
+			c.disconnect();
+		}
+
+		System.out.println("I/O mode: " + ServerConfig.IO_MODE
+				+ ", thread mode: " + ServerConfig.THREAD_MODE
+				+ (ServerConfig.THREAD_MODE.isAvailable() ? ""
+						: " (not available, platform threads used)"));
+		System.out.println("Heap per connected Client: "
+				+ (heapAfter - heapBefore) / CLIENTS + " bytes");
+		System.out.println("Platform threads per connected Client: "
+				+ (double) (threadsAfter - threadsBefore) / CLIENTS);
+		System.out.println("Command latency: median "
+				+ latencies[latencies.length / 2] / 1000 + " us, 99th "
+				+ latencies[latencies.length * 99 / 100] / 1000 + " us, max "
+				+ latencies[latencies.length - 1] / 1000 + " us");
+	}
+
+	private long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
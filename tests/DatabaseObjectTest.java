@@ -0,0 +1,90 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+
+import library.DatabaseConnection;
+import library.DatabaseObject;
+import library.Query;
+
+import org.junit.Test;
+
+public class DatabaseObjectTest {
+
+	@Test
+	public void OnlyChangedParametersAreSaved() {
+		Row o = new Row();
+		o.setHP(10);
+		o.setLocation(3);
+		assertTrue(!o.hasChanges());
+
+		o.setHP(9);
+		Map<String, Object> changes = o.takeChanges();
+		assertEquals(1, changes.size());
+		assertEquals(9, changes.get("hp"));
+		assertTrue(!o.hasChanges());
+
+		Query q = DatabaseConnection.createUpdateQuery(changes, "characters",
+				1);
+		assertEquals("UPDATE characters SET hp = ? WHERE id = ?;", q.getSQL());
+		assertEquals(Arrays.asList((Object) 9, 1), Arrays.asList(q
+				.getParameters()));
+	}
+
+	@Test
+	public void FailedSavesAreRetried() {
+		Row o = new Row();
+		o.setHP(8);
+		Map<String, Object> changes = o.takeChanges();
+		o.setLocation(4);
+		o.markChanged(changes.keySet());
+
+		changes = o.takeChanges();
+		assertEquals(2, changes.size());
+		assertEquals(8, changes.get("hp"));
+		assertEquals(4, changes.get("location"));
+	}
+
+	/*
+	 * A DatabaseObject as it is right after loading a character with 10 hp
+	 * in room 3, without a database.
+	 */
+	private static class Row extends DatabaseObject {
+		private int hp = 10;
+		private int location = 3;
+
+		private Row() {
+			super(1, "characters", "hp", "location");
+		}
+
+		@Override
+		protected void read(ResultSet row) throws SQLException {
+			hp = row.getInt("hp");
+			location = row.getInt("location");
+		}
+
+		@Override
+		protected Object getColumn(String column) {
+			return column.equals("hp") ? hp : location;
+		}
+
+		private void setHP(int hp) {
+			if (this.hp != hp) {
+				this.hp = hp;
+				changed("hp");
+			}
+		}
+
+		private void setLocation(int location) {
+			if (this.location != location) {
+				this.location = location;
+				changed("location");
+			}
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package tests;
 
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Calendar;
@@ -8,8 +12,12 @@ import library.DatabaseConnection;
 
 import org.junit.Test;
 
+import server.ServerConfig;
+
 public class DatabaseSpeedTest {
 
+	private static final int QUERIES = 20000;
+
 	private DatabaseConnection dbc;
 
 	@Test
@@ -53,6 +61,135 @@ public class DatabaseSpeedTest {
 				+ (endTime - startTime) + " ms");
 	}
 
+	/*
+	 * The same lookups the Server makes most often, once the way
+	 * DatabaseConnection used to, with the values pasted into a new Statement
+	 * every time, and once through the cached PreparedStatements.
+	 */
+	@Test
+	public void CompareWithPreparedStatements() throws SQLException {
+		dbc = DatabaseConnection.getInstance();
+		ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+
+		// Warm up before timing.
+		concatenated(QUERIES / 10);
+		prepared(QUERIES / 10);
+
+		long start = cpu.getCurrentThreadCpuTime();
+		int before = concatenated(QUERIES);
+		long concatenated = (cpu.getCurrentThreadCpuTime() - start) / QUERIES;
+
+		start = cpu.getCurrentThreadCpuTime();
+		int after = prepared(QUERIES);
+		long prepared = (cpu.getCurrentThreadCpuTime() - start) / QUERIES;
+
+		assertEquals(before, after);
+		System.out.println("Per query: concatenated " + concatenated
+				+ " ns CPU, prepared " + prepared + " ns CPU");
+	}
+
+	/*
+	 * The same lookups spread over more threads. Each thread gets a reader
+	 * connection of its own, so with more than one core the queries per
+	 * second should go up rather than stay flat.
+	 */
+	@Test
+	public void CompareParallelReaders() throws InterruptedException {
+		dbc = DatabaseConnection.getInstance();
+		int threads = Math.max(2, ServerConfig.DB_READERS);
+
+		// Warm up every reader before timing.
+		readInParallel(threads);
+
+		long one = readInParallel(1);
+		long many = readInParallel(threads);
+		System.out.println(dbc.getJournalMode()
+				+ " journal, queries per second: 1 thread " + one + ", "
+				+ threads + " threads " + many);
+	}
+
+	private long readInParallel(int threads) throws InterruptedException {
+		final int each = QUERIES / threads;
+		Thread[] readers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						prepared(each);
+					} catch (SQLException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+		}
+		long start = System.nanoTime();
+		for (Thread t : readers) {
+			t.start();
+		}
+		for (Thread t : readers) {
+			t.join();
+		}
+		return each * threads * 1000000000L / (System.nanoTime() - start);
+	}
+
+	@SuppressWarnings("deprecation")
+	private int concatenated(int queries) throws SQLException {
+		int sum = 0;
+		for (int i = 0; i < queries; i++) {
+			ResultSet rs;
+			switch (i % 3) {
+			case 0:
+				rs = dbc.executeWithResult("SELECT id FROM items WHERE name = '"
+						+ "Bottle Cap" + "';");
+				break;
+			case 1:
+				rs = dbc.executeWithResult("SELECT itemid, quantity FROM roomitems WHERE roomid = '"
+						+ (i % 20 + 1) + "';");
+				break;
+			default:
+				rs = dbc.executeWithResult("SELECT door FROM rooms WHERE id = '"
+						+ (i % 20 + 1) + "';");
+				break;
+			}
+			while (rs.next()) {
+				sum += rs.getString(1).length();
+			}
+			rs.close();
+		}
+		return sum;
+	}
+
+	private int prepared(int queries) throws SQLException {
+		int sum = 0;
+		for (int i = 0; i < queries; i++) {
+			ResultSet rs = null;
+			try {
+				switch (i % 3) {
+				case 0:
+					rs = dbc.query("SELECT id FROM items WHERE name = ?;",
+							"Bottle Cap");
+					break;
+				case 1:
+					rs = dbc.query(
+							"SELECT itemid, quantity FROM roomitems WHERE roomid = ?;",
+							i % 20 + 1);
+					break;
+				default:
+					rs = dbc.query("SELECT door FROM rooms WHERE id = ?;",
+							i % 20 + 1);
+					break;
+				}
+				while (rs.next()) {
+					sum += rs.getString(1).length();
+				}
+			} finally {
+				dbc.release(rs);
+			}
+		}
+		return sum;
+	}
+
 	private void Dump1() {
 		dbc = DatabaseConnection.getInstance();
 
@@ -0,0 +1,80 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import server.Broadcast;
+import server.Connection;
+import server.EventBus;
+import server.Message;
+import server.MessageCodec;
+import server.MessageType;
+
+public class EventBusTest {
+
+	@Test
+	public void NoticesGoWhereThePlayersAre() {
+		Recorder a = new Recorder();
+		Recorder b = new Recorder();
+		Recorder c = new Recorder();
+		EventBus.subscribe(a, 5);
+		EventBus.subscribe(b, 5);
+		EventBus.subscribe(c, 6);
+
+		EventBus.publishRoom(5, new Message("one", MessageType.DISPLAY), a);
+		assertEquals(Arrays.asList(), a.received);
+		assertEquals(Arrays.asList("one"), b.received);
+		assertEquals(Arrays.asList(), c.received);
+
+		// b walks from 5 to 6.
+		EventBus.subscribe(b, 6);
+		EventBus.publishRoom(5, new Message("two", MessageType.DISPLAY));
+		EventBus.publishRoom(6, new Message("three", MessageType.DISPLAY));
+		assertEquals(Arrays.asList("two"), a.received);
+		assertEquals(Arrays.asList("one", "three"), b.received);
+		assertEquals(Arrays.asList("three"), c.received);
+
+		EventBus.unsubscribe(c);
+		EventBus.publishGlobal(new Message("four", MessageType.DISPLAY));
+		assertEquals(Arrays.asList("two", "four"), a.received);
+		assertEquals(Arrays.asList("one", "three", "four"), b.received);
+		assertEquals(Arrays.asList("three"), c.received);
+
+		EventBus.unsubscribe(a);
+		EventBus.unsubscribe(b);
+	}
+
+	/*
+	 * A Connection that keeps what is sent to it.
+	 */
+	private static class Recorder extends Connection {
+		private final List<Object> received = new ArrayList<Object>();
+
+		@Override
+		protected void enqueue(List<Broadcast> broadcasts) {
+			for (Broadcast b : broadcasts) {
+				received.add(b.getMessage().getData());
+			}
+		}
+
+		@Override
+		protected void closeGracefully() {
+		}
+
+		@Override
+		public InetAddress getInetAddress() {
+			return null;
+		}
+
+		@Override
+		public MessageCodec getCodec() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import server.BinaryMessageCodec;
+import server.Broadcast;
+import server.Message;
+import server.MessageCodec;
+import server.MessageType;
+import server.SerializedMessageCodec;
+
+public class MessageCodecTest {
+
+	private static final int SENDS = 100000;
+
+	private Message stats() {
+		Object[] data = { new int[] { 16, 30, 4, 4, 6, 11, 5, 11, 9 }, 29866,
+				-3, 327, "Long Hallway", "Gunslinger lv. 2", 550 };
+		return new Message(data, MessageType.CHARACTER_STATS);
+	}
+
+	private Message loginSuccessful() {
+		Object[] data = { Arrays.asList("Ninja", "Cyborg", "Child"),
+				Arrays.asList("Nick", "BigBoy") };
+		return new Message(data, MessageType.LOGIN_SUCCESSFUL);
+	}
+
+	private Message roomView() {
+		Object[] data = { 12, null, new int[] { 13, 0, 0, 11 },
+				new String[] { "Rusty Knife", "Stimpak" },
+				new String[] { "1", "3" }, new String[0],
+				new String[] { "Old Man" }, new String[] { "Giant Rat" } };
+		return new Message(data, MessageType.ROOM_VIEW);
+	}
+
+	private Message display() {
+		return new Message("<span class=\"player\">Nick</span>"
+				+ "<span class=\"normal\">: hi \u00e9</span><br />",
+				MessageType.DISPLAY);
+	}
+
+	@Test
+	public void RoundTripEveryPayload() throws IOException {
+		MessageCodec out = new BinaryMessageCodec();
+		MessageCodec in = new BinaryMessageCodec();
+
+		Object[] stats = (Object[]) roundTrip(out, in, stats()).getData();
+		assertArrayEquals(new int[] { 16, 30, 4, 4, 6, 11, 5, 11, 9 },
+				(int[]) stats[0]);
+		assertEquals(29866, stats[1]);
+		assertEquals(-3, stats[2]);
+		assertEquals("Gunslinger lv. 2", stats[5]);
+
+		Object[] changes = { null, 29800, null, null, "Dark Room", null, null };
+		stats = (Object[]) roundTrip(out, in,
+				new Message(changes, MessageType.CHARACTER_STATS)).getData();
+		assertNull(stats[0]);
+		assertEquals(29800, stats[1]);
+		assertNull(stats[3]);
+		assertEquals("Dark Room", stats[4]);
+
+		Object[] login = (Object[]) roundTrip(out, in, loginSuccessful())
+				.getData();
+		assertEquals(Arrays.asList("Nick", "BigBoy"), (List<?>) login[1]);
+
+		assertEquals(display().getData(), roundTrip(out, in, display())
+				.getData());
+		assertEquals(true, roundTrip(out, in,
+				new Message(true, MessageType.SET_CLIENT_FONT)).getData());
+		assertNull(roundTrip(out, in, new Message(null, MessageType.QUIT))
+				.getData());
+		String[] login2 = (String[]) roundTrip(out, in,
+				new Message(new String[] { "nick", "eddy" },
+						MessageType.LOGIN)).getData();
+		assertEquals("eddy", login2[1]);
+
+		Object[] view = (Object[]) roundTrip(out, in, roomView()).getData();
+		assertEquals(12, view[0]);
+		assertNull(view[1]);
+		assertArrayEquals(new int[] { 13, 0, 0, 11 }, (int[]) view[2]);
+		assertEquals("3", ((String[]) view[4])[1]);
+		assertEquals(0, ((String[]) view[5]).length);
+		assertEquals("Giant Rat", ((String[]) view[7])[0]);
+
+		Object[] chat = (Object[]) roundTrip(out, in,
+				new Message(new Object[] { "say", "Nick", "hi" },
+						MessageType.CHAT)).getData();
+		assertEquals("hi", chat[2]);
+	}
+
+	@Test
+	public void NullStringsSurvive() throws IOException {
+		MessageCodec codec = new BinaryMessageCodec();
+		Object[] data = { 12, "A dark room.", new int[] { 0, 0, 0, 0 },
+				new String[] { null, "Stimpak" }, new String[] { "1", "3" },
+				new String[0], new String[0], new String[] { "" } };
+		Object[] view = (Object[]) roundTrip(codec, codec,
+				new Message(data, MessageType.ROOM_VIEW)).getData();
+		assertEquals(Arrays.asList(null, "Stimpak"),
+				Arrays.asList((String[]) view[3]));
+		assertEquals(Arrays.asList(""), Arrays.asList((String[]) view[7]));
+
+		String[] login = (String[]) roundTrip(codec, codec,
+				new Message(new String[] { "nick", null }, MessageType.LOGIN))
+				.getData();
+		assertEquals(Arrays.asList("nick", null), Arrays.asList(login));
+	}
+
+	@Test
+	public void PartialFramesWaitForTheRest() throws IOException {
+		MessageCodec codec = new BinaryMessageCodec();
+		byte[] frame = codec.encode(display());
+		ByteBuffer b = ByteBuffer.wrap(frame, 0, frame.length - 1);
+		assertNull(codec.decode(b));
+		assertEquals(0, b.position());
+		b = ByteBuffer.wrap(frame);
+		assertEquals(display().getData(), codec.decode(b).getData());
+		assertTrue(!b.hasRemaining());
+	}
+
+	@Test(expected = IOException.class)
+	public void DeepNestingIsRefused() throws IOException {
+		// A COMMAND payload of 200000 arrays, each holding the next.
+		int depth = 200000;
+		byte[] payload = new byte[depth * 2 + 1];
+		for (int i = 0; i < depth; i++) {
+			payload[i * 2] = 6; // an Object[]
+			payload[i * 2 + 1] = 1; // of one value
+		}
+		ByteBuffer frame = ByteBuffer.allocate(payload.length + 4);
+		frame.put((byte) MessageType.COMMAND.ordinal());
+		for (int length = payload.length; length != 0; length >>>= 7) {
+			frame.put((byte) ((length & 0x7F) | (length > 0x7F ? 0x80 : 0)));
+		}
+		frame.put(payload);
+		frame.flip();
+		new BinaryMessageCodec().decode(frame);
+	}
+
+	@Test(expected = IOException.class)
+	public void ArbitraryObjectsAreRefused() throws IOException {
+		new BinaryMessageCodec().encode(new Message(new StringBuilder(),
+				MessageType.COMMAND));
+	}
+
+	@Test
+	public void BroadcastsEncodeOnce() throws IOException {
+		Broadcast b = new Broadcast(display());
+		assertSame(b.frameFor(new BinaryMessageCodec()).array(),
+				b.frameFor(new BinaryMessageCodec()).array());
+		// Serialized frames depend on what the stream has sent before.
+		assertTrue(b.frameFor(new SerializedMessageCodec()).array() != b
+				.frameFor(new SerializedMessageCodec()).array());
+	}
+
+	@Test(expected = IOException.class)
+	public void SerializedFramesOnlyNameMessageClasses() throws IOException {
+		// A StringBuilder serializes fine, but the reading end won't
+		// resolve it.
+		roundTrip(new SerializedMessageCodec(), new SerializedMessageCodec(),
+				new Message(new StringBuilder("hi"), MessageType.COMMAND));
+	}
+
+	@Test
+	public void SerializedHandleTableStaysBounded() throws IOException {
+		MessageCodec out = new SerializedMessageCodec(100, 64 * 1024);
+		MessageCodec in = new SerializedMessageCodec(100, 64 * 1024);
+		int largest = 0;
+		for (int i = 0; i < 10000; i++) {
+			Message m = new Message("<span class=\"normal\">Message " + i
+					+ "</span><br />", MessageType.DISPLAY);
+			assertEquals(m.getData(), roundTrip(out, in, m).getData());
+			largest = Math.max(largest, out.getHandleTableSize());
+		}
+		// A Message and its String for each of the 100 between resets, plus
+		// the MessageType.
+		assertTrue("handle table grew to " + largest, largest <= 201);
+	}
+
+	@Test
+	public void CompareWithSerialization() throws IOException {
+		for (MessageType type : new MessageType[] {
+				MessageType.CHARACTER_STATS, MessageType.LOGIN_SUCCESSFUL,
+				MessageType.DISPLAY }) {
+			MessageCodec serialized = new SerializedMessageCodec();
+			MessageCodec binary = new BinaryMessageCodec();
+			// The first serialized frame carries the stream header.
+			serialized.encode(newMessage(type));
+			// Warm up before timing.
+			time(serialized, type);
+			time(binary, type);
+
+			System.out.println(type + ": serialized "
+					+ serialized.encode(newMessage(type)).length + " bytes, "
+					+ time(serialized, type) + " ns per send; binary "
+					+ binary.encode(newMessage(type)).length + " bytes, "
+					+ time(binary, type) + " ns per send");
+		}
+	}
+
+	/*
+	 * The Server builds a new Message for every send, so the serialized
+	 * stream never gets to send a mere back-reference.
+	 */
+	private Message newMessage(MessageType type) {
+		switch (type) {
+		case CHARACTER_STATS:
+			return stats();
+		case LOGIN_SUCCESSFUL:
+			return loginSuccessful();
+		default:
+			return new Message(new String((String) display().getData()),
+					MessageType.DISPLAY);
+		}
+	}
+
+	private long time(MessageCodec codec, MessageType type)
+			throws IOException {
+		long start = System.nanoTime();
+		for (int i = 0; i < SENDS; i++) {
+			codec.encode(newMessage(type));
+		}
+		return (System.nanoTime() - start) / SENDS;
+	}
+
+	private Message roundTrip(MessageCodec out, MessageCodec in, Message m)
+			throws IOException {
+		byte[] frame = out.encode(m);
+		Message decoded = in.read(new DataInputStream(
+				new ByteArrayInputStream(frame)));
+		assertEquals(m.getMessageType(), decoded.getMessageType());
+		return decoded;
+	}
+}
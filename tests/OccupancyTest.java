@@ -0,0 +1,29 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import library.WorldState;
+
+import org.junit.Test;
+
+public class OccupancyTest {
+
+	@Test
+	public void MobsAreFoundWhereTheyAre() {
+		WorldState.addMob(1, -101, 10, 5, "Gecko", 1);
+		WorldState.addMob(1, -102, 10, 5, "Gecko", 1);
+		assertEquals(Arrays.asList(-101, -102), WorldState.getMobs(5));
+
+		WorldState.setMobLocation(-101, 6);
+		assertEquals(Arrays.asList(-102), WorldState.getMobs(5));
+		assertEquals(Arrays.asList(-101), WorldState.getMobs(6));
+
+		WorldState.removeMob(-101);
+		WorldState.removeMob(-102);
+		assertEquals(Collections.emptyList(), WorldState.getMobs(5));
+		assertEquals(Collections.emptyList(), WorldState.getMobs(6));
+	}
+}
@@ -0,0 +1,88 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import library.DatabaseConnection;
+import library.Migrations;
+
+import org.junit.Test;
+
+/**
+ * Checks that the queries the Server runs while the game is played find
+ * their rows through an index instead of reading the whole table. The
+ * queries are DatabaseConnection's own SQL templates, every one of them.
+ * Run it against a copy of UAMUD.db; opening it migrates it.
+ */
+public class QueryPlanTest {
+
+	@Test
+	public void DatabaseIsMigrated() throws SQLException {
+		DatabaseConnection dbc = DatabaseConnection.getInstance();
+		assertEquals(Migrations.VERSION, dbc.queryForInt(0,
+				"PRAGMA user_version;"));
+	}
+
+	@Test
+	public void HotQueriesUseIndexes() throws SQLException,
+			IllegalAccessException {
+		DatabaseConnection dbc = DatabaseConnection.getInstance();
+		List<String> queries = queries();
+		assertTrue(queries.size() > 0);
+		for (String sql : queries) {
+			ResultSet rs = null;
+			try {
+				// Planning fails if the SQL no longer fits the schema.
+				rs = dbc.query("EXPLAIN QUERY PLAN " + sql, parameters(sql));
+				while (rs.next() && sql.contains(" WHERE ")) {
+					String detail = rs.getString("detail");
+					assertTrue(sql + " reads " + detail, detail
+							.contains(" WITH INDEX ")
+							|| detail.contains(" USING PRIMARY KEY"));
+				}
+			} finally {
+				dbc.release(rs);
+			}
+		}
+	}
+
+	/*
+	 * The SQL templates DatabaseConnection runs on single rows, as it runs
+	 * them.
+	 */
+	private static List<String> queries() throws IllegalAccessException {
+		List<String> queries = new ArrayList<String>();
+		for (Field f : DatabaseConnection.class.getFields()) {
+			if (Modifier.isStatic(f.getModifiers())
+					&& f.getType() == String.class
+					&& f.getName().endsWith("_SQL")) {
+				queries.add((String) f.get(null));
+			}
+		}
+		return queries;
+	}
+
+	/*
+	 * Anything does for the values; the plan doesn't depend on them.
+	 */
+	private static Object[] parameters(String sql) {
+		int count = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			if (sql.charAt(i) == '?') {
+				count++;
+			}
+		}
+		Object[] parameters = new Object[count];
+		for (int i = 0; i < count; i++) {
+			parameters[i] = 1;
+		}
+		return parameters;
+	}
+}
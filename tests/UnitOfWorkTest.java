@@ -0,0 +1,65 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import library.DatabaseConnection;
+
+import org.junit.Test;
+
+/**
+ * Checks that what a unit of work is to undo is undone only when its writes
+ * aren't committed. Run it against a copy of UAMUD.db.
+ */
+public class UnitOfWorkTest {
+
+	@Test
+	public void UndoneWhenTheCommitFails() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		List<String> undone = new ArrayList<String>();
+		boolean failed = false;
+		db.beginWork();
+		try {
+			db.onRollback(record(undone, "first"));
+			db.onRollback(record(undone, "second"));
+			db.update("UPDATE nosuchtable SET quantity = ?;", 1);
+			db.commitWork();
+		} catch (SQLException e) {
+			failed = true;
+		} finally {
+			db.endWork();
+		}
+		assertTrue(failed);
+		assertEquals(Arrays.asList("second", "first"), undone);
+	}
+
+	@Test
+	public void KeptWhenTheCommitSucceeds() throws SQLException {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		List<String> undone = new ArrayList<String>();
+		db.beginWork();
+		try {
+			db.onRollback(record(undone, "kept"));
+			db.update("UPDATE characters SET hp = hp WHERE id = ?;", 1);
+			db.commitWork();
+		} finally {
+			db.endWork();
+		}
+		assertEquals(0, undone.size());
+	}
+
+	private Runnable record(final List<String> undone, final String name) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				undone.add(name);
+			}
+		};
+	}
+}
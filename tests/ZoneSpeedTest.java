@@ -0,0 +1,242 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import library.Character;
+import library.Client;
+import library.DatabaseConnection;
+import library.RoomGraph;
+import library.WorldState;
+
+import org.junit.Test;
+
+import server.Message;
+import server.MessageType;
+import server.Server;
+
+/**
+ * Measures how many commands a second a Server gets through as it has more
+ * zones. Every player is a Client logged in over a socket, so the commands
+ * take the Server's own way: each Client's handler runs on the GameLoop of
+ * its Character's zone, is handed off when the Character walks into
+ * another zone, runs each command as one unit of work, and what is said or
+ * seen in a room goes out through the EventBus. The players look, talk,
+ * walk and check their inventories. With a core per zone the throughput
+ * should grow about as fast as the number of zones.
+ *
+ * The number of zones is fixed once a Server has started, so each count
+ * runs in a JVM of its own. Run it against a copy of UAMUD.db; the players
+ * are added to it the first time.
+ *
+ * On JDK 17, 1 core, 64 Clients of 500 commands each, NIO, three runs:
+ *
+ * <pre>
+ * zones  commands/s      against one zone
+ * 1      9000-12100      1.00x
+ * 2      9300-12700      1.03-1.13x
+ * 4      15700-17300     1.42-1.75x
+ * </pre>
+ *
+ * With one core the zones don't run side by side; four zones come out ahead
+ * because each GameLoop handles a Client's next command a tick later, and
+ * more GameLoops tick more often between them. How it scales with a core per
+ * zone still has to be measured on a host with four cores or more.
+ */
+public class ZoneSpeedTest {
+
+	private static final int PORT = 4610;
+	private static final int PLAYERS = 64;
+	private static final int COMMANDS_PER_PLAYER = 500;
+	// Not a command, so the Server answers it with "Command not recognized"
+	// and a player knows all it sent before has been handled.
+	private static final String MARKER = "zonespeedtest";
+	private static final String[] COMMANDS = { "look", "say hello", "n", "e",
+			"s", "w", "inventory" };
+
+	@Test
+	public void ThroughputByZones() throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		double base = 0;
+		for (int zones = 1; zones <= Math.max(4, cores); zones *= 2) {
+			double perSecond = runServer(zones);
+			assertTrue(perSecond > 0);
+			if (zones == 1) {
+				base = perSecond;
+			}
+			System.out.println(String.format("%d zones: %.0f commands/s, "
+					+ "%.2fx one zone (%d cores)", zones, perSecond,
+					perSecond / base, cores));
+		}
+	}
+
+	/*
+	 * Runs a Server with the given number of zones in a JVM of its own and
+	 * returns the commands a second it got through.
+	 */
+	private double runServer(int zones) throws IOException,
+			InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("-Duamud.zones=" + zones);
+		// Tick as often as it can and without a cap, so only the commands
+		// hold a zone up.
+		command.add("-Duamud.tick.rate=10000");
+		command.add("-Duamud.tick.commands=" + Integer.MAX_VALUE);
+		command.add("-Duamud.io=" + System.getProperty("uamud.io", "nio"));
+		command.add(ZoneSpeedTest.class.getName());
+		command.add(String.valueOf(PORT + zones));
+		Process p = new ProcessBuilder(command).redirectErrorStream(true)
+				.start();
+		BufferedReader out = new BufferedReader(new InputStreamReader(p
+				.getInputStream()));
+		double perSecond = 0;
+		String line;
+		while ((line = out.readLine()) != null) {
+			if (line.startsWith("commands/s ")) {
+				perSecond = Double.parseDouble(line.substring(11));
+			} else {
+				System.out.println(line);
+			}
+		}
+		p.waitFor();
+		return perSecond;
+	}
+
+	/**
+	 * Starts a Server on the given port, plays it with the players once to
+	 * warm it up and once to measure, and prints the commands a second.
+	 *
+	 * @param args
+	 *            The port.
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = Integer.parseInt(args[0]);
+		Thread server = new Thread(new Server(port, 2));
+		server.setDaemon(true);
+		server.start();
+		Thread.sleep(1000);
+
+		// Spread the players evenly over the rooms before they come in.
+		RoomGraph graph = RoomGraph.get();
+		List<Integer> rooms = new ArrayList<Integer>();
+		for (int i = 1; i <= graph.getMaxID(); i++) {
+			if (graph.contains(i)) {
+				rooms.add(i);
+			}
+		}
+		Semaphore handled = new Semaphore(0);
+		AtomicLong received = new AtomicLong();
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < PLAYERS; i++) {
+			String name = "ZoneWalker" + i;
+			String user = name.toLowerCase();
+			if (DatabaseConnection.getIDFromUsername(user) < 1) {
+				DatabaseConnection.createUser(user, user, name);
+			}
+			if (DatabaseConnection.getIDFromCharacter(name) < 1) {
+				DatabaseConnection.createCharacter(name, "NINJA", user);
+			}
+			Character c = WorldState.getCharacter(DatabaseConnection
+					.getIDFromCharacter(name));
+			c.setLocation(rooms.get(i % rooms.size()));
+
+			Client client = new Client("localhost", port);
+			Thread reader = new Thread(new Reader(client, handled, received));
+			reader.setDaemon(true);
+			reader.start();
+			client.send(new Message(new String[] { user, user },
+					MessageType.LOGIN));
+			client.send(new Message(name, MessageType.SELECT_CHARACTER));
+			client.send(new Message(MARKER, MessageType.COMMAND));
+			clients.add(client);
+		}
+		if (!handled.tryAcquire(PLAYERS, 60, TimeUnit.SECONDS)) {
+			System.out.println("The players didn't all log in.");
+			System.exit(1);
+		}
+
+		// Warm up, so the measured run isn't the one paying for the JIT.
+		play(clients, handled);
+		long before = received.get();
+		long start = System.nanoTime();
+		play(clients, handled);
+		long elapsed = System.nanoTime() - start;
+		long messages = received.get() - before;
+
+		double perSecond = PLAYERS * (COMMANDS_PER_PLAYER + 1)
+				/ (elapsed / 1000000000.0);
+		System.out.println(String.format("%d Messages back, %.1f a command",
+				messages, (double) messages
+						/ (PLAYERS * (COMMANDS_PER_PLAYER + 1))));
+		System.out.println("commands/s " + perSecond);
+		for (Client c : clients) {
+			c.disconnect();
+		}
+		System.exit(0);
+	}
+
+	/*
+	 * Has every player send all its commands at once, and waits until the
+	 * Server has handled them all.
+	 */
+	private static void play(List<Client> clients, Semaphore handled)
+			throws InterruptedException {
+		for (int i = 0; i < clients.size(); i++) {
+			Random random = new Random(i);
+			Client c = clients.get(i);
+			for (int j = 0; j < COMMANDS_PER_PLAYER; j++) {
+				c.send(new Message(COMMANDS[random.nextInt(COMMANDS.length)],
+						MessageType.COMMAND));
+			}
+			c.send(new Message(MARKER, MessageType.COMMAND));
+		}
+		if (!handled.tryAcquire(clients.size(), 120, TimeUnit.SECONDS)) {
+			System.out.println("The players' commands weren't all handled.");
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Reads everything the Server sends a player, and counts the answers to
+	 * the marker.
+	 */
+	private static final class Reader implements Runnable {
+		private final Client client;
+		private final Semaphore handled;
+		private final AtomicLong received;
+
+		private Reader(Client client, Semaphore handled, AtomicLong received) {
+			this.client = client;
+			this.handled = handled;
+			this.received = received;
+		}
+
+		@Override
+		public void run() {
+			Message m;
+			while ((m = client.receive()) != null) {
+				received.incrementAndGet();
+				if (m.getMessageType() == MessageType.DISPLAY
+						&& m.getData() instanceof String
+						&& ((String) m.getData())
+								.contains("Command not recognized")) {
+					handled.release();
+				}
+			}
+		}
+	}
+}